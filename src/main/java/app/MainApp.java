@@ -1,37 +1,65 @@
 package app;
 
 import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.geometry.Insets;
 import javafx.scene.Scene;
+import javafx.scene.control.Alert;
+import javafx.scene.control.ButtonType;
+import javafx.scene.control.Label;
 import javafx.scene.control.Menu;
 import javafx.scene.control.MenuBar;
 import javafx.scene.control.MenuItem;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.input.InputEvent;
 import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.VBox;
+import javafx.stage.FileChooser;
+import javafx.stage.Modality;
 import javafx.stage.Stage;
-import persistence.RepositorioPersistencia;
+import persistence.Repositorio;
+import service.ConversaoEmLote;
+import service.CurrencyService;
+import service.ImportacaoExtrato;
 import ui.ConfiguracoesView;
+import ui.HistoricoView;
 import ui.HomeView;
 import ui.NovaTransacaoView;
 import util.Config;
 
+import java.io.File;
+
 public class MainApp extends Application {
     private Stage primaryStage;
-    private RepositorioPersistencia repositorio;
+    private Repositorio repositorio;
+    private HomeView home;
+    // transações sem cotação ficam na fila e são tentadas de novo periodicamente e a cada importação
+    private ConversaoEmLote cotacoes;
 
     @Override
     public void start(Stage stage) {
         this.primaryStage = stage;
         Config.init(); // carrega configurações iniciais (pasta data etc)
-        this.repositorio = RepositorioPersistencia.getInstance();
+        this.repositorio = Repositorio.padrao();
         repositorio.loadAll();
+        // carrega já o cache de cotações gravado, compartilhado por todas as telas,
+        // e o mantém renovado enquanto o aplicativo está em uso
+        CurrencyService cambio = CurrencyService.getInstance();
+        cambio.iniciarAtualizacao();
+        this.cotacoes = new ConversaoEmLote(cambio);
+        // inclui as que ficaram sem cotação em execuções anteriores
+        cotacoes.iniciarReprocessamento(repositorio, () -> Platform.runLater(this::refreshHome));
 
         BorderPane root = new BorderPane();
         MenuBar menuBar = createMenuBar();
         root.setTop(menuBar);
 
-        HomeView home = new HomeView(repositorio, this::showNovaTransacao, this::showConfiguracoes);
+        home = new HomeView(repositorio, this::showNovaTransacao, this::showHistorico, this::showConfiguracoes);
         root.setCenter(home.getView());
 
         Scene scene = new Scene(root, 1000, 600);
+        // qualquer interação conta como uso (sem ela, a renovação das cotações para)
+        scene.addEventFilter(InputEvent.ANY, e -> cambio.registrarAtividade());
 
         // Isso carrega o arquivo style.css da pasta resources e aplica na janela inteira
         scene.getStylesheets().add(getClass().getResource("/style.css").toExternalForm());
@@ -47,19 +75,34 @@ public class MainApp extends Application {
         Menu menuArquivo = new Menu("Arquivo");
         MenuItem nova = new MenuItem("Nova Transação");
         nova.setOnAction(e -> showNovaTransacao());
+        MenuItem importar = new MenuItem("Importar JSON...");
+        importar.setOnAction(e -> importarJson());
+        MenuItem extrato = new MenuItem("Importar extrato (CSV/OFX)...");
+        extrato.setOnAction(e -> importarExtrato());
+        MenuItem exportar = new MenuItem("Exportar JSON...");
+        exportar.setOnAction(e -> exportarJson());
         MenuItem sair = new MenuItem("Sair");
         sair.setOnAction(e -> {
             repositorio.saveAll();
+            repositorio.flush();
+            CurrencyService.getInstance().flush();
             primaryStage.close();
         });
-        menuArquivo.getItems().addAll(nova, sair);
+        menuArquivo.getItems().addAll(nova, importar, extrato, exportar, sair);
 
         Menu menuEditar = new Menu("Editar");
         MenuItem categorias = new MenuItem("Categorias / Configurações");
         categorias.setOnAction(e -> showConfiguracoes());
         menuEditar.getItems().add(categorias);
 
-        menuBar.getMenus().addAll(menuArquivo, menuEditar);
+        Menu menuExibir = new Menu("Exibir");
+        MenuItem inicio = new MenuItem("Início");
+        inicio.setOnAction(e -> refreshHome());
+        MenuItem historico = new MenuItem("Histórico Completo");
+        historico.setOnAction(e -> showHistorico());
+        menuExibir.getItems().addAll(inicio, historico);
+
+        menuBar.getMenus().addAll(menuArquivo, menuEditar, menuExibir);
         return menuBar;
     }
 
@@ -69,21 +112,125 @@ public class MainApp extends Application {
         pane.setCenter(novaView.getView());
     }
 
+    private void showHistorico() {
+        HistoricoView hist = new HistoricoView(repositorio);
+        BorderPane pane = (BorderPane) primaryStage.getScene().getRoot();
+        pane.setCenter(hist.getView());
+    }
+
     private void showConfiguracoes() {
         ConfiguracoesView cfg = new ConfiguracoesView(repositorio);
         BorderPane pane = (BorderPane) primaryStage.getScene().getRoot();
         pane.setCenter(cfg.getView());
     }
 
+    private FileChooser jsonChooser(String titulo) {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle(titulo);
+        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("JSON", "*.json", "*.json.gz"));
+        return chooser;
+    }
+
+    private void importarJson() {
+        File arquivo = jsonChooser("Importar transações").showOpenDialog(primaryStage);
+        if (arquivo == null) return;
+        try {
+            int novas = repositorio.importarJson(arquivo.toPath());
+            new Alert(Alert.AlertType.INFORMATION, novas + " transação(ões) importada(s).", ButtonType.OK).showAndWait();
+            refreshHome();
+        } catch (Exception ex) {
+            new Alert(Alert.AlertType.ERROR, "Erro ao importar: " + ex.getMessage(), ButtonType.OK).showAndWait();
+        }
+    }
+
+    /**
+     * Importa o extrato numa thread própria; uma janela mostra o andamento
+     * e, ao final, o resumo.
+     */
+    private void importarExtrato() {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Importar extrato");
+        chooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("Extratos", "*.csv", "*.ofx", "*.qfx", "*.txt"),
+                new FileChooser.ExtensionFilter("Todos", "*.*"));
+        File arquivo = chooser.showOpenDialog(primaryStage);
+        if (arquivo == null) return;
+
+        ProgressBar barra = new ProgressBar(0);
+        barra.setPrefWidth(320);
+        Label status = new Label("Lendo " + arquivo.getName() + "...");
+        VBox box = new VBox(10, status, barra);
+        box.setPadding(new Insets(20));
+        Stage janela = new Stage();
+        janela.initOwner(primaryStage);
+        janela.initModality(Modality.WINDOW_MODAL);
+        janela.setTitle("Importando extrato");
+        janela.setScene(new Scene(box));
+        janela.setOnCloseRequest(e -> e.consume()); // fecha sozinha ao terminar
+        janela.show();
+
+        Thread t = new Thread(() -> {
+            try {
+                cotacoes.reprocessar(repositorio);
+                ImportacaoExtrato.Resultado r = ImportacaoExtrato.importar(repositorio, arquivo.toPath(), cotacoes,
+                        (lidos, total, lidas, importadas) -> Platform.runLater(() -> {
+                            barra.setProgress(total == 0 ? 1 : (double) lidos / total);
+                            status.setText(lidas + " linha(s) lida(s), " + importadas + " importada(s)");
+                        }));
+                Platform.runLater(() -> {
+                    janela.close();
+                    StringBuilder msg = new StringBuilder()
+                            .append(r.getImportadas()).append(" transação(ões) importada(s), ")
+                            .append(r.getDuplicadas()).append(" já existente(s), ")
+                            .append(r.getInvalidas()).append(" linha(s) inválida(s).");
+                    if (r.getSemCotacao() > 0) {
+                        msg.append('\n').append(r.getSemCotacao())
+                                .append(" em moeda estrangeira aguardando cotação (convertidas assim que a cotação estiver disponível).");
+                    }
+                    // só as primeiras, para o alerta caber na tela
+                    r.getErros().stream().limit(10).forEach(erro -> msg.append('\n').append(erro));
+                    new Alert(r.getInvalidas() == 0 ? Alert.AlertType.INFORMATION : Alert.AlertType.WARNING,
+                            msg.toString(), ButtonType.OK).showAndWait();
+                    refreshHome();
+                });
+            } catch (Exception ex) {
+                ex.printStackTrace();
+                Platform.runLater(() -> {
+                    janela.close();
+                    new Alert(Alert.AlertType.ERROR, "Erro ao importar: " + ex.getMessage(), ButtonType.OK).showAndWait();
+                });
+            }
+        }, "importacao");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private void exportarJson() {
+        FileChooser chooser = jsonChooser("Exportar transações");
+        chooser.setInitialFileName("transacoes.json");
+        File arquivo = chooser.showSaveDialog(primaryStage);
+        if (arquivo == null) return;
+        try {
+            repositorio.exportarJson(arquivo.toPath());
+        } catch (Exception ex) {
+            new Alert(Alert.AlertType.ERROR, "Erro ao exportar: " + ex.getMessage(), ButtonType.OK).showAndWait();
+        }
+    }
+
     private void refreshHome() {
         BorderPane pane = (BorderPane) primaryStage.getScene().getRoot();
-        HomeView home = new HomeView(repositorio, this::showNovaTransacao, this::showConfiguracoes);
+        // mesma tela: o recálculo roda em segundo plano e substitui o que estiver em andamento
+        home.atualizar();
         pane.setCenter(home.getView());
     }
 
     @Override
     public void stop() {
+        cotacoes.pararReprocessamento();
         repositorio.saveAll();
+        repositorio.flush();
+        CurrencyService.getInstance().pararAtualizacao();
+        CurrencyService.getInstance().flush();
     }
 
     public static void main(String[] args) {
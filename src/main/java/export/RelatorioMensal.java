@@ -1,6 +1,7 @@
 package export;
 
 import model.Transacao;
+import persistence.TotaisCorrentes;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.PDPageContentStream;
@@ -8,7 +9,10 @@ import org.apache.pdfbox.pdmodel.common.PDStream;
 import org.apache.pdfbox.pdmodel.font.PDType1Font;
 
 import java.io.*;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.time.YearMonth;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -19,11 +23,38 @@ public class RelatorioMensal implements Exportavel {
     private final int ano;
     private final int mes;
     private final List<Transacao> transacoes;
+    // resumos do mês e do anterior, vindos do cubo (opcionais)
+    private final TotaisCorrentes resumo;
+    private final TotaisCorrentes anterior;
 
     public RelatorioMensal(int ano, int mes, List<Transacao> transacoes) {
+        this(ano, mes, transacoes, null, null);
+    }
+
+    public RelatorioMensal(int ano, int mes, List<Transacao> transacoes, TotaisCorrentes resumo, TotaisCorrentes anterior) {
         this.ano = ano;
         this.mes = mes;
         this.transacoes = transacoes;
+        this.resumo = resumo;
+        this.anterior = anterior;
+    }
+
+    private List<String> linhasResumo() {
+        if (resumo == null) return List.of();
+        List<String> linhas = new ArrayList<>();
+        linhas.add(String.format("Receitas: %s BRL | Despesas: %s BRL | Saldo: %s BRL",
+                centavos(resumo.getReceitas()), centavos(resumo.getDespesas()), centavos(resumo.getSaldo())));
+        if (anterior != null) {
+            BigDecimal variacao = resumo.getSaldo().subtract(anterior.getSaldo());
+            linhas.add(String.format("Saldo do mês anterior: %s BRL (variação %s%s BRL)",
+                    centavos(anterior.getSaldo()), variacao.signum() < 0 ? "" : "+", centavos(variacao)));
+        }
+        return linhas;
+    }
+
+    // direto do BigDecimal, sem passar por double
+    private static String centavos(BigDecimal v) {
+        return v.setScale(2, RoundingMode.HALF_EVEN).toPlainString();
     }
 
     @Override
@@ -43,6 +74,10 @@ public class RelatorioMensal implements Exportavel {
             w.newLine();
             w.write("Total de transações: " + transacoes.size());
             w.newLine();
+            for (String l : linhasResumo()) {
+                w.write(l);
+                w.newLine();
+            }
             w.write("----");
             w.newLine();
             for (Transacao t : transacoes) {
@@ -68,6 +103,10 @@ public class RelatorioMensal implements Exportavel {
         cs.setFont(PDType1Font.HELVETICA, 12);
         cs.showText("Total de transações: " + transacoes.size());
         cs.newLineAtOffset(0, -20);
+        for (String l : linhasResumo()) {
+            cs.showText(l);
+            cs.newLineAtOffset(0, -16);
+        }
         cs.showText("----");
         cs.newLineAtOffset(0, -20);
         for (Transacao t : transacoes) {
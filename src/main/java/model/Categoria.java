@@ -26,4 +26,9 @@ public class Categoria {
         Categoria that = (Categoria) o;
         return Objects.equals(id, that.id);
     }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id);
+    }
 }
\ No newline at end of file
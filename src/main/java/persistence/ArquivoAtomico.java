@@ -0,0 +1,50 @@
+package persistence;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Grava arquivos de forma atômica: escreve num temporário no mesmo diretório,
+ * força para o disco (fsync) e renomeia por cima do destino. Uma queda no meio
+ * da gravação deixa o arquivo anterior intacto.
+ */
+public class ArquivoAtomico {
+
+    public interface Escritor {
+        void escrever(OutputStream out) throws IOException;
+    }
+
+    private ArquivoAtomico() {}
+
+    public static void gravar(Path destino, Escritor escritor) throws IOException {
+        Path tmp = temporario(destino);
+        try (FileOutputStream fos = new FileOutputStream(tmp.toFile())) {
+            OutputStream out = new BufferedOutputStream(fos, 1 << 16);
+            escritor.escrever(out);
+            out.flush();
+            fos.getChannel().force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        substituir(tmp, destino);
+    }
+
+    public static Path temporario(Path destino) {
+        return destino.resolveSibling(destino.getFileName() + ".tmp");
+    }
+
+    public static void substituir(Path tmp, Path destino) throws IOException {
+        try {
+            Files.move(tmp, destino, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, destino, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
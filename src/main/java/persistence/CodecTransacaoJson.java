@@ -0,0 +1,126 @@
+package persistence;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import model.Categoria;
+import model.Despesa;
+import model.Moeda;
+import model.Receita;
+import model.Transacao;
+import util.exceptions.DataInvalidaException;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Leitura/escrita de uma transação em streaming (JsonReader/JsonWriter),
+ * com o campo "tipo" para reconstruir Receita ou Despesa. Nos arquivos da
+ * pasta de dados a categoria é gravada só pelo id ("categoriaId"), e quem lê
+ * resolve o id para a instância cadastrada. Na exportação ela vai inteira
+ * ("categoria"), para o arquivo poder ser importado em outra pasta de dados.
+ */
+public class CodecTransacaoJson {
+
+    private CodecTransacaoJson() {}
+
+    public static String tipoDe(Transacao t) {
+        return t instanceof Receita ? "Receita" : "Despesa";
+    }
+
+    public static void escrever(JsonWriter w, Transacao t) throws IOException {
+        escrever(w, t, false);
+    }
+
+    /**
+     * Com categoriaCompleta, grava id, nome e cor da categoria em vez do id.
+     */
+    public static void escrever(JsonWriter w, Transacao t, boolean categoriaCompleta) throws IOException {
+        w.beginObject();
+        w.name("tipo").value(tipoDe(t));
+        w.name("id").value(t.getId());
+        w.name("data").value(t.getData().toString());
+        w.name("valorOriginal").value(t.getValorOriginal());
+        if (t.getValorBRL() != null) w.name("valorBRL").value(t.getValorBRL());
+        w.name("moeda").value(t.getMoeda().name());
+        Categoria c = t.getCategoria();
+        if (c != null && categoriaCompleta) {
+            w.name("categoria").beginObject();
+            w.name("id").value(c.getId());
+            if (c.getNome() != null) w.name("nome").value(c.getNome());
+            if (c.getCor() != null) w.name("cor").value(c.getCor());
+            w.endObject();
+        } else if (c != null) {
+            w.name("categoriaId").value(c.getId());
+        }
+        if (t.getDescricao() != null) w.name("descricao").value(t.getDescricao());
+        w.endObject();
+    }
+
+    /**
+     * Lê um objeto de transação. Registros antigos, gravados sem "tipo",
+     * são lidos como Despesa; os que trazem a categoria inteira embutida
+     * ("categoria") continuam aceitos. Com "categoriaId" a categoria vem só
+     * com o id, sem nome, até ser resolvida.
+     */
+    public static Transacao ler(JsonReader r) throws IOException {
+        String tipo = null, id = null, descricao = null;
+        LocalDate data = null;
+        BigDecimal valorOriginal = null, valorBRL = null;
+        Moeda moeda = null;
+        Categoria categoria = null;
+
+        r.beginObject();
+        while (r.hasNext()) {
+            String campo = r.nextName();
+            if (r.peek() == JsonToken.NULL) {
+                r.nextNull();
+                continue;
+            }
+            switch (campo) {
+                case "tipo" -> tipo = r.nextString();
+                case "id" -> id = r.nextString();
+                case "data" -> data = LocalDate.parse(r.nextString());
+                case "valorOriginal" -> valorOriginal = new BigDecimal(r.nextString());
+                case "valorBRL" -> valorBRL = new BigDecimal(r.nextString());
+                case "moeda" -> moeda = Moeda.valueOf(r.nextString());
+                case "categoriaId" -> categoria = new Categoria(r.nextString(), null, null);
+                case "categoria" -> categoria = lerCategoria(r);
+                case "descricao" -> descricao = r.nextString();
+                default -> r.skipValue();
+            }
+        }
+        r.endObject();
+
+        try {
+            Transacao t = "Receita".equals(tipo)
+                    ? new Receita(id, data, valorOriginal, moeda, categoria, descricao)
+                    : new Despesa(id, data, valorOriginal, moeda, categoria, descricao);
+            t.setValorBRL(valorBRL);
+            return t;
+        } catch (DataInvalidaException | IllegalArgumentException e) {
+            throw new IOException("Transação inválida (id " + id + ") em " + r.getPath() + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static Categoria lerCategoria(JsonReader r) throws IOException {
+        String id = null, nome = null, cor = null;
+        r.beginObject();
+        while (r.hasNext()) {
+            String campo = r.nextName();
+            if (r.peek() == JsonToken.NULL) {
+                r.nextNull();
+                continue;
+            }
+            switch (campo) {
+                case "id" -> id = r.nextString();
+                case "nome" -> nome = r.nextString();
+                case "cor" -> cor = r.nextString();
+                default -> r.skipValue();
+            }
+        }
+        r.endObject();
+        return new Categoria(id, nome, cor);
+    }
+}
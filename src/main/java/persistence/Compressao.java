@@ -0,0 +1,55 @@
+package persistence;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Leitura e escrita com GZIP em streaming. Na leitura o formato é detectado
+ * pelo cabeçalho, então arquivos antigos (sem compressão) continuam abrindo.
+ */
+public class Compressao {
+    private static final int BUFFER = 1 << 16;
+
+    private Compressao() {}
+
+    public static boolean isGzip(Path arquivo) throws IOException {
+        try (InputStream in = Files.newInputStream(arquivo)) {
+            return isGzip(in.read(), in.read());
+        }
+    }
+
+    private static boolean isGzip(int b0, int b1) {
+        return b0 == (GZIPInputStream.GZIP_MAGIC & 0xFF) && b1 == (GZIPInputStream.GZIP_MAGIC >> 8);
+    }
+
+    /**
+     * Abre o arquivo para leitura, descompactando se ele estiver em GZIP.
+     */
+    public static InputStream abrir(Path arquivo) throws IOException {
+        BufferedInputStream in = new BufferedInputStream(Files.newInputStream(arquivo), BUFFER);
+        in.mark(2);
+        boolean gzip = isGzip(in.read(), in.read());
+        in.reset();
+        return gzip ? new GZIPInputStream(in, BUFFER) : in;
+    }
+
+    /**
+     * Gravação atômica, passando pelo GZIP quando compactar for verdadeiro.
+     */
+    public static void gravar(Path destino, boolean compactar, ArquivoAtomico.Escritor escritor) throws IOException {
+        ArquivoAtomico.gravar(destino, out -> {
+            if (!compactar) {
+                escritor.escrever(out);
+                return;
+            }
+            GZIPOutputStream gz = new GZIPOutputStream(out, BUFFER);
+            escritor.escrever(gz);
+            gz.finish();
+        });
+    }
+}
@@ -0,0 +1,175 @@
+package persistence;
+
+import model.Moeda;
+import model.Receita;
+import model.Transacao;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Filtros e ordem de uma consulta de transações. Os métodos encadeiam:
+ * {@code new Consulta().periodo(ini, fim).somenteDespesas().ordem(Ordem.MAIS_RECENTES)}.
+ * Critérios não informados não filtram. A ordem é sempre por data e, na
+ * mesma data, por id, o que permite continuar de onde uma página parou
+ * (apos) sem contar deslocamentos.
+ */
+public class Consulta {
+    public enum Ordem { MAIS_ANTIGAS, MAIS_RECENTES }
+
+    private static final Comparator<Transacao> CRESCENTE =
+            Comparator.comparing(Transacao::getData).thenComparing(Transacao::getId);
+
+    private LocalDate inicio;
+    private LocalDate fim;
+    private Set<String> categorias;
+    private Boolean receita;
+    private Set<Moeda> moedas;
+    private boolean semValorBRL;
+    private BigDecimal valorMinimo;
+    private BigDecimal valorMaximo;
+    private String texto;
+    private Ordem ordem = Ordem.MAIS_ANTIGAS;
+    private Pagina.Cursor apos;
+
+    /**
+     * Datas entre inicio e fim, inclusive; null deixa o lado em aberto.
+     */
+    public Consulta periodo(LocalDate inicio, LocalDate fim) {
+        this.inicio = inicio;
+        this.fim = fim;
+        return this;
+    }
+
+    public Consulta categorias(Collection<String> ids) {
+        this.categorias = new HashSet<>(ids);
+        return this;
+    }
+
+    public Consulta somenteReceitas() {
+        this.receita = true;
+        return this;
+    }
+
+    public Consulta somenteDespesas() {
+        this.receita = false;
+        return this;
+    }
+
+    public Consulta moedas(Moeda... moedas) {
+        this.moedas = EnumSet.copyOf(Arrays.asList(moedas));
+        return this;
+    }
+
+    /**
+     * Só as em outra moeda e ainda sem valor em BRL (sem cotação na inclusão).
+     */
+    public Consulta semValorBRL() {
+        this.semValorBRL = true;
+        return this;
+    }
+
+    /**
+     * Valor em BRL (ou o original, sem conversão) entre min e max; null deixa o lado em aberto.
+     */
+    public Consulta valorEntre(BigDecimal min, BigDecimal max) {
+        this.valorMinimo = min;
+        this.valorMaximo = max;
+        return this;
+    }
+
+    /**
+     * Descrição contendo o texto, sem diferenciar maiúsculas.
+     */
+    public Consulta descricaoContem(String texto) {
+        this.texto = texto == null || texto.isBlank() ? null : texto.toLowerCase(Locale.ROOT);
+        return this;
+    }
+
+    public Consulta ordem(Ordem ordem) {
+        this.ordem = ordem;
+        return this;
+    }
+
+    /**
+     * Só transações depois do cursor, na ordem da consulta (próxima página).
+     */
+    public Consulta apos(Pagina.Cursor cursor) {
+        this.apos = cursor;
+        return this;
+    }
+
+    public LocalDate getInicio() { return inicio; }
+
+    public LocalDate getFim() { return fim; }
+
+    public Set<String> getCategorias() { return categorias; }
+
+    public Boolean getReceita() { return receita; }
+
+    public Set<Moeda> getMoedas() { return moedas; }
+
+    public boolean isSemValorBRL() { return semValorBRL; }
+
+    public BigDecimal getValorMinimo() { return valorMinimo; }
+
+    public BigDecimal getValorMaximo() { return valorMaximo; }
+
+    public String getTexto() { return texto; }
+
+    public Ordem getOrdem() { return ordem; }
+
+    public Pagina.Cursor getApos() { return apos; }
+
+    public boolean isDecrescente() { return ordem == Ordem.MAIS_RECENTES; }
+
+    /**
+     * Verdadeiro se, além de período e cursor, só filtra por categoria e tipo:
+     * critérios que o cubo mensal já conta sem ler as transações.
+     */
+    boolean isSoCategoriaETipo() {
+        return moedas == null && !semValorBRL && valorMinimo == null && valorMaximo == null && texto == null;
+    }
+
+    /**
+     * Primeira e última data que ainda podem aparecer, juntando o período e o cursor.
+     */
+    LocalDate dataInicial() {
+        if (apos != null && !isDecrescente() && (inicio == null || apos.data().isAfter(inicio))) return apos.data();
+        return inicio;
+    }
+
+    LocalDate dataFinal() {
+        if (apos != null && isDecrescente() && (fim == null || apos.data().isBefore(fim))) return apos.data();
+        return fim;
+    }
+
+    public Comparator<Transacao> comparador() {
+        return isDecrescente() ? CRESCENTE.reversed() : CRESCENTE;
+    }
+
+    public boolean aceita(Transacao t) {
+        LocalDate d = t.getData();
+        if (inicio != null && d.isBefore(inicio)) return false;
+        if (fim != null && d.isAfter(fim)) return false;
+        if (receita != null && (t instanceof Receita) != receita) return false;
+        if (moedas != null && !moedas.contains(t.getMoeda())) return false;
+        if (semValorBRL && (t.getMoeda() == Moeda.BRL || t.getValorBRL() != null)) return false;
+        if (categorias != null && (t.getCategoria() == null || !categorias.contains(t.getCategoria().getId()))) return false;
+        if (valorMinimo != null || valorMaximo != null) {
+            BigDecimal v = TotaisCorrentes.valorEmBRL(t);
+            if (valorMinimo != null && v.compareTo(valorMinimo) < 0) return false;
+            if (valorMaximo != null && v.compareTo(valorMaximo) > 0) return false;
+        }
+        if (texto != null && (t.getDescricao() == null || !t.getDescricao().toLowerCase(Locale.ROOT).contains(texto))) {
+            return false;
+        }
+        if (apos != null) {
+            int c = d.compareTo(apos.data());
+            if (c == 0) c = t.getId().compareTo(apos.id());
+            if (isDecrescente() ? c >= 0 : c <= 0) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,52 @@
+package persistence;
+
+import java.time.YearMonth;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Agregados por (mês, categoria, Receita/Despesa): quantidade e soma de cada
+ * célula. Resumos mensais, totais por categoria num período e comparações
+ * mês a mês saem daqui sem ler as transações. É uma cópia: alterações
+ * posteriores no repositório não aparecem nela.
+ */
+public class CuboMensal {
+    private final TreeMap<YearMonth, TotaisCorrentes> meses = new TreeMap<>();
+
+    CuboMensal(Map<YearMonth, TotaisCorrentes> fatias) {
+        fatias.forEach((mes, t) -> {
+            if (!t.isVazio()) meses.put(mes, t.copia());
+        });
+    }
+
+    /**
+     * Totais do mês (vazio se não houver transações nele).
+     */
+    public TotaisCorrentes doMes(YearMonth mes) {
+        TotaisCorrentes t = meses.get(mes);
+        return t == null ? new TotaisCorrentes() : t;
+    }
+
+    /**
+     * Soma dos meses entre inicio e fim, inclusive.
+     */
+    public TotaisCorrentes doPeriodo(YearMonth inicio, YearMonth fim) {
+        TotaisCorrentes total = new TotaisCorrentes();
+        for (TotaisCorrentes t : serie(inicio, fim).values()) total.somar(t);
+        return total;
+    }
+
+    /**
+     * Totais de cada mês com movimento entre inicio e fim, em ordem.
+     */
+    public NavigableMap<YearMonth, TotaisCorrentes> serie(YearMonth inicio, YearMonth fim) {
+        if (fim.isBefore(inicio)) return Collections.emptyNavigableMap();
+        return Collections.unmodifiableNavigableMap(meses.subMap(inicio, true, fim, true));
+    }
+
+    public NavigableMap<YearMonth, TotaisCorrentes> getMeses() {
+        return Collections.unmodifiableNavigableMap(meses);
+    }
+}
@@ -0,0 +1,55 @@
+package persistence;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Executa as gravações em disco numa thread dedicada (write-behind), fora da
+ * thread da interface. Tarefas agendadas com a mesma chave enquanto a anterior
+ * ainda está na fila são fundidas: só a mais recente é executada.
+ */
+public class GravadorAssincrono {
+
+    public interface Tarefa {
+        void executar() throws IOException;
+    }
+
+    private final ExecutorService executor;
+    private final Map<String, Tarefa> pendentes = new ConcurrentHashMap<>();
+
+    public GravadorAssincrono() {
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "gravador-persistencia");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public void agendar(String chave, Tarefa tarefa) {
+        // se já havia uma tarefa na fila para a chave, ela passa a executar esta
+        if (pendentes.put(chave, tarefa) != null) return;
+        executor.execute(() -> {
+            Tarefa atual = pendentes.remove(chave);
+            if (atual == null) return;
+            try {
+                atual.executar();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    /**
+     * Barreira: espera terminar tudo o que foi agendado até agora.
+     */
+    public void flush() {
+        try {
+            executor.submit(() -> {}).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+        }
+    }
+}
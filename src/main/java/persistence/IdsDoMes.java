@@ -0,0 +1,116 @@
+package persistence;
+
+import model.Transacao;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Ids das transações de um mês, para achar o mês de um id sem ler as
+ * partições. UUIDs ficam ordenados num long[] (dois longs por id, busca
+ * binária); ids em outro formato, num conjunto à parte.
+ *
+ * Gravado em AAAA-MM.ids ao lado da partição, com o tamanho e a data de
+ * modificação do arquivo de dados. Se eles não baterem na leitura (gravação
+ * interrompida entre um arquivo e outro), o índice é ignorado e o mês volta
+ * a ser procurado lendo a partição.
+ */
+final class IdsDoMes {
+    private static final int MAGICO = 0x49445331; // "IDS1"
+
+    // alto, baixo, alto, baixo... em ordem
+    private final long[] uuids;
+    private final Set<String> outros;
+
+    private IdsDoMes(long[] uuids, Set<String> outros) {
+        this.uuids = uuids;
+        this.outros = outros;
+    }
+
+    static IdsDoMes de(Collection<Transacao> transacoes) {
+        List<UUID> lista = new ArrayList<>(transacoes.size());
+        Set<String> outros = new HashSet<>();
+        for (Transacao t : transacoes) {
+            UUID u = comoUuid(t.getId());
+            if (u != null) lista.add(u); else outros.add(t.getId());
+        }
+        // com sinal, como na busca (UUID.compareTo mudou entre versões do Java)
+        lista.sort(Comparator.comparingLong(UUID::getMostSignificantBits).thenComparingLong(UUID::getLeastSignificantBits));
+        long[] uuids = new long[lista.size() * 2];
+        for (int i = 0; i < lista.size(); i++) {
+            uuids[2 * i] = lista.get(i).getMostSignificantBits();
+            uuids[2 * i + 1] = lista.get(i).getLeastSignificantBits();
+        }
+        return new IdsDoMes(uuids, outros);
+    }
+
+    boolean contem(String id) {
+        UUID u = comoUuid(id);
+        if (u == null) return outros.contains(id);
+        long alto = u.getMostSignificantBits(), baixo = u.getLeastSignificantBits();
+        int ini = 0, fim = uuids.length / 2 - 1;
+        while (ini <= fim) {
+            int meio = (ini + fim) >>> 1;
+            int c = Long.compare(uuids[2 * meio], alto);
+            if (c == 0) c = Long.compare(uuids[2 * meio + 1], baixo);
+            if (c == 0) return true;
+            if (c < 0) ini = meio + 1; else fim = meio - 1;
+        }
+        return false;
+    }
+
+    void gravar(Path arquivo, Path dados) throws IOException {
+        long tamanho = Files.size(dados);
+        long modificado = Files.getLastModifiedTime(dados).toMillis();
+        ArquivoAtomico.gravar(arquivo, out -> {
+            DataOutputStream d = new DataOutputStream(new BufferedOutputStream(out));
+            d.writeInt(MAGICO);
+            d.writeLong(tamanho);
+            d.writeLong(modificado);
+            d.writeInt(uuids.length / 2);
+            for (long v : uuids) d.writeLong(v);
+            d.writeInt(outros.size());
+            for (String s : outros) d.writeUTF(s);
+            d.flush();
+        });
+    }
+
+    /**
+     * Lê o índice do mês; null se ele não existir, estiver ilegível ou não
+     * corresponder ao arquivo de dados atual.
+     */
+    static IdsDoMes ler(Path arquivo, Path dados) {
+        if (!Files.exists(arquivo) || !Files.exists(dados)) return null;
+        try (DataInputStream d = new DataInputStream(new BufferedInputStream(Files.newInputStream(arquivo)))) {
+            if (d.readInt() != MAGICO) return null;
+            if (d.readLong() != Files.size(dados) || d.readLong() != Files.getLastModifiedTime(dados).toMillis()) {
+                return null;
+            }
+            long[] uuids = new long[d.readInt() * 2];
+            for (int i = 0; i < uuids.length; i++) uuids[i] = d.readLong();
+            int n = d.readInt();
+            Set<String> outros = new HashSet<>();
+            for (int i = 0; i < n; i++) outros.add(d.readUTF());
+            return new IdsDoMes(uuids, outros);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static UUID comoUuid(String id) {
+        if (id == null || id.length() != 36) return null;
+        try {
+            UUID u = UUID.fromString(id);
+            // só a forma canônica: o id tem de voltar idêntico
+            return u.toString().equals(id) ? u : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
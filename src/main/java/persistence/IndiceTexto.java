@@ -0,0 +1,216 @@
+package persistence;
+
+import model.Categoria;
+import model.Transacao;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Índice invertido das descrições: cada palavra (minúscula e sem acentos)
+ * aponta para a lista de documentos que a contêm. Documento é um número
+ * interno por transação; remover só marca o número como morto e, quando os
+ * mortos passam da metade, as listas são limpas e os vivos renumerados de 0
+ * em diante. Assim a faixa de números (e o custo de cada busca) acompanha o
+ * tamanho do livro, não o histórico de edições.
+ *
+ * Busca: todas as palavras da consulta precisam casar, cada uma como prefixo
+ * de alguma palavra da descrição ou do nome da categoria (os nomes são vistos
+ * na hora da busca, então renomear uma categoria vale na mesma hora). Casamento
+ * exato pontua mais que prefixo; no empate, a transação mais recente vem antes.
+ */
+final class IndiceTexto {
+    private static final Pattern MARCAS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARADORES = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    /**
+     * Lista de documentos em ordem de inclusão, num int[] que cresce.
+     */
+    private static final class Postagens {
+        int[] docs = new int[4];
+        int n;
+
+        void add(int doc) {
+            if (n == docs.length) docs = Arrays.copyOf(docs, n * 2);
+            docs[n++] = doc;
+        }
+
+        /**
+         * Troca cada documento pelo novo número; os mortos (-1) saem da lista.
+         */
+        void renumerar(int[] novo) {
+            int j = 0;
+            for (int i = 0; i < n; i++) if (novo[docs[i]] >= 0) docs[j++] = novo[docs[i]];
+            n = j;
+        }
+    }
+
+    /**
+     * Resultado: id da transação e o dia dela, para buscar na partição certa.
+     */
+    record Achado(String id, long epochDay) {}
+
+    private final TreeMap<String, Postagens> palavras = new TreeMap<>();
+    private final Map<String, Postagens> porCategoria = new HashMap<>();
+    private final Map<String, Integer> docPorId = new HashMap<>();
+    private String[] ids = new String[1024];
+    private int[] dias = new int[1024];
+    private final BitSet mortos = new BitSet();
+    private int proximoDoc;
+    private int vivos;
+    private int nMortos;
+
+    static String normalizar(String s) {
+        return MARCAS.matcher(Normalizer.normalize(s, Normalizer.Form.NFD)).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    static List<String> tokens(String s) {
+        if (s == null) return List.of();
+        List<String> res = new ArrayList<>();
+        for (String p : SEPARADORES.split(normalizar(s))) if (!p.isEmpty()) res.add(p);
+        return res;
+    }
+
+    synchronized int size() { return vivos; }
+
+    /** Números de documento em uso, vivos e mortos: o tamanho dos arrays de cada busca. */
+    synchronized int faixa() { return proximoDoc; }
+
+    synchronized void incluir(Transacao t) {
+        remover(t.getId());
+        if (proximoDoc == ids.length) {
+            ids = Arrays.copyOf(ids, proximoDoc * 2);
+            dias = Arrays.copyOf(dias, proximoDoc * 2);
+        }
+        int doc = proximoDoc++;
+        ids[doc] = t.getId();
+        dias[doc] = (int) t.getData().toEpochDay();
+        docPorId.put(t.getId(), doc);
+        vivos++;
+        for (String p : new LinkedHashSet<>(tokens(t.getDescricao()))) {
+            palavras.computeIfAbsent(p, k -> new Postagens()).add(doc);
+        }
+        if (t.getCategoria() != null) porCategoria.computeIfAbsent(t.getCategoria().getId(), k -> new Postagens()).add(doc);
+    }
+
+    synchronized void remover(String id) {
+        Integer doc = docPorId.remove(id);
+        if (doc == null) return;
+        mortos.set(doc);
+        ids[doc] = null;
+        vivos--;
+        if (++nMortos > vivos) compactar();
+    }
+
+    synchronized void limpar() {
+        palavras.clear();
+        porCategoria.clear();
+        docPorId.clear();
+        mortos.clear();
+        ids = new String[1024];
+        dias = new int[1024];
+        proximoDoc = 0;
+        vivos = 0;
+        nMortos = 0;
+    }
+
+    /**
+     * Até limite achados para o texto, do mais relevante para o menos.
+     */
+    synchronized List<Achado> buscar(String texto, Collection<Categoria> categorias, int limite) {
+        List<String> termos = new ArrayList<>(new LinkedHashSet<>(tokens(texto)));
+        if (termos.isEmpty() || limite <= 0) return List.of();
+
+        // termos[d] = quantos termos o documento d já casou, na ordem; pontos = exato vale 2, prefixo 1
+        short[] casados = new short[proximoDoc];
+        short[] pontos = new short[proximoDoc];
+        int candidatos = 0;
+        for (int k = 0; k < termos.size(); k++) {
+            String termo = termos.get(k);
+            candidatos = 0;
+            for (Map.Entry<String, Postagens> e : palavras.subMap(termo, true, termo + Character.MAX_VALUE, false).entrySet()) {
+                candidatos += marcar(e.getValue(), k, e.getKey().equals(termo) ? 2 : 1, casados, pontos);
+            }
+            for (Categoria c : categorias) {
+                Postagens p = porCategoria.get(c.getId());
+                if (p == null || c.getNome() == null) continue;
+                for (String palavra : tokens(c.getNome())) {
+                    if (palavra.startsWith(termo)) {
+                        candidatos += marcar(p, k, palavra.equals(termo) ? 2 : 1, casados, pontos);
+                        break;
+                    }
+                }
+            }
+            if (candidatos == 0) return List.of();
+        }
+
+        int todos = termos.size();
+        Comparator<Integer> ordem = Comparator.<Integer>comparingInt(d -> pontos[d]).thenComparingInt(d -> dias[d]);
+        PriorityQueue<Integer> melhores = new PriorityQueue<>(limite, ordem);
+        for (int d = 0; d < proximoDoc && candidatos > 0; d++) {
+            if (casados[d] != todos) continue;
+            candidatos--;
+            if (mortos.get(d)) continue;
+            if (melhores.size() == limite) {
+                // heap cheio: só entra quem supera o pior dos guardados
+                int pior = melhores.peek();
+                if (pontos[d] < pontos[pior] || pontos[d] == pontos[pior] && dias[d] <= dias[pior]) continue;
+                melhores.poll();
+            }
+            melhores.add(d);
+        }
+        List<Integer> docs = new ArrayList<>(melhores);
+        docs.sort(ordem.reversed());
+        List<Achado> res = new ArrayList<>(docs.size());
+        for (int d : docs) res.add(new Achado(ids[d], dias[d]));
+        return res;
+    }
+
+    /**
+     * Avança os documentos da lista no termo; devolve quantos avançaram.
+     */
+    private static int marcar(Postagens p, int termo, int valor, short[] casados, short[] pontos) {
+        int avancados = 0;
+        for (int i = 0; i < p.n; i++) {
+            int d = p.docs[i];
+            // só avança quem casou todos os termos anteriores e ainda não este
+            if (casados[d] == termo) {
+                casados[d]++;
+                pontos[d] += valor;
+                avancados++;
+            }
+        }
+        return avancados;
+    }
+
+    private void compactar() {
+        int[] novo = new int[proximoDoc];
+        int n = 0;
+        for (int d = 0; d < proximoDoc; d++) novo[d] = mortos.get(d) ? -1 : n++;
+        for (Iterator<Postagens> it = palavras.values().iterator(); it.hasNext(); ) {
+            Postagens p = it.next();
+            p.renumerar(novo);
+            if (p.n == 0) it.remove();
+        }
+        for (Iterator<Postagens> it = porCategoria.values().iterator(); it.hasNext(); ) {
+            Postagens p = it.next();
+            p.renumerar(novo);
+            if (p.n == 0) it.remove();
+        }
+        int capacidade = Math.max(1024, n * 2);
+        String[] novosIds = new String[capacidade];
+        int[] novosDias = new int[capacidade];
+        for (int d = 0; d < proximoDoc; d++) {
+            if (novo[d] < 0) continue;
+            novosIds[novo[d]] = ids[d];
+            novosDias[novo[d]] = dias[d];
+        }
+        ids = novosIds;
+        dias = novosDias;
+        docPorId.replaceAll((id, d) -> novo[d]);
+        proximoDoc = n;
+        mortos.clear();
+        nMortos = 0;
+    }
+}
@@ -0,0 +1,166 @@
+package persistence;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import model.Transacao;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Journal append-only das alterações em transações (transacoes.log).
+ * Cada linha é um registro JSON independente, então gravar uma alteração
+ * custa o mesmo independente do tamanho do histórico.
+ *
+ * append só serializa o registro; descarregar (na thread de gravação) escreve
+ * de uma vez tudo o que estiver pendente. Cada compactação abre uma nova
+ * geração, cujos registros só vão para o disco depois que o arquivo for
+ * truncado. Se o snapshot falhar, continuar mantém o arquivo e passa a
+ * escrever nele a nova geração, sem perder os registros anteriores.
+ */
+public class JournalTransacoes {
+
+    public enum Operacao { ADD, REMOVE, UPDATE }
+
+    /**
+     * Recebe cada registro lido do journal, na ordem em que foi gravado.
+     */
+    public interface Replay {
+        void aplicar(Operacao op, Transacao t);
+    }
+
+    private record Linha(int geracao, String texto) {}
+
+    private final Path arquivo;
+    private final List<Linha> pendentes = new ArrayList<>();
+    private int geracao;
+    private int geracaoArquivo;
+    private int registros;
+
+    public JournalTransacoes(Path arquivo) {
+        this.arquivo = arquivo;
+    }
+
+    public synchronized void append(Operacao op, Transacao t) throws IOException {
+        // sem indentação: um registro por linha
+        StringWriter linha = new StringWriter();
+        JsonWriter jw = new JsonWriter(linha);
+        jw.beginObject();
+        jw.name("op").value(op.name());
+        jw.name("transacao");
+        CodecTransacaoJson.escrever(jw, t);
+        jw.endObject();
+        jw.flush();
+        pendentes.add(new Linha(geracao, linha.toString()));
+        registros++;
+    }
+
+    /**
+     * Escreve (com fsync) os registros pendentes, se o arquivo já estiver na geração atual.
+     */
+    public synchronized void descarregar() throws IOException {
+        // com um snapshot em andamento, espera ele ser gravado ou falhar
+        if (pendentes.isEmpty() || geracaoArquivo != geracao) return;
+        try (FileChannel ch = FileChannel.open(arquivo, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            Writer w = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(ch), StandardCharsets.UTF_8));
+            for (Linha l : pendentes) {
+                w.write(l.texto());
+                w.write('\n');
+            }
+            w.flush();
+            pendentes.clear();
+            ch.force(false);
+        }
+    }
+
+    /**
+     * Chamado quando o snapshot é capturado. Devolve a nova geração, a ser
+     * passada para truncar (snapshot gravado) ou continuar (falhou).
+     */
+    public synchronized int novaGeracao() {
+        registros = 0;
+        return ++geracao;
+    }
+
+    /**
+     * Reaplica os registros do journal. Uma linha corrompida (ex.: gravação
+     * interrompida no meio) encerra o replay, preservando o que veio antes.
+     */
+    public synchronized void replay(Replay replay) throws IOException {
+        registros = 0;
+        if (!Files.exists(arquivo)) return;
+        try (BufferedReader r = Files.newBufferedReader(arquivo, StandardCharsets.UTF_8)) {
+            String linha;
+            while ((linha = r.readLine()) != null) {
+                if (linha.isBlank()) continue;
+                try {
+                    lerRegistro(new JsonReader(new StringReader(linha)), replay);
+                    registros++;
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("Journal: registro inválido ignorado em " + arquivo + ": " + e.getMessage());
+                    break;
+                }
+            }
+        }
+    }
+
+    private static void lerRegistro(JsonReader r, Replay replay) throws IOException {
+        Operacao op = null;
+        Transacao t = null;
+        r.beginObject();
+        while (r.hasNext()) {
+            switch (r.nextName()) {
+                case "op" -> op = Operacao.valueOf(r.nextString());
+                case "transacao" -> t = CodecTransacaoJson.ler(r);
+                default -> r.skipValue();
+            }
+        }
+        r.endObject();
+        if (op == null || t == null) throw new IOException("registro incompleto");
+        replay.aplicar(op, t);
+    }
+
+    /**
+     * Descarta os registros em disco após o snapshot da geração ter sido
+     * gravado, e escreve os pendentes que vieram depois dele.
+     */
+    public synchronized void truncar(int novaGeracao) throws IOException {
+        Files.write(arquivo, new byte[0]);
+        // pendentes das gerações anteriores já estão no snapshot
+        pendentes.removeIf(l -> l.geracao() < novaGeracao);
+        geracaoArquivo = Math.max(geracaoArquivo, novaGeracao);
+        descarregar();
+    }
+
+    /**
+     * O snapshot da geração não foi gravado: o arquivo continua valendo e
+     * recebe, em ordem, os pendentes das gerações anteriores e os da nova.
+     */
+    public synchronized void continuar(int novaGeracao) throws IOException {
+        geracaoArquivo = Math.max(geracaoArquivo, novaGeracao);
+        descarregar();
+    }
+
+    /**
+     * Versão síncrona: snapshot já gravado com tudo o que está em memória.
+     */
+    public synchronized void truncar() throws IOException {
+        truncar(novaGeracao());
+    }
+
+    public synchronized int getRegistros() { return registros; }
+}
@@ -3,31 +3,42 @@ package persistence;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 import model.Categoria;
 import model.Transacao;
 import util.Config;
 
 import java.io.*;
 import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 public class JsonPersistencia {
     private final Gson gson;
+    private final Gson gsonCompacto;
     private final Path dataDir;
     private final Path transacoesFile;
     private final Path categoriasFile;
+    private final Path journalFile;
 
     public JsonPersistencia() {
         this.gson = new GsonBuilder()
                 .setPrettyPrinting()
                 .registerTypeAdapter(java.time.LocalDate.class, new util.adapters.LocalDateAdapter())
                 .create();
+        this.gsonCompacto = new GsonBuilder()
+                .registerTypeAdapter(java.time.LocalDate.class, new util.adapters.LocalDateAdapter())
+                .create();
         this.dataDir = Config.getDataDir();
         this.transacoesFile = dataDir.resolve("transacoes.json");
         this.categoriasFile = dataDir.resolve("categorias.json");
+        this.journalFile = dataDir.resolve("transacoes.log");
         try {
             if (!Files.exists(dataDir)) Files.createDirectories(dataDir);
             if (!Files.exists(transacoesFile)) Files.createFile(transacoesFile);
@@ -37,18 +48,32 @@ public class JsonPersistencia {
         }
     }
 
-    public List<Transacao> loadTransacoes() {
-        try (Reader r = new FileReader(transacoesFile.toFile())) {
-            Type listType = new TypeToken<List<Transacao>>() {}.getType();
-            List<Transacao> list = gson.fromJson(r, listType);
-            return list == null ? new ArrayList<>() : list;
-        } catch (Exception e) {
-            return new ArrayList<>();
+    /**
+     * Lê as transações uma a uma e entrega cada uma ao destino, sem montar a
+     * lista inteira em memória. Se o arquivo estiver corrompido, lança
+     * IOException (o destino fica com o que foi lido); preservar o arquivo
+     * fica com quem é dono dele.
+     */
+    public void loadTransacoes(Consumer<Transacao> destino) throws IOException {
+        loadTransacoes(transacoesFile, destino);
+    }
+
+    public void loadTransacoes(Path arquivo, Consumer<Transacao> destino) throws IOException {
+        if (!Files.exists(arquivo) || Files.size(arquivo) == 0) return;
+        try (JsonReader r = new JsonReader(new InputStreamReader(Compressao.abrir(arquivo), StandardCharsets.UTF_8))) {
+            if (r.peek() == JsonToken.NULL) return;
+            r.beginArray();
+            while (r.hasNext()) {
+                destino.accept(CodecTransacaoJson.ler(r));
+            }
+            r.endArray();
+        } catch (IOException | RuntimeException e) {
+            throw new IOException("Falha ao ler " + arquivo + ": " + e.getMessage(), e);
         }
     }
 
     public List<Categoria> loadCategorias() {
-        try (Reader r = new FileReader(categoriasFile.toFile())) {
+        try (Reader r = new InputStreamReader(Compressao.abrir(categoriasFile), StandardCharsets.UTF_8)) {
             Type listType = new TypeToken<List<Categoria>>() {}.getType();
             List<Categoria> list = gson.fromJson(r, listType);
             return list == null ? new ArrayList<>() : list;
@@ -57,19 +82,72 @@ public class JsonPersistencia {
         }
     }
 
-    public void saveTransacoes(List<Transacao> transacoes) {
-        try (Writer w = new FileWriter(transacoesFile.toFile())) {
-            gson.toJson(transacoes, w);
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+    public void saveTransacoes(List<Transacao> transacoes) throws IOException {
+        saveTransacoes(transacoesFile, transacoes);
     }
 
-    public void saveCategorias(List<Categoria> categorias) {
-        try (Writer w = new FileWriter(categoriasFile.toFile())) {
-            gson.toJson(categorias, w);
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+    /**
+     * Grava em JSON. Compacta (sem indentação, GZIP) se o arquivo termina em
+     * .gz ou, dentro da pasta de dados, se o modo compactado estiver ligado.
+     */
+    public void saveTransacoes(Path arquivo, Iterable<Transacao> transacoes) throws IOException {
+        saveTransacoes(arquivo, transacoes, false);
+    }
+
+    /**
+     * Exportação: como saveTransacoes, mas com a categoria inteira em cada
+     * transação, já que o arquivo pode ser importado em outra pasta de dados.
+     */
+    public void exportarTransacoes(Path arquivo, Iterable<Transacao> transacoes) throws IOException {
+        saveTransacoes(arquivo, transacoes, true);
+    }
+
+    private void saveTransacoes(Path arquivo, Iterable<Transacao> transacoes, boolean categoriaCompleta) throws IOException {
+        boolean compactar = compactar(arquivo);
+        Compressao.gravar(arquivo, compactar, out -> {
+            JsonWriter w = new JsonWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            if (!compactar) w.setIndent("  ");
+            w.beginArray();
+            for (Transacao t : transacoes) {
+                CodecTransacaoJson.escrever(w, t, categoriaCompleta);
+            }
+            w.endArray();
+            w.flush();
+        });
+    }
+
+    public Path getTransacoesFile() {
+        return transacoesFile;
+    }
+
+    public Path getCategoriasFile() {
+        return categoriasFile;
+    }
+
+    public Path getJournalFile() {
+        return journalFile;
+    }
+
+    public Path getParticoesDir() {
+        return dataDir.resolve("transacoes");
+    }
+
+    public Path getSnapshotFile() {
+        return dataDir.resolve("transacoes.bin");
+    }
+
+    public void saveCategorias(List<Categoria> categorias) throws IOException {
+        boolean compactar = compactar(categoriasFile);
+        Compressao.gravar(categoriasFile, compactar, out -> {
+            Writer w = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            (compactar ? gsonCompacto : gson).toJson(categorias, w);
+            w.flush();
+        });
+    }
+
+    private boolean compactar(Path arquivo) {
+        if (arquivo.getFileName().toString().endsWith(".gz")) return true;
+        return Config.isArmazenamentoCompactado()
+                && arquivo.toAbsolutePath().normalize().startsWith(dataDir.toAbsolutePath().normalize());
     }
 }
\ No newline at end of file
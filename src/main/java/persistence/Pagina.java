@@ -0,0 +1,38 @@
+package persistence;
+
+import model.Transacao;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Uma página do resultado de uma Consulta. Para a seguinte, repita a consulta
+ * com {@code apos(pagina.getProximo())} enquanto temMais() for verdadeiro.
+ */
+public class Pagina {
+    /**
+     * Posição (data e id) do último item entregue.
+     */
+    public record Cursor(LocalDate data, String id) {
+        public static Cursor de(Transacao t) {
+            return new Cursor(t.getData(), t.getId());
+        }
+    }
+
+    private final List<Transacao> itens;
+    private final Cursor proximo;
+
+    public Pagina(List<Transacao> itens, Cursor proximo) {
+        this.itens = itens;
+        this.proximo = proximo;
+    }
+
+    public List<Transacao> getItens() { return itens; }
+
+    /**
+     * Cursor para a próxima página, ou null se esta for a última.
+     */
+    public Cursor getProximo() { return proximo; }
+
+    public boolean temMais() { return proximo != null; }
+}
@@ -0,0 +1,135 @@
+package persistence;
+
+import model.Receita;
+import model.Transacao;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Transações de um mês com índices secundários: por id (que é também o
+ * armazenamento, em ordem de inclusão), por data e por categoria. Guarda as
+ * chaves usadas em cada indexação, para desindexar certo mesmo que o objeto
+ * tenha sido alterado depois de incluído. Pelo mesmo motivo guarda o valor
+ * com que cada transação entrou nos totais do mês (e nos gerais, se ligados).
+ */
+final class Particao {
+    private record Chaves(LocalDate data, String categoriaId, boolean receita, BigDecimal valor) {}
+
+    private final LinkedHashMap<String, Transacao> porId = new LinkedHashMap<>();
+    private final Map<String, Chaves> chaves = new HashMap<>();
+    private final TreeMap<LocalDate, Set<Transacao>> porData = new TreeMap<>();
+    private final Map<String, Set<Transacao>> porCategoria = new HashMap<>();
+    private final TotaisCorrentes totais = new TotaisCorrentes();
+    // totais de todas as partições, atualizados junto com os deste mês
+    private TotaisCorrentes geral;
+
+    int size() { return porId.size(); }
+
+    boolean isEmpty() { return porId.isEmpty(); }
+
+    Collection<Transacao> transacoes() { return Collections.unmodifiableCollection(porId.values()); }
+
+    Transacao get(String id) { return porId.get(id); }
+
+    TotaisCorrentes totais() { return totais; }
+
+    void usarGeral(TotaisCorrentes geral) { this.geral = geral; }
+
+    /**
+     * Inclui ou substitui a transação de mesmo id.
+     */
+    void salvar(Transacao t) {
+        remover(t.getId());
+        Chaves k = new Chaves(t.getData(), t.getCategoria() == null ? null : t.getCategoria().getId(),
+                t instanceof Receita, TotaisCorrentes.valorEmBRL(t));
+        porId.put(t.getId(), t);
+        chaves.put(t.getId(), k);
+        totais.somar(k.receita(), k.valor(), k.categoriaId());
+        if (geral != null) geral.somar(k.receita(), k.valor(), k.categoriaId());
+        porData.computeIfAbsent(k.data(), d -> new LinkedHashSet<>()).add(t);
+        if (k.categoriaId() != null) porCategoria.computeIfAbsent(k.categoriaId(), c -> new LinkedHashSet<>()).add(t);
+    }
+
+    Transacao remover(String id) {
+        Transacao t = porId.remove(id);
+        if (t == null) return null;
+        Chaves k = chaves.remove(id);
+        totais.subtrair(k.receita(), k.valor(), k.categoriaId());
+        if (geral != null) geral.subtrair(k.receita(), k.valor(), k.categoriaId());
+        Set<Transacao> doDia = porData.get(k.data());
+        doDia.remove(t);
+        if (doDia.isEmpty()) porData.remove(k.data());
+        if (k.categoriaId() != null) {
+            Set<Transacao> daCat = porCategoria.get(k.categoriaId());
+            daCat.remove(t);
+            if (daCat.isEmpty()) porCategoria.remove(k.categoriaId());
+        }
+        return t;
+    }
+
+    /**
+     * Transações com data entre inicio e fim, inclusive, em ordem de data.
+     */
+    List<Transacao> entre(LocalDate inicio, LocalDate fim) {
+        List<Transacao> res = new ArrayList<>();
+        for (Set<Transacao> doDia : porData.subMap(inicio, true, fim, true).values()) res.addAll(doDia);
+        return res;
+    }
+
+    /**
+     * Acrescenta a destino as transações mais recentes até ele ter n itens.
+     */
+    void ultimas(int n, List<Transacao> destino) {
+        for (Set<Transacao> doDia : porData.descendingMap().values()) {
+            for (Transacao t : doDia) {
+                if (destino.size() >= n) return;
+                destino.add(t);
+            }
+        }
+    }
+
+    /**
+     * Transações do mês que atendem à consulta, na ordem dela. Só percorre
+     * os dias do intervalo pedido no índice de data.
+     */
+    List<Transacao> consultar(Consulta c) {
+        LocalDate inicio = c.dataInicial(), fim = c.dataFinal();
+        NavigableMap<LocalDate, Set<Transacao>> dias = porData;
+        if (inicio != null && fim != null) {
+            if (fim.isBefore(inicio)) return new ArrayList<>();
+            dias = porData.subMap(inicio, true, fim, true);
+        } else if (inicio != null) {
+            dias = porData.tailMap(inicio, true);
+        } else if (fim != null) {
+            dias = porData.headMap(fim, true);
+        }
+        if (c.isDecrescente()) dias = dias.descendingMap();
+        List<Transacao> res = new ArrayList<>();
+        for (Set<Transacao> doDia : dias.values()) {
+            int antes = res.size();
+            for (Transacao t : doDia) {
+                if (c.aceita(t)) res.add(t);
+            }
+            // na mesma data, ordena pelo id
+            if (res.size() - antes > 1) res.subList(antes, res.size()).sort(c.comparador());
+        }
+        return res;
+    }
+
+    Set<Transacao> daCategoria(String categoriaId) {
+        Set<Transacao> s = porCategoria.get(categoriaId);
+        return s == null ? Collections.emptySet() : Collections.unmodifiableSet(s);
+    }
+
+    void limpar() {
+        porId.clear();
+        chaves.clear();
+        porData.clear();
+        porCategoria.clear();
+        totais.zerar();
+    }
+
+    List<Transacao> copia() { return new ArrayList<>(porId.values()); }
+}
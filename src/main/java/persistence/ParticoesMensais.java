@@ -0,0 +1,859 @@
+package persistence;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import model.Categoria;
+import model.Transacao;
+import util.Config;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+/**
+ * Transações particionadas por mês em data/transacoes/AAAA-MM.bin, com um
+ * manifesto (manifest.json) que lista as partições, quantos registros cada
+ * uma tem e o resumo do mês (quantidade e soma por categoria e tipo), que
+ * forma o CuboMensal sem ler as partições. Partições são lidas só quando alguém pede aquele mês; as menos
+ * usadas, sem alterações pendentes, saem da memória. Cada partição carregada
+ * mantém índices por id, data e categoria, e o mês de cada id carregado fica
+ * em mesPorId, então localizar uma transação não varre listas. Para os meses
+ * fora da memória, os ids de cada partição ficam em AAAA-MM.ids (IdsDoMes),
+ * lido na abertura: um id desconhecido é descartado sem abrir partição
+ * nenhuma. Só meses sem esse arquivo (bases anteriores a ele) são lidos
+ * para procurar o id.
+ *
+ * Com Config.isMemoriaCompacta(), os meses fora do uso ficam só como
+ * TabelaCompacta (arrays de primitivos), nunca nas duas formas: a partição
+ * despejada vira tabela, e o mês lido apenas para varreduras (consultas,
+ * contagens, cubo, índice de texto) é lido direto para uma tabela. Consultas
+ * filtram pelas colunas e montam objetos só para os registros que passam;
+ * alterar ou buscar por id remonta a partição a partir da tabela, sem reler
+ * o disco. As tabelas também têm um limite, por ordem de uso; a que sai é
+ * lida de novo do disco quando preciso.
+ *
+ * Uma partição que não pode ser lida é posta de lado (renomeada) e o mês
+ * fica marcado como ilegível: o resumo que o manifesto tinha dele continua
+ * no cubo e nos totais, somado ao que for lançado depois no mês, em vez de
+ * ser trocado pelo de uma partição vazia.
+ *
+ * Os métodos públicos são sincronizados e devolvem cópias, para que as telas
+ * possam ler numa thread de fundo enquanto a da interface grava. gravar() é a
+ * exceção: roda na thread de gravação e só mexe na Gravacao e nos conjuntos
+ * concorrentes.
+ */
+public class ParticoesMensais {
+    private static final int LIMITE_CARREGADAS = 12;
+    // meses em arrays de primitivos (modo memória compacta): dez anos
+    private static final int LIMITE_COMPACTAS = 120;
+
+    private final Path dir;
+    private final Path manifesto;
+    private final JsonPersistencia json;
+    private final TreeMap<YearMonth, Integer> registrosPorMes = new TreeMap<>();
+    // ordem de acesso: o primeiro é o menos usado recentemente
+    private final LinkedHashMap<YearMonth, Particao> carregadas = new LinkedHashMap<>(16, 0.75f, true);
+    // mês de cada transação das partições carregadas
+    private final Map<String, YearMonth> mesPorId = new HashMap<>();
+    // ids dos meses que não estão em carregadas
+    private final Map<YearMonth, IdsDoMes> idsPorMes = new HashMap<>();
+    // totais de cada mês conhecido (do manifesto ou de uma leitura) e a soma deles
+    private final TreeMap<YearMonth, TotaisCorrentes> cubo = new TreeMap<>();
+    private final TotaisCorrentes geral = new TotaisCorrentes();
+    // meses com partição ilegível: resumo do conteúdo que não pôde ser lido
+    private final Map<YearMonth, TotaisCorrentes> ilegiveis = new HashMap<>();
+    // meses fora de carregadas, em arrays de primitivos; também em ordem de acesso
+    private final LinkedHashMap<YearMonth, TabelaCompacta> compactas = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<YearMonth, TabelaCompacta> mais) {
+            return size() > LIMITE_COMPACTAS;
+        }
+    };
+    // troca a categoria lida do disco pela instância canônica
+    private UnaryOperator<Categoria> categorias = UnaryOperator.identity();
+    private final Set<YearMonth> alteradas = ConcurrentHashMap.newKeySet();
+    // partições entregues à thread de gravação e ainda não escritas
+    private final Set<YearMonth> gravando = ConcurrentHashMap.newKeySet();
+    // busca por texto; montado na primeira busca e mantido a cada alteração
+    private IndiceTexto indice;
+    private boolean indiceCompleto;
+    // uma montagem por vez; buscas concorrentes esperam a que está em andamento
+    private final Object montagem = new Object();
+
+    /**
+     * Cópia das partições alteradas e do manifesto, capturada na thread que
+     * altera os dados e gravada depois na thread de gravação.
+     */
+    public static final class Gravacao {
+        private final Map<YearMonth, List<Transacao>> particoes;
+        private final Map<YearMonth, Integer> manifesto;
+        private final Map<YearMonth, TotaisCorrentes> resumos;
+        private final Map<YearMonth, TotaisCorrentes> ilegiveis;
+
+        private Gravacao(Map<YearMonth, List<Transacao>> particoes, Map<YearMonth, Integer> manifesto,
+                         Map<YearMonth, TotaisCorrentes> resumos, Map<YearMonth, TotaisCorrentes> ilegiveis) {
+            this.particoes = particoes;
+            this.manifesto = manifesto;
+            this.resumos = resumos;
+            this.ilegiveis = ilegiveis;
+        }
+
+        public boolean isVazia() { return particoes.isEmpty(); }
+    }
+
+    public ParticoesMensais(Path dir, JsonPersistencia json) {
+        this.dir = dir;
+        this.manifesto = dir.resolve("manifest.json");
+        this.json = json;
+    }
+
+    /**
+     * Define como resolver a categoria de cada transação que entra nas
+     * partições, para que todas apontem para a mesma instância por id.
+     */
+    public void usarCategorias(UnaryOperator<Categoria> resolvedor) {
+        this.categorias = resolvedor;
+    }
+
+    public boolean existe() {
+        return Files.exists(manifesto);
+    }
+
+    /**
+     * Lê o manifesto e descarta o que estiver em memória.
+     */
+    public synchronized void abrir() throws IOException {
+        registrosPorMes.clear();
+        carregadas.clear();
+        mesPorId.clear();
+        idsPorMes.clear();
+        compactas.clear();
+        cubo.clear();
+        geral.zerar();
+        ilegiveis.clear();
+        alteradas.clear();
+        indice = null;
+        indiceCompleto = false;
+        if (!existe()) return;
+        JsonObject m = JsonParser.parseString(Files.readString(manifesto, StandardCharsets.UTF_8)).getAsJsonObject();
+        JsonObject ps = m.getAsJsonObject("particoes");
+        for (String chave : ps.keySet()) {
+            YearMonth mes = YearMonth.parse(chave);
+            JsonObject p = ps.getAsJsonObject(chave);
+            registrosPorMes.put(mes, p.get("registros").getAsInt());
+            IdsDoMes ids = IdsDoMes.ler(arquivoIds(mes), arquivoDados(mes));
+            if (ids != null) idsPorMes.put(mes, ids);
+            // manifestos anteriores ao cubo não têm o resumo: o mês é lido quando preciso
+            if (p.has("resumo")) {
+                TotaisCorrentes resumo = lerResumo(p.getAsJsonArray("resumo"));
+                cubo.put(mes, resumo);
+                geral.somar(resumo);
+            }
+            if (p.has("ilegivel")) ilegiveis.put(mes, lerResumo(p.getAsJsonArray("ilegivel")));
+        }
+    }
+
+    /**
+     * Meses cuja partição não pôde ser lida. Os totais deles vêm do resumo
+     * que o manifesto tinha; as transações estão no arquivo posto de lado.
+     */
+    public synchronized Set<YearMonth> mesesIlegiveis() {
+        return new TreeSet<>(ilegiveis.keySet());
+    }
+
+    // para os testes: em que forma o mês está em memória
+    synchronized boolean isCarregada(YearMonth mes) { return carregadas.containsKey(mes); }
+
+    synchronized boolean isCompacta(YearMonth mes) { return compactas.containsKey(mes); }
+
+    synchronized int compactasEmMemoria() { return compactas.size(); }
+
+    public synchronized NavigableSet<YearMonth> meses() {
+        TreeSet<YearMonth> meses = new TreeSet<>(registrosPorMes.keySet());
+        meses.addAll(carregadas.keySet());
+        return meses;
+    }
+
+    public synchronized int total() {
+        int total = 0;
+        for (YearMonth mes : meses()) {
+            Particao p = carregadas.get(mes);
+            total += p != null ? p.size() : registrosPorMes.getOrDefault(mes, 0);
+        }
+        return total;
+    }
+
+    /**
+     * Transações do mês (somente leitura), carregando a partição se preciso.
+     */
+    public synchronized List<Transacao> particao(YearMonth mes) {
+        TabelaCompacta tab = compacta(mes);
+        if (tab == null) return Collections.unmodifiableList(carregar(mes).copia());
+        List<Transacao> res = new ArrayList<>(tab.size());
+        for (int i = 0; i < tab.size(); i++) res.add(tab.transacao(i));
+        return Collections.unmodifiableList(res);
+    }
+
+    /**
+     * Transações com data entre inicio e fim, inclusive, em ordem de data.
+     * Só abre as partições dos meses do intervalo.
+     */
+    public synchronized List<Transacao> entre(LocalDate inicio, LocalDate fim) {
+        List<Transacao> res = new ArrayList<>();
+        if (fim.isBefore(inicio)) return res;
+        for (YearMonth mes : meses().subSet(YearMonth.from(inicio), true, YearMonth.from(fim), true)) {
+            TabelaCompacta tab = compacta(mes);
+            if (tab == null) {
+                res.addAll(carregar(mes).entre(inicio, fim));
+                continue;
+            }
+            for (int i : tab.doPeriodo((int) inicio.toEpochDay(), (int) fim.toEpochDay(), false)) res.add(tab.transacao(i));
+        }
+        return res;
+    }
+
+    /**
+     * Totais de todas as transações. Na primeira chamada lê os meses ainda
+     * não vistos; depois disso cada alteração atualiza os totais em O(1).
+     */
+    public synchronized TotaisCorrentes totais() {
+        completarCubo();
+        return geral.copia();
+    }
+
+    /**
+     * Cópia do cubo mês × categoria × tipo.
+     */
+    public synchronized CuboMensal cubo() {
+        completarCubo();
+        return new CuboMensal(cubo);
+    }
+
+    private void completarCubo() {
+        for (YearMonth mes : meses()) resumo(mes);
+    }
+
+    /**
+     * Totais do mês: do cubo ou, se o manifesto não os tinha, lendo o mês.
+     */
+    private TotaisCorrentes resumo(YearMonth mes) {
+        TotaisCorrentes t = cubo.get(mes);
+        if (t != null) return t;
+        if (compacta(mes) == null) carregar(mes);
+        return cubo.get(mes);
+    }
+
+    /**
+     * As n transações mais recentes, da mais nova para a mais antiga. Lê os
+     * meses do último para trás e para assim que junta n.
+     */
+    public synchronized List<Transacao> ultimas(int n) {
+        List<Transacao> res = new ArrayList<>(n);
+        for (YearMonth mes : meses().descendingSet()) {
+            if (res.size() >= n) break;
+            TabelaCompacta tab = compacta(mes);
+            if (tab == null) {
+                carregar(mes).ultimas(n, res);
+                continue;
+            }
+            for (int i : tab.doPeriodo(Integer.MIN_VALUE, Integer.MAX_VALUE, true)) {
+                if (res.size() >= n) break;
+                res.add(tab.transacao(i));
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Resultado da consulta como stream preguiçoso: cada mês do intervalo só
+     * é lido quando o consumo chega nele, sob o lock, como os demais acessos.
+     */
+    public synchronized Stream<Transacao> consultar(Consulta c) {
+        return mesesDa(c).stream().flatMap(mes -> consultarMes(mes, c).stream());
+    }
+
+    /**
+     * Quantas transações atendem à consulta. Meses inteiros dentro do período
+     * são contados pelo cubo quando os filtros são só de categoria e tipo;
+     * os demais são lidos.
+     */
+    public synchronized int contar(Consulta c) {
+        int n = 0;
+        for (YearMonth mes : mesesDa(c)) n += contarMes(mes, c);
+        return n;
+    }
+
+    /**
+     * Até limite itens da consulta a partir da posição deslocamento. Os meses
+     * anteriores à posição são pulados pela contagem, sem montar as listas.
+     */
+    public synchronized List<Transacao> consultar(Consulta c, int deslocamento, int limite) {
+        List<Transacao> res = new ArrayList<>();
+        for (YearMonth mes : mesesDa(c)) {
+            if (res.size() >= limite) break;
+            if (res.isEmpty()) {
+                int n = contarMes(mes, c);
+                if (deslocamento >= n) {
+                    deslocamento -= n;
+                    continue;
+                }
+            }
+            List<Transacao> doMes = consultarMes(mes, c);
+            int de = Math.min(deslocamento, doMes.size());
+            deslocamento = 0;
+            res.addAll(doMes.subList(de, Math.min(doMes.size(), de + limite - res.size())));
+        }
+        return res;
+    }
+
+    /**
+     * Meses que podem ter resultados, na ordem da consulta.
+     */
+    private List<YearMonth> mesesDa(Consulta c) {
+        LocalDate inicio = c.dataInicial(), fim = c.dataFinal();
+        if (inicio != null && fim != null && fim.isBefore(inicio)) return List.of();
+        NavigableSet<YearMonth> meses = meses();
+        if (inicio != null) meses = meses.tailSet(YearMonth.from(inicio), true);
+        if (fim != null) meses = meses.headSet(YearMonth.from(fim), true);
+        if (c.isDecrescente()) meses = meses.descendingSet();
+        return new ArrayList<>(meses);
+    }
+
+    private int contarMes(YearMonth mes, Consulta c) {
+        LocalDate inicio = c.dataInicial(), fim = c.dataFinal();
+        boolean inteiro = (inicio == null || !inicio.isAfter(mes.atDay(1)))
+                && (fim == null || !fim.isBefore(mes.atEndOfMonth()))
+                // o cursor corta o próprio dia dele
+                && (c.getApos() == null || !YearMonth.from(c.getApos().data()).equals(mes))
+                // o resumo de um mês ilegível conta linhas que a consulta não tem como devolver
+                && !ilegiveis.containsKey(mes);
+        if (!inteiro || !c.isSoCategoriaETipo()) {
+            TabelaCompacta tab = compacta(mes);
+            return tab == null ? carregar(mes).consultar(c).size() : contar(tab, c);
+        }
+        TotaisCorrentes t = resumo(mes);
+        int n = 0;
+        for (TotaisCorrentes.Celula cel : t.getSomas().keySet()) {
+            if (c.getReceita() != null && cel.receita() != c.getReceita()) continue;
+            if (c.getCategorias() != null && (cel.categoriaId() == null || !c.getCategorias().contains(cel.categoriaId()))) {
+                continue;
+            }
+            n += t.getQuantidade(cel.categoriaId(), cel.receita());
+        }
+        return n;
+    }
+
+    /**
+     * Até limite transações cuja descrição ou categoria tem palavras começando
+     * com as do texto, das mais relevantes para as menos. A primeira busca lê
+     * todos os meses para montar o índice; as seguintes só consultam o índice
+     * e abrem os meses dos resultados.
+     */
+    public List<Transacao> buscarTexto(String texto, Collection<Categoria> categorias, int limite) {
+        List<IndiceTexto.Achado> achados = indiceMontado().buscar(texto, categorias, limite);
+        synchronized (this) {
+            List<Transacao> res = new ArrayList<>();
+            for (IndiceTexto.Achado a : achados) {
+                Transacao t = ler(YearMonth.from(LocalDate.ofEpochDay(a.epochDay())), a.id());
+                if (t != null) res.add(t);
+            }
+            return res;
+        }
+    }
+
+    /**
+     * Monta o índice mês a mês, soltando o lock entre um mês e outro para não
+     * travar quem grava. O índice já recebe as alterações desde o início, então
+     * o que mudar no meio da montagem também entra.
+     */
+    private IndiceTexto indiceMontado() {
+        synchronized (montagem) {
+            IndiceTexto novo;
+            List<YearMonth> pendentes;
+            synchronized (this) {
+                if (indice != null && indiceCompleto) return indice;
+                novo = indice = new IndiceTexto();
+                pendentes = new ArrayList<>(meses());
+            }
+            for (YearMonth mes : pendentes) {
+                synchronized (this) {
+                    // abrir() descartou o índice no meio da montagem
+                    if (indice != novo) return novo;
+                    for (Transacao t : transacoesDe(mes)) novo.incluir(t);
+                }
+            }
+            synchronized (this) {
+                if (indice == novo) indiceCompleto = true;
+            }
+            return novo;
+        }
+    }
+
+    private synchronized List<Transacao> consultarMes(YearMonth mes, Consulta c) {
+        TabelaCompacta tab = compacta(mes);
+        return tab == null ? carregar(mes).consultar(c) : consultar(tab, c);
+    }
+
+    /**
+     * Consulta numa tabela compacta: data, tipo e categoria são filtrados nas
+     * colunas; só os registros que passam viram objetos.
+     */
+    private static List<Transacao> consultar(TabelaCompacta tab, Consulta c) {
+        List<Transacao> res = new ArrayList<>();
+        for (int i : periodo(tab, c, c.isDecrescente())) {
+            if (!aceitaColunas(tab, i, c)) continue;
+            Transacao t = tab.transacao(i);
+            if (c.aceita(t)) res.add(t);
+        }
+        // na mesma data, ordena pelo id
+        res.sort(c.comparador());
+        return res;
+    }
+
+    private static int contar(TabelaCompacta tab, Consulta c) {
+        // só data, tipo e categoria: as colunas bastam
+        boolean colunas = c.isSoCategoriaETipo() && c.getApos() == null;
+        int n = 0;
+        for (int i : periodo(tab, c, false)) {
+            if (aceitaColunas(tab, i, c) && (colunas || c.aceita(tab.transacao(i)))) n++;
+        }
+        return n;
+    }
+
+    private static int[] periodo(TabelaCompacta tab, Consulta c, boolean decrescente) {
+        LocalDate inicio = c.dataInicial(), fim = c.dataFinal();
+        return tab.doPeriodo(inicio == null ? Integer.MIN_VALUE : (int) inicio.toEpochDay(),
+                fim == null ? Integer.MAX_VALUE : (int) fim.toEpochDay(), decrescente);
+    }
+
+    private static boolean aceitaColunas(TabelaCompacta tab, int i, Consulta c) {
+        if (c.getReceita() != null && tab.isReceita(i) != c.getReceita()) return false;
+        if (c.getCategorias() == null) return true;
+        Categoria cat = tab.categoria(i);
+        return cat != null && c.getCategorias().contains(cat.getId());
+    }
+
+    public synchronized List<Transacao> daCategoria(String categoriaId) {
+        List<Transacao> res = new ArrayList<>();
+        for (YearMonth mes : meses()) {
+            TabelaCompacta tab = compacta(mes);
+            if (tab == null) {
+                res.addAll(carregar(mes).daCategoria(categoriaId));
+                continue;
+            }
+            for (int i = 0; i < tab.size(); i++) {
+                Categoria cat = tab.categoria(i);
+                if (cat != null && cat.getId().equals(categoriaId)) res.add(tab.transacao(i));
+            }
+        }
+        return res;
+    }
+
+    public synchronized Transacao buscar(String id) {
+        YearMonth mes = localizar(id);
+        return mes == null ? null : carregadas.get(mes).get(id);
+    }
+
+    /**
+     * Todas as transações. Lê partição por partição, então só a lista
+     * devolvida ocupa memória além das partições já carregadas.
+     */
+    public synchronized List<Transacao> todas() {
+        List<Transacao> todas = new ArrayList<>(total());
+        for (YearMonth mes : meses()) {
+            todas.addAll(transacoesDe(mes));
+        }
+        return todas;
+    }
+
+    public synchronized void adicionar(Transacao t) {
+        salvar(t);
+    }
+
+    /**
+     * Insere ou substitui (mesmo id) no mês da transação. Usado no replay do
+     * journal, que pode reaplicar registros já contidos no snapshot.
+     */
+    public synchronized void salvar(Transacao t) {
+        t.setCategoria(categorias.apply(t.getCategoria()));
+        YearMonth mes = YearMonth.from(t.getData());
+        YearMonth antigo = mesPorId.get(t.getId());
+        if (antigo != null && !antigo.equals(mes)) {
+            carregadas.get(antigo).remover(t.getId());
+            marcarAlterada(antigo);
+        }
+        carregar(mes).salvar(t);
+        mesPorId.put(t.getId(), mes);
+        marcarAlterada(mes);
+        if (indice != null) indice.incluir(t);
+    }
+
+    /**
+     * Inclui as transações cujo id não está no mês delas e devolve as que
+     * entraram. Só abre os meses das transações recebidas.
+     */
+    public synchronized List<Transacao> adicionarNovas(Collection<Transacao> novas) {
+        List<Transacao> incluidas = new ArrayList<>();
+        for (Transacao t : novas) {
+            if (mesPorId.containsKey(t.getId())) continue;
+            if (ler(YearMonth.from(t.getData()), t.getId()) != null) continue;
+            salvar(t);
+            incluidas.add(t);
+        }
+        return incluidas;
+    }
+
+    /**
+     * Remove pelo id; a data pode ter sido alterada depois da inclusão.
+     */
+    public synchronized boolean remover(Transacao t) {
+        YearMonth mes = localizar(t.getId());
+        if (mes == null) return false;
+        carregadas.get(mes).remover(t.getId());
+        mesPorId.remove(t.getId());
+        marcarAlterada(mes);
+        if (indice != null) indice.remover(t.getId());
+        return true;
+    }
+
+    /**
+     * Substitui a transação de mesmo id, movendo-a de partição se a data mudou.
+     */
+    public synchronized boolean substituir(Transacao t) {
+        if (localizar(t.getId()) == null) return false;
+        salvar(t);
+        return true;
+    }
+
+    /**
+     * Grava, na thread atual, apenas as partições alteradas e o manifesto.
+     */
+    public synchronized void salvarAlteradas() throws IOException {
+        Gravacao g = prepararGravacao();
+        if (!g.isVazia()) gravar(g);
+    }
+
+    /**
+     * Captura as partições alteradas. Elas ficam em memória até que gravar
+     * termine, para que nenhuma leitura do disco veja a versão anterior.
+     */
+    public synchronized Gravacao prepararGravacao() {
+        Map<YearMonth, List<Transacao>> copia = new TreeMap<>();
+        for (YearMonth mes : new ArrayList<>(alteradas)) {
+            Particao p = carregadas.get(mes);
+            copia.put(mes, p.copia());
+            // ilegível: o mês fica no manifesto, mesmo vazio, para não perder o resumo
+            if (p.isEmpty() && !ilegiveis.containsKey(mes)) registrosPorMes.remove(mes); else registrosPorMes.put(mes, p.size());
+            gravando.add(mes);
+            alteradas.remove(mes);
+        }
+        Map<YearMonth, TotaisCorrentes> resumos = new TreeMap<>();
+        for (YearMonth mes : registrosPorMes.keySet()) {
+            TotaisCorrentes t = cubo.get(mes);
+            if (t != null) resumos.put(mes, t.copia());
+        }
+        Map<YearMonth, TotaisCorrentes> perdidos = new TreeMap<>();
+        ilegiveis.forEach((mes, t) -> perdidos.put(mes, t.copia()));
+        return new Gravacao(copia, new TreeMap<>(registrosPorMes), resumos, perdidos);
+    }
+
+    public void gravar(Gravacao g) throws IOException {
+        try {
+            Files.createDirectories(dir);
+            for (Map.Entry<YearMonth, List<Transacao>> e : g.particoes.entrySet()) {
+                YearMonth mes = e.getKey();
+                List<Transacao> p = e.getValue();
+                Path bin = arquivoBin(mes);
+                Path jsonFile = arquivoJson(mes);
+                if (p.isEmpty()) {
+                    Files.deleteIfExists(bin);
+                    Files.deleteIfExists(jsonFile);
+                    Files.deleteIfExists(arquivoIds(mes));
+                    continue;
+                }
+                Path dados = bin;
+                try {
+                    SnapshotBinario.salvar(bin, p, Config.isArmazenamentoCompactado());
+                    Files.deleteIfExists(jsonFile);
+                } catch (IOException ex) {
+                    // valor fora do formato binário: mantém a partição em JSON
+                    System.err.println(ex.getMessage() + " — gravando " + jsonFile.getFileName());
+                    json.saveTransacoes(jsonFile, p);
+                    Files.deleteIfExists(bin);
+                    dados = jsonFile;
+                }
+                IdsDoMes.de(p).gravar(arquivoIds(mes), dados);
+            }
+            salvarManifesto(g.manifesto, g.resumos, g.ilegiveis);
+        } catch (IOException | RuntimeException e) {
+            // volta a marcar como alteradas para a próxima compactação tentar de novo
+            alteradas.addAll(g.particoes.keySet());
+            throw e;
+        } finally {
+            gravando.removeAll(g.particoes.keySet());
+        }
+    }
+
+    /**
+     * Grava um manifesto sem partições (base nova ou migrada sem dados).
+     */
+    public synchronized void criarVazio() throws IOException {
+        Files.createDirectories(dir);
+        salvarManifesto(registrosPorMes, Map.of(), Map.of());
+    }
+
+    private void salvarManifesto(Map<YearMonth, Integer> registrosPorMes, Map<YearMonth, TotaisCorrentes> resumos,
+                                 Map<YearMonth, TotaisCorrentes> ilegiveis) throws IOException {
+        JsonObject ps = new JsonObject();
+        for (Map.Entry<YearMonth, Integer> e : registrosPorMes.entrySet()) {
+            JsonObject p = new JsonObject();
+            p.addProperty("registros", e.getValue());
+            TotaisCorrentes resumo = resumos.get(e.getKey());
+            if (resumo != null) p.add("resumo", resumoJson(resumo));
+            TotaisCorrentes perdido = ilegiveis.get(e.getKey());
+            if (perdido != null) p.add("ilegivel", resumoJson(perdido));
+            ps.add(e.getKey().toString(), p);
+        }
+        JsonObject m = new JsonObject();
+        m.addProperty("versao", 1);
+        m.add("particoes", ps);
+        byte[] conteudo = m.toString().getBytes(StandardCharsets.UTF_8);
+        ArquivoAtomico.gravar(manifesto, out -> out.write(conteudo));
+    }
+
+    private static JsonArray resumoJson(TotaisCorrentes t) {
+        JsonArray celulas = new JsonArray();
+        for (Map.Entry<TotaisCorrentes.Celula, BigDecimal> e : t.getSomas().entrySet()) {
+            TotaisCorrentes.Celula c = e.getKey();
+            JsonObject o = new JsonObject();
+            if (c.categoriaId() != null) o.addProperty("categoria", c.categoriaId());
+            o.addProperty("tipo", c.receita() ? "Receita" : "Despesa");
+            o.addProperty("quantidade", t.getQuantidade(c.categoriaId(), c.receita()));
+            o.addProperty("soma", e.getValue());
+            celulas.add(o);
+        }
+        return celulas;
+    }
+
+    private static TotaisCorrentes lerResumo(JsonArray celulas) {
+        TotaisCorrentes t = new TotaisCorrentes();
+        for (JsonElement el : celulas) {
+            JsonObject o = el.getAsJsonObject();
+            String categoria = o.has("categoria") ? o.get("categoria").getAsString() : null;
+            t.acumular("Receita".equals(o.get("tipo").getAsString()), categoria,
+                    o.get("quantidade").getAsInt(), o.get("soma").getAsBigDecimal());
+        }
+        return t;
+    }
+
+    /**
+     * Mês da transação: pelo índice se a partição estiver carregada, senão
+     * abrindo as que ainda não estão em memória.
+     */
+    private YearMonth localizar(String id) {
+        YearMonth mes = mesPorId.get(id);
+        if (mes != null) return mes;
+        for (YearMonth m : meses()) {
+            if (carregadas.containsKey(m)) continue;
+            IdsDoMes ids = idsPorMes.get(m);
+            if (ids != null && !ids.contem(id)) continue;
+            TabelaCompacta tab = ids != null ? null : compacta(m);
+            // com o índice, confirma na partição
+            if (tab == null ? carregar(m).get(id) != null : tab.posicao(id) >= 0) {
+                // quem localiza vai ler ou alterar pela partição
+                carregar(m);
+                return m;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * O mês como tabela compacta, se ele não estiver carregado como partição
+     * e o modo compacto estiver ligado (lendo do disco se preciso); senão null.
+     */
+    private TabelaCompacta compacta(YearMonth mes) {
+        if (carregadas.containsKey(mes)) return null;
+        TabelaCompacta tab = compactas.get(mes);
+        if (tab != null || !Config.isMemoriaCompacta()) return tab;
+        return lerCompacta(mes);
+    }
+
+    /**
+     * Transações do mês para uma varredura, sem carregar a partição se o mês
+     * estiver (ou puder ficar) em tabela compacta.
+     */
+    private Collection<Transacao> transacoesDe(YearMonth mes) {
+        TabelaCompacta tab = compacta(mes);
+        if (tab == null) return carregar(mes).transacoes();
+        List<Transacao> res = new ArrayList<>(tab.size());
+        for (int i = 0; i < tab.size(); i++) res.add(tab.transacao(i));
+        return res;
+    }
+
+    /**
+     * A transação do mês pelo id, sem carregar a partição de um mês compacto.
+     */
+    private Transacao ler(YearMonth mes, String id) {
+        if (!carregadas.containsKey(mes)) {
+            if (!registrosPorMes.containsKey(mes)) return null;
+            IdsDoMes ids = idsPorMes.get(mes);
+            if (ids != null && !ids.contem(id)) return null;
+        }
+        TabelaCompacta tab = compacta(mes);
+        if (tab == null) return carregar(mes).get(id);
+        int i = tab.posicao(id);
+        return i < 0 ? null : tab.transacao(i);
+    }
+
+    private Particao carregar(YearMonth mes) {
+        Particao p = carregadas.get(mes);
+        if (p != null) return p;
+        Particao nova = new Particao();
+        // a partição passa a ser a forma do mês em memória
+        TabelaCompacta compacta = compactas.remove(mes);
+        if (compacta != null) {
+            for (int i = 0; i < compacta.size(); i++) nova.salvar(compacta.transacao(i));
+        } else if (!lerDoDisco(mes, nova::salvar)) {
+            nova.limpar();
+        }
+        return guardar(mes, nova);
+    }
+
+    /**
+     * Lê o mês do disco direto para uma tabela compacta, somando os totais
+     * no caminho, sem montar a partição.
+     */
+    private TabelaCompacta lerCompacta(YearMonth mes) {
+        TabelaCompacta lida = new TabelaCompacta(registrosPorMes.getOrDefault(mes, 0));
+        TotaisCorrentes totais = new TotaisCorrentes();
+        List<Transacao> vistas = new ArrayList<>();
+        boolean ok = lerDoDisco(mes, t -> {
+            lida.adicionar(t);
+            totais.somar(t);
+            if (!idsPorMes.containsKey(mes)) vistas.add(t);
+        });
+        TabelaCompacta tab = ok ? lida : new TabelaCompacta(0);
+        if (!ok) totais.zerar();
+        if (!idsPorMes.containsKey(mes)) idsPorMes.put(mes, IdsDoMes.de(ok ? vistas : List.of()));
+        tab.ajustar();
+        TotaisCorrentes perdido = ilegiveis.get(mes);
+        if (perdido != null) totais.somar(perdido);
+        trocarResumo(mes, totais);
+        compactas.put(mes, tab);
+        return tab;
+    }
+
+    /**
+     * Entrega a destino cada transação da partição em disco, já com a
+     * categoria canônica. Se a partição não puder ser lida, isola os arquivos,
+     * marca o mês como ilegível e devolve false.
+     */
+    private boolean lerDoDisco(YearMonth mes, Consumer<Transacao> destino) {
+        Consumer<Transacao> lida = t -> {
+            t.setCategoria(categorias.apply(t.getCategoria()));
+            destino.accept(t);
+        };
+        try {
+            if (Files.exists(arquivoBin(mes))) {
+                SnapshotBinario.carregar(arquivoBin(mes), lida);
+            } else if (Files.exists(arquivoJson(mes))) {
+                json.loadTransacoes(arquivoJson(mes), lida);
+            }
+            return true;
+        } catch (IOException e) {
+            // preserva o arquivo ruim para que a próxima gravação não o sobrescreva
+            System.err.println(e.getMessage() + " — partição " + mes + " isolada; totais do mês mantidos do manifesto");
+            isolar(arquivoBin(mes));
+            isolar(arquivoJson(mes));
+            try {
+                Files.deleteIfExists(arquivoIds(mes));
+            } catch (IOException ignored) {
+                // sem o arquivo de dados o índice é ignorado na leitura
+            }
+            // o resumo conhecido (manifesto, ou ilegível anterior mais o lançado depois) segue valendo
+            TotaisCorrentes conhecido = cubo.get(mes);
+            ilegiveis.put(mes, conhecido == null ? new TotaisCorrentes() : conhecido.copia());
+            return false;
+        }
+    }
+
+    private void isolar(Path arquivo) {
+        try {
+            if (Files.exists(arquivo)) {
+                Files.move(arquivo, arquivo.resolveSibling(arquivo.getFileName() + ".corrompido-" + System.currentTimeMillis()));
+            }
+        } catch (IOException ignored) {
+            // segue com a partição vazia
+        }
+    }
+
+    private Particao guardar(YearMonth mes, Particao p) {
+        // o que não pôde ser lido entra nos totais do mês, antes de ligar os gerais
+        TotaisCorrentes perdido = ilegiveis.get(mes);
+        if (perdido != null) p.totais().somar(perdido);
+        trocarResumo(mes, p.totais());
+        p.usarGeral(geral);
+        carregadas.put(mes, p);
+        idsPorMes.remove(mes);
+        for (Transacao t : p.transacoes()) mesPorId.put(t.getId(), mes);
+        despejar(mes);
+        return p;
+    }
+
+    /**
+     * Troca o resumo conhecido do mês (manifesto ou leitura anterior) pelo
+     * recalculado das transações, acertando os totais gerais.
+     */
+    private void trocarResumo(YearMonth mes, TotaisCorrentes totais) {
+        TotaisCorrentes anterior = cubo.put(mes, totais);
+        if (anterior != null) geral.subtrair(anterior);
+        geral.somar(totais);
+    }
+
+    private void marcarAlterada(YearMonth mes) {
+        alteradas.add(mes);
+    }
+
+    private void despejar(YearMonth manter) {
+        Iterator<Map.Entry<YearMonth, Particao>> it = carregadas.entrySet().iterator();
+        while (carregadas.size() > LIMITE_CARREGADAS && it.hasNext()) {
+            Map.Entry<YearMonth, Particao> e = it.next();
+            YearMonth mes = e.getKey();
+            if (mes.equals(manter) || alteradas.contains(mes) || gravando.contains(mes)) continue;
+            for (Transacao t : e.getValue().transacoes()) mesPorId.remove(t.getId());
+            idsPorMes.put(mes, IdsDoMes.de(e.getValue().transacoes()));
+            // sem alterações pendentes: a tabela tem o mesmo que o disco
+            if (Config.isMemoriaCompacta()) compactas.put(mes, TabelaCompacta.de(e.getValue().transacoes()));
+            it.remove();
+        }
+    }
+
+    private Path arquivoBin(YearMonth mes) {
+        return dir.resolve(mes + ".bin");
+    }
+
+    private Path arquivoJson(YearMonth mes) {
+        return dir.resolve(mes + ".json");
+    }
+
+    private Path arquivoIds(YearMonth mes) {
+        return dir.resolve(mes + ".ids");
+    }
+
+    // o arquivo que contém a partição: o binário ou, sem ele, o JSON
+    private Path arquivoDados(YearMonth mes) {
+        return Files.exists(arquivoBin(mes)) ? arquivoBin(mes) : arquivoJson(mes);
+    }
+}
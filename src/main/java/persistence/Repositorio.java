@@ -0,0 +1,179 @@
+package persistence;
+
+import model.Categoria;
+import model.Transacao;
+import util.Config;
+import util.exceptions.CategoriaNaoEncontradaException;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Contrato do repositório de transações e categorias. As views e os serviços
+ * dependem só dele, então rodam iguais sobre qualquer backend.
+ */
+public interface Repositorio {
+
+    /**
+     * Backend escolhido em Config: arquivos (padrão) ou SQL embarcado.
+     */
+    static Repositorio padrao() {
+        return Config.isBackendSql() ? RepositorioSql.getInstance() : RepositorioPersistencia.getInstance();
+    }
+
+    // --- Transações ---
+
+    List<Transacao> getTransacoes();
+
+    List<Transacao> getTransacoesDoMes(YearMonth mes);
+
+    /**
+     * Transações com data entre inicio e fim, inclusive.
+     */
+    List<Transacao> getTransacoesEntre(LocalDate inicio, LocalDate fim);
+
+    /**
+     * Transações que atendem à consulta, na ordem dela. O stream é
+     * preguiçoso: o backend só lê o que for sendo consumido.
+     */
+    Stream<Transacao> consultar(Consulta c);
+
+    /**
+     * Quantas transações atendem à consulta.
+     */
+    default int contar(Consulta c) {
+        return (int) consultar(c).count();
+    }
+
+    /**
+     * Até limite itens da consulta a partir da posição deslocamento (0 é o
+     * primeiro), para saltar direto a qualquer trecho do resultado. Para
+     * avançar página a página, paginar() com cursor é mais barato.
+     */
+    default List<Transacao> consultar(Consulta c, int deslocamento, int limite) {
+        return consultar(c).skip(deslocamento).limit(limite).collect(Collectors.toList());
+    }
+
+    /**
+     * Até limite itens da consulta e o cursor da página seguinte.
+     */
+    default Pagina paginar(Consulta c, int limite) {
+        if (limite <= 0) throw new IllegalArgumentException("Limite deve ser positivo");
+        List<Transacao> itens = consultar(c).limit(limite + 1L).collect(Collectors.toCollection(ArrayList::new));
+        if (itens.size() <= limite) return new Pagina(itens, null);
+        itens.remove(limite);
+        return new Pagina(itens, Pagina.Cursor.de(itens.get(limite - 1)));
+    }
+
+    /**
+     * As n transações mais recentes, da mais nova para a mais antiga. Esta
+     * versão genérica percorre tudo com um heap de n itens; os backends
+     * respondem pelo índice de data.
+     */
+    default List<Transacao> getUltimas(int n) {
+        if (n <= 0) return new ArrayList<>();
+        PriorityQueue<Transacao> heap = new PriorityQueue<>(n + 1, Comparator.comparing(Transacao::getData));
+        for (Transacao t : getTransacoes()) {
+            heap.add(t);
+            if (heap.size() > n) heap.poll();
+        }
+        List<Transacao> res = new ArrayList<>(heap);
+        res.sort(Comparator.comparing(Transacao::getData).reversed());
+        return res;
+    }
+
+    Optional<Transacao> findTransacaoById(String id);
+
+    /**
+     * Busca por palavras (ou começos de palavras) na descrição e no nome da
+     * categoria, sem diferenciar maiúsculas nem acentos. Até limite itens,
+     * dos que casam melhor para os piores e, no empate, dos mais recentes.
+     */
+    List<Transacao> buscarTexto(String texto, int limite);
+
+    List<Transacao> getTransacoesDaCategoria(String categoriaId);
+
+    /**
+     * Saldo, receitas e despesas (inclusive por categoria) de todo o
+     * histórico, mantidos a cada alteração. Devolve uma cópia.
+     */
+    TotaisCorrentes getTotais();
+
+    /**
+     * Cópia do cubo mês × categoria × tipo, para resumos e comparações sem
+     * ler as transações.
+     */
+    CuboMensal getCubo();
+
+    void addTransacao(Transacao t);
+
+    /**
+     * Inclui em lote as transações cujo id ainda não existe e devolve as que
+     * entraram. Não registra uma a uma: ao fim da carga, chame saveTransacoes().
+     */
+    List<Transacao> addTransacoes(Collection<Transacao> novas);
+
+    void removeTransacao(Transacao t);
+
+    void updateTransacao(Transacao t);
+
+    // --- Categorias ---
+
+    List<Categoria> getCategorias();
+
+    void addCategoria(Categoria c);
+
+    void removeCategoria(Categoria c);
+
+    Optional<Categoria> findCategoriaById(String id);
+
+    default Categoria requireCategoriaById(String id) throws CategoriaNaoEncontradaException {
+        return findCategoriaById(id).orElseThrow(() -> new CategoriaNaoEncontradaException("Categoria não encontrada: " + id));
+    }
+
+    /**
+     * Categoria cadastrada que corresponde à de uma transação importada: a de
+     * mesmo id, senão a de mesmo nome. Se não houver, a lida é cadastrada
+     * (desde que tenha nome; só o id não basta para criá-la).
+     */
+    default Categoria categoriaImportada(Categoria lida) {
+        if (lida == null) return null;
+        Optional<Categoria> porId = findCategoriaById(lida.getId());
+        if (porId.isPresent()) return porId.get();
+        if (lida.getNome() == null) return lida;
+        for (Categoria c : getCategorias()) {
+            if (c.getNome() != null && c.getNome().trim().equalsIgnoreCase(lida.getNome().trim())) return c;
+        }
+        addCategoria(lida);
+        return lida;
+    }
+
+    // --- Ciclo de vida e persistência ---
+
+    void loadAll();
+
+    void saveAll();
+
+    void saveTransacoes();
+
+    void saveCategorias();
+
+    /**
+     * Espera as gravações pendentes chegarem ao disco.
+     */
+    void flush();
+
+    void exportarJson(Path destino) throws IOException;
+
+    int importarJson(Path origem) throws IOException;
+}
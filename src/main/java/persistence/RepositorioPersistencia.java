@@ -12,18 +12,39 @@ import java.io.*;
 import java.lang.reflect.Type;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+/**
+ * Backend padrão: arquivos em Config.getDataDir() (partições mensais + journal).
+ */
+public class RepositorioPersistencia implements Repositorio {
+    // quantidade de registros no journal que dispara a compactação no snapshot
+    private static final int LIMITE_JOURNAL = 500;
 
-public class RepositorioPersistencia {
     private static RepositorioPersistencia instance;
-    private List<Transacao> transacoes;
+    // concorrentes: as partições resolvem categorias também nas leituras em segundo plano
     private List<Categoria> categorias;
+    private final Map<String, Categoria> categoriasPorId = new ConcurrentHashMap<>();
+    // categorias excluídas ainda referenciadas por transações: uma instância por id
+    private final Map<String, Categoria> orfas = new ConcurrentHashMap<>();
     private final JsonPersistencia json;
+    private final JournalTransacoes journal;
+    private final ParticoesMensais particoes;
+    private final GravadorAssincrono gravador;
 
-    private RepositorioPersistencia() {
-        this.transacoes = new ArrayList<>();
-        this.categorias = new ArrayList<>();
+    RepositorioPersistencia() {
+        this.categorias = new CopyOnWriteArrayList<>();
         this.json = new JsonPersistencia();
+        this.journal = new JournalTransacoes(json.getJournalFile());
+        this.particoes = new ParticoesMensais(json.getParticoesDir(), json);
+        this.gravador = new GravadorAssincrono();
+        particoes.usarCategorias(this::canonica);
     }
 
     public static synchronized RepositorioPersistencia getInstance() {
@@ -31,68 +52,259 @@ public class RepositorioPersistencia {
         return instance;
     }
 
-    public List<Transacao> getTransacoes() { return transacoes; }
+    /**
+     * Todas as transações (lê todas as partições). Para um único mês,
+     * prefira getTransacoesDoMes.
+     */
+    public List<Transacao> getTransacoes() { return particoes.todas(); }
+
+    public List<Transacao> getTransacoesDoMes(YearMonth mes) { return particoes.particao(mes); }
+
+    public List<Transacao> getTransacoesEntre(LocalDate inicio, LocalDate fim) {
+        return particoes.entre(inicio, fim);
+    }
+
+    public Stream<Transacao> consultar(Consulta c) {
+        return particoes.consultar(c);
+    }
+
+    @Override
+    public int contar(Consulta c) {
+        return particoes.contar(c);
+    }
+
+    @Override
+    public List<Transacao> consultar(Consulta c, int deslocamento, int limite) {
+        return particoes.consultar(c, deslocamento, limite);
+    }
+
+    @Override
+    public List<Transacao> getUltimas(int n) {
+        return particoes.ultimas(n);
+    }
+
+    public Optional<Transacao> findTransacaoById(String id) {
+        return Optional.ofNullable(particoes.buscar(id));
+    }
+
+    public List<Transacao> buscarTexto(String texto, int limite) {
+        return particoes.buscarTexto(texto, categorias, limite);
+    }
+
+    public List<Transacao> getTransacoesDaCategoria(String categoriaId) {
+        return particoes.daCategoria(categoriaId);
+    }
+
+    public TotaisCorrentes getTotais() {
+        return particoes.totais();
+    }
+
+    public CuboMensal getCubo() {
+        return particoes.cubo();
+    }
 
     public List<Categoria> getCategorias() { return categorias; }
 
     public void addCategoria(Categoria c) {
         categorias.add(c);
+        categoriasPorId.put(c.getId(), c);
+        orfas.remove(c.getId());
         saveCategorias();
     }
 
     public void removeCategoria(Categoria c) {
         categorias.remove(c);
+        categoriasPorId.remove(c.getId());
         saveCategorias();
     }
 
     public Optional<Categoria> findCategoriaById(String id) {
-        return categorias.stream().filter(cat -> cat.getId().equals(id)).findFirst();
+        return id == null ? Optional.empty() : Optional.ofNullable(categoriasPorId.get(id));
     }
 
-    public Categoria requireCategoriaById(String id) throws CategoriaNaoEncontradaException {
-        return findCategoriaById(id).orElseThrow(() -> new CategoriaNaoEncontradaException("Categoria não encontrada: " + id));
+    /**
+     * Instância única da categoria com o id de lida: a cadastrada ou, se
+     * ela foi excluída, um marcador compartilhado por todas as transações
+     * que ainda a referenciam.
+     */
+    private Categoria canonica(Categoria lida) {
+        if (lida == null) return null;
+        Categoria c = categoriasPorId.get(lida.getId());
+        if (c != null) return c;
+        return orfas.computeIfAbsent(lida.getId(), id ->
+                new Categoria(id, lida.getNome() != null ? lida.getNome() : "Sem categoria", lida.getCor()));
     }
 
     public void addTransacao(Transacao t) {
-        transacoes.add(t);
-        saveTransacoes();
+        particoes.adicionar(t);
+        registrar(JournalTransacoes.Operacao.ADD, t);
+    }
+
+    public List<Transacao> addTransacoes(Collection<Transacao> novas) {
+        return particoes.adicionarNovas(novas);
     }
 
     public void removeTransacao(Transacao t) {
-        transacoes.remove(t);
-        saveTransacoes();
+        if (particoes.remover(t)) registrar(JournalTransacoes.Operacao.REMOVE, t);
+    }
+
+    /**
+     * Registra a alteração de uma transação já existente (mesmo id).
+     */
+    public void updateTransacao(Transacao t) {
+        if (particoes.substituir(t)) registrar(JournalTransacoes.Operacao.UPDATE, t);
+    }
+
+    private void registrar(JournalTransacoes.Operacao op, Transacao t) {
+        try {
+            journal.append(op, t);
+        } catch (IOException e) {
+            // registro não serializável: cai para a regravação das partições
+            e.printStackTrace();
+            saveTransacoes();
+            return;
+        }
+        // alterações em sequência rápida saem numa única escrita
+        gravador.agendar("journal", journal::descarregar);
+        if (journal.getRegistros() >= LIMITE_JOURNAL) saveTransacoes();
+    }
+
+    private void aplicarJournal(JournalTransacoes.Operacao op, Transacao t) {
+        switch (op) {
+            case ADD -> particoes.salvar(t);
+            case REMOVE -> particoes.remover(t);
+            case UPDATE -> {
+                if (!particoes.substituir(t)) particoes.adicionar(t);
+            }
+        }
     }
 
     public void loadAll() {
         try {
-            this.categorias = json.loadCategorias();
+            this.categorias = new CopyOnWriteArrayList<>(json.loadCategorias());
         } catch (Exception e) {
-            this.categorias = new ArrayList<>();
+            this.categorias = new CopyOnWriteArrayList<>();
         }
+        categoriasPorId.clear();
+        orfas.clear();
+        for (Categoria c : categorias) categoriasPorId.put(c.getId(), c);
         try {
-            this.transacoes = json.loadTransacoes();
-        } catch (Exception e) {
-            this.transacoes = new ArrayList<>();
+            if (particoes.existe()) particoes.abrir(); else migrarSnapshotUnico();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        try {
+            journal.replay(this::aplicarJournal);
+        } catch (IOException e) {
+            e.printStackTrace();
         }
         // Se não houver categorias, criar algumas padrões
         if (categorias.isEmpty()) {
-            categorias.add(new Categoria(UUID.randomUUID().toString(), "Salário", "#4CAF50"));
-            categorias.add(new Categoria(UUID.randomUUID().toString(), "Alimentação", "#FF9800"));
-            categorias.add(new Categoria(UUID.randomUUID().toString(), "Transporte", "#2196F3"));
-            saveCategorias();
+            addCategoria(new Categoria(UUID.randomUUID().toString(), "Salário", "#4CAF50"));
+            addCategoria(new Categoria(UUID.randomUUID().toString(), "Alimentação", "#FF9800"));
+            addCategoria(new Categoria(UUID.randomUUID().toString(), "Transporte", "#2196F3"));
+        }
+    }
+
+    /**
+     * Primeira execução com partições: distribui o snapshot único anterior
+     * (transacoes.bin ou, sem ele, o transacoes.json legado) por mês.
+     */
+    private void migrarSnapshotUnico() throws IOException {
+        particoes.abrir();
+        Path bin = json.getSnapshotFile();
+        boolean lido = false;
+        if (Files.exists(bin)) {
+            try {
+                SnapshotBinario.carregar(bin, particoes::adicionar);
+                lido = true;
+            } catch (IOException e) {
+                System.err.println(e.getMessage() + " — usando transacoes.json");
+                particoes.abrir();
+            }
+        }
+        if (!lido) {
+            try {
+                json.loadTransacoes(particoes::adicionar);
+            } catch (IOException e) {
+                System.err.println(e.getMessage() + " — " + particoes.total() + " transações recuperadas");
+                // o legado é da pasta de dados: guarda uma cópia antes de seguir com o que foi lido
+                preservar(json.getTransacoesFile());
+            }
+        }
+        // grava o manifesto mesmo sem transações, para não migrar de novo
+        particoes.salvarAlteradas();
+        if (!particoes.existe()) particoes.criarVazio();
+        if (Files.exists(bin)) Files.move(bin, bin.resolveSibling(bin.getFileName() + ".migrado"));
+    }
+
+    private static void preservar(Path arquivo) {
+        try {
+            Files.copy(arquivo, arquivo.resolveSibling(arquivo.getFileName() + ".corrompido-" + System.currentTimeMillis()),
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ignored) {
+            // segue com o que foi lido
         }
     }
 
+    public void exportarJson(Path destino) throws IOException {
+        json.exportarTransacoes(destino, consultar(new Consulta())::iterator);
+    }
+
+    /**
+     * Importa de um JSON exportado as transações cujo id ainda não existe.
+     * Retorna quantas foram adicionadas.
+     */
+    public int importarJson(Path origem) throws IOException {
+        Set<String> ids = new HashSet<>();
+        for (Transacao t : getTransacoes()) ids.add(t.getId());
+        int[] novas = {0};
+        json.loadTransacoes(origem, t -> {
+            if (ids.add(t.getId())) {
+                t.setCategoria(categoriaImportada(t.getCategoria()));
+                particoes.adicionar(t);
+                novas[0]++;
+            }
+        });
+        if (novas[0] > 0) saveTransacoes();
+        return novas[0];
+    }
+
     public void saveAll() {
         saveCategorias();
         saveTransacoes();
     }
 
+    /**
+     * Compacta: regrava as partições alteradas e só então descarta o journal.
+     * A cópia é feita aqui; a escrita acontece na thread de gravação. Se a
+     * regravação falhar, o journal é mantido e segue recebendo as alterações.
+     */
     public void saveTransacoes() {
-        json.saveTransacoes(transacoes);
+        ParticoesMensais.Gravacao g = particoes.prepararGravacao();
+        int geracao = journal.novaGeracao();
+        // chave única: compactações não podem ser fundidas, cada uma leva partições diferentes
+        gravador.agendar("compactacao-" + geracao, () -> {
+            try {
+                particoes.gravar(g);
+            } catch (IOException | RuntimeException e) {
+                journal.continuar(geracao);
+                throw e;
+            }
+            journal.truncar(geracao);
+        });
     }
 
     public void saveCategorias() {
-        json.saveCategorias(categorias);
+        List<Categoria> copia = new ArrayList<>();
+        for (Categoria c : categorias) copia.add(new Categoria(c.getId(), c.getNome(), c.getCor()));
+        gravador.agendar("categorias", () -> json.saveCategorias(copia));
+    }
+
+    /**
+     * Barreira: espera todas as gravações pendentes chegarem ao disco.
+     */
+    public void flush() {
+        gravador.flush();
     }
 }
\ No newline at end of file
@@ -0,0 +1,565 @@
+package persistence;
+
+import model.Categoria;
+import model.Despesa;
+import model.Moeda;
+import model.Receita;
+import model.Transacao;
+import util.Config;
+import util.exceptions.DataInvalidaException;
+import util.exceptions.PersistenciaException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Backend em banco SQL embarcado (H2, arquivo data/financas.mv.db). Cada
+ * alteração é um INSERT/UPDATE/DELETE de uma linha e as consultas por período
+ * usam o índice de data, sem reescrever nem reler o histórico inteiro.
+ */
+public class RepositorioSql implements Repositorio {
+    private static RepositorioSql instance;
+
+    // linhas buscadas por vez ao percorrer o resultado de uma consulta
+    private static final int LOTE = 500;
+    private static final String COLUNAS = "id, tipo, data, valor_original, valor_brl, moeda, categoria_id, descricao";
+
+    private final JsonPersistencia json;
+    private Connection conn;
+    // concorrentes, como no backend em arquivo: a tela lê em segundo plano
+    private final List<Categoria> categorias = new CopyOnWriteArrayList<>();
+    private final Map<String, Categoria> categoriasPorId = new ConcurrentHashMap<>();
+    // categorias excluídas ainda referenciadas: uma instância por id
+    private final Map<String, Categoria> orfas = new ConcurrentHashMap<>();
+    private final TotaisCorrentes totais = new TotaisCorrentes();
+    private final Map<YearMonth, TotaisCorrentes> cubo = new TreeMap<>();
+    // busca por texto; montado na primeira busca e mantido a cada alteração
+    private IndiceTexto indice;
+
+    RepositorioSql() {
+        this.json = new JsonPersistencia();
+    }
+
+    public static synchronized RepositorioSql getInstance() {
+        if (instance == null) instance = new RepositorioSql();
+        return instance;
+    }
+
+    // --- Transações ---
+
+    public synchronized List<Transacao> getTransacoes() {
+        return consultar("SELECT " + COLUNAS + " FROM transacao ORDER BY data");
+    }
+
+    public List<Transacao> getTransacoesDoMes(YearMonth mes) {
+        return getTransacoesEntre(mes.atDay(1), mes.atEndOfMonth());
+    }
+
+    public synchronized List<Transacao> getTransacoesEntre(LocalDate inicio, LocalDate fim) {
+        return consultar("SELECT " + COLUNAS + " FROM transacao WHERE data BETWEEN ? AND ? ORDER BY data",
+                java.sql.Date.valueOf(inicio), java.sql.Date.valueOf(fim));
+    }
+
+    /**
+     * Percorre o resultado em lotes de LOTE linhas, cada um continuando do
+     * último (data, id) lido, sem OFFSET nem cursor aberto no banco.
+     */
+    public Stream<Transacao> consultar(Consulta c) {
+        Iterator<Transacao> it = new Iterator<>() {
+            private Pagina.Cursor cursor = c.getApos();
+            private Iterator<Transacao> lote = Collections.emptyIterator();
+            private boolean acabou;
+
+            public boolean hasNext() {
+                if (!lote.hasNext() && !acabou) {
+                    List<Transacao> linhas = buscarLote(c, cursor);
+                    acabou = linhas.size() < LOTE;
+                    if (!linhas.isEmpty()) cursor = Pagina.Cursor.de(linhas.get(linhas.size() - 1));
+                    lote = linhas.iterator();
+                }
+                return lote.hasNext();
+            }
+
+            public Transacao next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return lote.next();
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(it, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    private synchronized List<Transacao> buscarLote(Consulta c, Pagina.Cursor apos) {
+        List<Object> params = new ArrayList<>();
+        String sql = "SELECT " + COLUNAS + " FROM transacao" + filtro(c, apos, params) + ordem(c) + " LIMIT " + LOTE;
+        return consultar(sql, params.toArray());
+    }
+
+    @Override
+    public synchronized int contar(Consulta c) {
+        List<Object> params = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement("SELECT COUNT(*) FROM transacao" + filtro(c, c.getApos(), params))) {
+            for (int i = 0; i < params.size(); i++) ps.setObject(i + 1, params.get(i));
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        } catch (SQLException e) {
+            throw new PersistenciaException("Erro ao contar transações: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public synchronized List<Transacao> consultar(Consulta c, int deslocamento, int limite) {
+        List<Object> params = new ArrayList<>();
+        String sql = "SELECT " + COLUNAS + " FROM transacao" + filtro(c, c.getApos(), params) + ordem(c) + " LIMIT ? OFFSET ?";
+        params.add(limite);
+        params.add(deslocamento);
+        return consultar(sql, params.toArray());
+    }
+
+    /**
+     * Cláusula WHERE da consulta, com os parâmetros acrescentados em params.
+     */
+    private static String filtro(Consulta c, Pagina.Cursor apos, List<Object> params) {
+        StringBuilder sql = new StringBuilder(" WHERE 1 = 1");
+        if (c.getInicio() != null) {
+            sql.append(" AND data >= ?");
+            params.add(java.sql.Date.valueOf(c.getInicio()));
+        }
+        if (c.getFim() != null) {
+            sql.append(" AND data <= ?");
+            params.add(java.sql.Date.valueOf(c.getFim()));
+        }
+        if (c.getReceita() != null) {
+            sql.append(" AND tipo = ?");
+            params.add(c.getReceita() ? "Receita" : "Despesa");
+        }
+        if (c.getCategorias() != null) {
+            sql.append(" AND categoria_id IN (").append(marcadores(c.getCategorias().size())).append(")");
+            params.addAll(c.getCategorias());
+        }
+        if (c.getMoedas() != null) {
+            sql.append(" AND moeda IN (").append(marcadores(c.getMoedas().size())).append(")");
+            for (Moeda m : c.getMoedas()) params.add(m.name());
+        }
+        if (c.isSemValorBRL()) sql.append(" AND valor_brl IS NULL AND moeda <> 'BRL'");
+        if (c.getValorMinimo() != null) {
+            sql.append(" AND COALESCE(valor_brl, valor_original) >= ?");
+            params.add(c.getValorMinimo());
+        }
+        if (c.getValorMaximo() != null) {
+            sql.append(" AND COALESCE(valor_brl, valor_original) <= ?");
+            params.add(c.getValorMaximo());
+        }
+        if (c.getTexto() != null) {
+            sql.append(" AND LOWER(descricao) LIKE ? ESCAPE '\\'");
+            params.add("%" + c.getTexto().replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%");
+        }
+        if (apos != null) {
+            String op = c.isDecrescente() ? "<" : ">";
+            sql.append(" AND (data ").append(op).append(" ? OR (data = ? AND id ").append(op).append(" ?))");
+            params.add(java.sql.Date.valueOf(apos.data()));
+            params.add(java.sql.Date.valueOf(apos.data()));
+            params.add(apos.id());
+        }
+        return sql.toString();
+    }
+
+    private static String ordem(Consulta c) {
+        String dir = c.isDecrescente() ? "DESC" : "ASC";
+        return " ORDER BY data " + dir + ", id " + dir;
+    }
+
+    private static String marcadores(int n) {
+        // IN () vazio não é SQL válido; NULL não casa com nada
+        return n == 0 ? "NULL" : String.join(", ", Collections.nCopies(n, "?"));
+    }
+
+    @Override
+    public synchronized List<Transacao> getUltimas(int n) {
+        return consultar("SELECT " + COLUNAS + " FROM transacao ORDER BY data DESC, id DESC LIMIT ?", n);
+    }
+
+    public synchronized Optional<Transacao> findTransacaoById(String id) {
+        return consultar("SELECT " + COLUNAS + " FROM transacao WHERE id = ?", id).stream().findFirst();
+    }
+
+    public synchronized List<Transacao> getTransacoesDaCategoria(String categoriaId) {
+        return consultar("SELECT " + COLUNAS + " FROM transacao WHERE categoria_id = ? ORDER BY data", categoriaId);
+    }
+
+    public synchronized List<Transacao> buscarTexto(String texto, int limite) {
+        if (indice == null) {
+            IndiceTexto novo = new IndiceTexto();
+            consultar(new Consulta()).forEach(novo::incluir);
+            indice = novo;
+        }
+        List<String> ids = new ArrayList<>();
+        for (IndiceTexto.Achado a : indice.buscar(texto, categorias, limite)) ids.add(a.id());
+        // um IN por bloco de LOTE ids, devolvido na ordem dos achados
+        Map<String, Transacao> porId = new HashMap<>();
+        for (int i = 0; i < ids.size(); i += LOTE) {
+            List<String> bloco = ids.subList(i, Math.min(ids.size(), i + LOTE));
+            for (Transacao t : consultar("SELECT " + COLUNAS + " FROM transacao WHERE id IN (" + marcadores(bloco.size()) + ")",
+                    bloco.toArray())) {
+                porId.put(t.getId(), t);
+            }
+        }
+        List<Transacao> res = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Transacao t = porId.get(id);
+            if (t != null) res.add(t);
+        }
+        return res;
+    }
+
+    public synchronized TotaisCorrentes getTotais() {
+        return totais.copia();
+    }
+
+    public synchronized CuboMensal getCubo() {
+        return new CuboMensal(cubo);
+    }
+
+    public synchronized void addTransacao(Transacao t) {
+        try (PreparedStatement ps = conn.prepareStatement("INSERT INTO transacao (" + COLUNAS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?)")) {
+            preencher(ps, t);
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            throw new PersistenciaException("Erro ao incluir transação: " + e.getMessage(), e);
+        }
+        contabilizar(t);
+    }
+
+    public synchronized List<Transacao> addTransacoes(Collection<Transacao> novas) {
+        // ids já gravados, consultados em blocos de LOTE
+        Set<String> existentes = new HashSet<>();
+        List<String> ids = novas.stream().map(Transacao::getId).collect(Collectors.toList());
+        for (int i = 0; i < ids.size(); i += LOTE) {
+            List<String> bloco = ids.subList(i, Math.min(ids.size(), i + LOTE));
+            try (PreparedStatement ps = conn.prepareStatement("SELECT id FROM transacao WHERE id IN (" + marcadores(bloco.size()) + ")")) {
+                for (int j = 0; j < bloco.size(); j++) ps.setString(j + 1, bloco.get(j));
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) existentes.add(rs.getString(1));
+                }
+            } catch (SQLException e) {
+                throw new PersistenciaException("Erro ao incluir transações: " + e.getMessage(), e);
+            }
+        }
+        List<Transacao> inserir = new ArrayList<>();
+        for (Transacao t : novas) {
+            if (existentes.add(t.getId())) inserir.add(t);
+        }
+        try {
+            inserirEmLote(inserir);
+        } catch (SQLException e) {
+            throw new PersistenciaException("Erro ao incluir transações: " + e.getMessage(), e);
+        }
+        for (Transacao t : inserir) contabilizar(t);
+        return inserir;
+    }
+
+    public synchronized void removeTransacao(Transacao t) {
+        // o objeto pode ter sido alterado: desconta o que está gravado
+        Optional<Transacao> gravada = findTransacaoById(t.getId());
+        executar("DELETE FROM transacao WHERE id = ?", t.getId());
+        gravada.ifPresent(this::descontar);
+    }
+
+    public synchronized void updateTransacao(Transacao t) {
+        Optional<Transacao> gravada = findTransacaoById(t.getId());
+        if (gravada.isEmpty()) return;
+        try (PreparedStatement ps = conn.prepareStatement(
+                "UPDATE transacao SET id = ?, tipo = ?, data = ?, valor_original = ?, valor_brl = ?, moeda = ?, "
+                        + "categoria_id = ?, descricao = ? WHERE id = ?")) {
+            preencher(ps, t);
+            ps.setString(9, t.getId());
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            throw new PersistenciaException("Erro ao atualizar transação: " + e.getMessage(), e);
+        }
+        descontar(gravada.get());
+        contabilizar(t);
+    }
+
+    // --- Categorias (poucas: mantidas também em memória) ---
+
+    public List<Categoria> getCategorias() { return categorias; }
+
+    public synchronized void addCategoria(Categoria c) {
+        categorias.add(c);
+        categoriasPorId.put(c.getId(), c);
+        orfas.remove(c.getId());
+        gravarCategoria(c);
+    }
+
+    public synchronized void removeCategoria(Categoria c) {
+        categorias.remove(c);
+        categoriasPorId.remove(c.getId());
+        executar("DELETE FROM categoria WHERE id = ?", c.getId());
+    }
+
+    public Optional<Categoria> findCategoriaById(String id) {
+        return Optional.ofNullable(categoriasPorId.get(id));
+    }
+
+    // --- Ciclo de vida ---
+
+    public synchronized void loadAll() {
+        try {
+            if (conn == null) {
+                Files.createDirectories(Config.getDataDir());
+                String url = "jdbc:h2:" + Config.getDataDir().resolve("financas").toAbsolutePath();
+                conn = DriverManager.getConnection(url, "sa", "");
+                criarEsquema();
+            }
+            carregarCategorias();
+            migrarDosArquivos();
+            recalcularTotais();
+        } catch (SQLException | IOException e) {
+            throw new PersistenciaException("Erro ao abrir o banco: " + e.getMessage(), e);
+        }
+        if (categorias.isEmpty()) {
+            addCategoria(new Categoria(UUID.randomUUID().toString(), "Salário", "#4CAF50"));
+            addCategoria(new Categoria(UUID.randomUUID().toString(), "Alimentação", "#FF9800"));
+            addCategoria(new Categoria(UUID.randomUUID().toString(), "Transporte", "#2196F3"));
+        }
+    }
+
+    private void criarEsquema() throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.execute("CREATE TABLE IF NOT EXISTS categoria ("
+                    + "id VARCHAR(64) PRIMARY KEY, nome VARCHAR(255), cor VARCHAR(16))");
+            st.execute("CREATE TABLE IF NOT EXISTS transacao ("
+                    + "id VARCHAR(64) PRIMARY KEY, tipo VARCHAR(8) NOT NULL, data DATE NOT NULL, "
+                    + "valor_original DECFLOAT NOT NULL, valor_brl DECFLOAT, moeda VARCHAR(3) NOT NULL, "
+                    + "categoria_id VARCHAR(64), descricao VARCHAR(1000))");
+            st.execute("CREATE INDEX IF NOT EXISTS idx_transacao_data ON transacao(data)");
+            st.execute("CREATE INDEX IF NOT EXISTS idx_transacao_categoria ON transacao(categoria_id)");
+            st.execute("CREATE INDEX IF NOT EXISTS idx_transacao_tipo ON transacao(tipo)");
+        }
+    }
+
+    private void carregarCategorias() throws SQLException {
+        categorias.clear();
+        categoriasPorId.clear();
+        orfas.clear();
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT id, nome, cor FROM categoria ORDER BY nome")) {
+            while (rs.next()) {
+                Categoria c = new Categoria(rs.getString(1), rs.getString(2), rs.getString(3));
+                categorias.add(c);
+                categoriasPorId.put(c.getId(), c);
+            }
+        }
+    }
+
+    /**
+     * Banco vazio com dados do backend de arquivos: copia tudo uma única vez.
+     * O backend de arquivos lê qualquer formato que tenha ficado na pasta
+     * (partições, snapshot único, transacoes.json legado e o journal).
+     */
+    private void migrarDosArquivos() throws SQLException {
+        if (!categorias.isEmpty() || !haDadosEmArquivos()) return;
+        try (Statement st = conn.createStatement(); ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM transacao")) {
+            rs.next();
+            if (rs.getLong(1) > 0) return;
+        }
+        // instância própria: a única do backend de arquivos pode apontar para outra pasta
+        RepositorioPersistencia arquivos = new RepositorioPersistencia();
+        arquivos.loadAll();
+        arquivos.flush();
+        for (Categoria c : arquivos.getCategorias()) {
+            categorias.add(c);
+            categoriasPorId.put(c.getId(), c);
+            gravarCategoria(c);
+        }
+        inserirEmLote(arquivos.getTransacoes());
+    }
+
+    private boolean haDadosEmArquivos() {
+        // JsonPersistencia cria transacoes.json e categorias.json vazios
+        return Files.exists(json.getParticoesDir().resolve("manifest.json"))
+                || naoVazio(json.getSnapshotFile()) || naoVazio(json.getTransacoesFile())
+                || naoVazio(json.getJournalFile()) || naoVazio(json.getCategoriasFile());
+    }
+
+    private static boolean naoVazio(Path arquivo) {
+        try {
+            return Files.exists(arquivo) && Files.size(arquivo) > 0;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public void saveAll() {
+        // cada alteração já é gravada no banco
+    }
+
+    public void saveTransacoes() {
+        // cada alteração já é gravada no banco
+    }
+
+    public synchronized void saveCategorias() {
+        // as categorias são editadas direto nos objetos em memória
+        for (Categoria c : categorias) gravarCategoria(c);
+    }
+
+    public void flush() {
+        // sem gravações pendentes: tudo é síncrono
+    }
+
+    public void exportarJson(Path destino) throws IOException {
+        json.exportarTransacoes(destino, consultar(new Consulta())::iterator);
+    }
+
+    public synchronized int importarJson(Path origem) throws IOException {
+        Set<String> ids = new HashSet<>();
+        try (Statement st = conn.createStatement(); ResultSet rs = st.executeQuery("SELECT id FROM transacao")) {
+            while (rs.next()) ids.add(rs.getString(1));
+        } catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        List<Transacao> novas = new ArrayList<>();
+        json.loadTransacoes(origem, t -> {
+            if (!ids.add(t.getId())) return;
+            t.setCategoria(categoriaImportada(t.getCategoria()));
+            novas.add(t);
+        });
+        try {
+            inserirEmLote(novas);
+        } catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        for (Transacao t : novas) contabilizar(t);
+        return novas.size();
+    }
+
+    // --- JDBC ---
+
+    private void inserirEmLote(Collection<Transacao> transacoes) throws SQLException {
+        if (transacoes.isEmpty()) return;
+        conn.setAutoCommit(false);
+        try (PreparedStatement ps = conn.prepareStatement("INSERT INTO transacao (" + COLUNAS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?)")) {
+            int n = 0;
+            for (Transacao t : transacoes) {
+                preencher(ps, t);
+                ps.addBatch();
+                if (++n % 1000 == 0) ps.executeBatch();
+            }
+            ps.executeBatch();
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    private void recalcularTotais() throws SQLException {
+        totais.zerar();
+        cubo.clear();
+        indice = null;
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT YEAR(data), MONTH(data), tipo, categoria_id, COUNT(*), "
+                     + "SUM(COALESCE(valor_brl, valor_original)) FROM transacao "
+                     + "GROUP BY YEAR(data), MONTH(data), tipo, categoria_id")) {
+            while (rs.next()) {
+                YearMonth mes = YearMonth.of(rs.getInt(1), rs.getInt(2));
+                boolean receita = "Receita".equals(rs.getString(3));
+                totais.acumular(receita, rs.getString(4), rs.getInt(5), rs.getBigDecimal(6));
+                cubo.computeIfAbsent(mes, m -> new TotaisCorrentes())
+                        .acumular(receita, rs.getString(4), rs.getInt(5), rs.getBigDecimal(6));
+            }
+        }
+    }
+
+    private void contabilizar(Transacao t) {
+        totais.somar(t);
+        cubo.computeIfAbsent(YearMonth.from(t.getData()), m -> new TotaisCorrentes()).somar(t);
+        if (indice != null) indice.incluir(t);
+    }
+
+    private void descontar(Transacao t) {
+        totais.subtrair(t);
+        cubo.computeIfAbsent(YearMonth.from(t.getData()), m -> new TotaisCorrentes()).subtrair(t);
+        if (indice != null) indice.remover(t.getId());
+    }
+
+    private void gravarCategoria(Categoria c) {
+        try (PreparedStatement ps = conn.prepareStatement("MERGE INTO categoria (id, nome, cor) KEY (id) VALUES (?, ?, ?)")) {
+            ps.setString(1, c.getId());
+            ps.setString(2, c.getNome());
+            ps.setString(3, c.getCor());
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            throw new PersistenciaException("Erro ao gravar categoria: " + e.getMessage(), e);
+        }
+    }
+
+    private void executar(String sql, Object... params) {
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) ps.setObject(i + 1, params[i]);
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            throw new PersistenciaException("Erro no banco: " + e.getMessage(), e);
+        }
+    }
+
+    private List<Transacao> consultar(String sql, Object... params) {
+        List<Transacao> res = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) ps.setObject(i + 1, params[i]);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) res.add(ler(rs));
+            }
+        } catch (SQLException e) {
+            throw new PersistenciaException("Erro na consulta: " + e.getMessage(), e);
+        }
+        return res;
+    }
+
+    private void preencher(PreparedStatement ps, Transacao t) throws SQLException {
+        ps.setString(1, t.getId());
+        ps.setString(2, CodecTransacaoJson.tipoDe(t));
+        ps.setDate(3, java.sql.Date.valueOf(t.getData()));
+        ps.setBigDecimal(4, t.getValorOriginal());
+        ps.setBigDecimal(5, t.getValorBRL());
+        ps.setString(6, t.getMoeda().name());
+        ps.setString(7, t.getCategoria() == null ? null : t.getCategoria().getId());
+        ps.setString(8, t.getDescricao());
+    }
+
+    private Transacao ler(ResultSet rs) throws SQLException {
+        String id = rs.getString(1);
+        LocalDate data = rs.getDate(3).toLocalDate();
+        Moeda moeda = Moeda.valueOf(rs.getString(6));
+        String categoriaId = rs.getString(7);
+        Categoria cat = null;
+        if (categoriaId != null) {
+            cat = categoriasPorId.get(categoriaId);
+            // categoria excluída depois do lançamento
+            if (cat == null) cat = orfas.computeIfAbsent(categoriaId, cid -> new Categoria(cid, "Sem categoria", null));
+        }
+        try {
+            Transacao t = "Receita".equals(rs.getString(2))
+                    ? new Receita(id, data, rs.getBigDecimal(4), moeda, cat, rs.getString(8))
+                    : new Despesa(id, data, rs.getBigDecimal(4), moeda, cat, rs.getString(8));
+            t.setValorBRL(rs.getBigDecimal(5));
+            return t;
+        } catch (DataInvalidaException e) {
+            throw new SQLException("Transação inválida no banco: " + id, e);
+        }
+    }
+}
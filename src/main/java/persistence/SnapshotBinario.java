@@ -0,0 +1,225 @@
+package persistence;
+
+import model.Categoria;
+import model.Despesa;
+import model.Moeda;
+import model.Receita;
+import model.Transacao;
+import util.exceptions.DataInvalidaException;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Snapshot binário das transações (uma partição AAAA-MM.bin ou o transacoes.bin
+ * legado), lido de uma vez para um buffer no heap. Não usa mapeamento em
+ * memória: no Windows um arquivo mapeado não pode ser substituído nem
+ * renomeado enquanto o mapeamento vive (e ele só é liberado pelo GC), o que
+ * faria falhar a regravação de um mês logo depois de lido, ou o isolamento
+ * de uma partição ilegível.
+ *
+ * Layout (big-endian):
+ *   cabeçalho: magic, versão, nº de registros, nº de categorias, nº de strings,
+ *              offset da tabela de strings, CRC32 do corpo
+ *   categorias: (id, nome, cor) como índices na tabela de strings
+ *   registros: largura fixa (REGISTRO bytes), valores como unscaled long + escala
+ *   strings: (tamanho, bytes UTF-8), sem repetição
+ *
+ * No modo compactado o arquivo inteiro passa por GZIP; a leitura detecta isso
+ * e descompacta para o buffer.
+ */
+public class SnapshotBinario {
+    private static final int MAGIC = 0x46494E42; // "FINB"
+    private static final int VERSAO = 1;
+    private static final int CABECALHO = 4 + 4 + 4 + 4 + 4 + 8 + 8;
+    private static final int CATEGORIA = 3 * 4;
+    private static final int REGISTRO = 1 + 1 + 1 + 1 + 1 + 4 + 8 + 8 + 4 + 4 + 4;
+
+    private static final byte FLAG_VALOR_BRL = 1;
+
+    private SnapshotBinario() {}
+
+    public static void salvar(Path arquivo, Collection<Transacao> transacoes) throws IOException {
+        salvar(arquivo, transacoes, false);
+    }
+
+    public static void salvar(Path arquivo, Collection<Transacao> transacoes, boolean compactar) throws IOException {
+        Map<String, Integer> indiceStrings = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        Map<String, Integer> indiceCategorias = new LinkedHashMap<>();
+        List<Categoria> categorias = new ArrayList<>();
+        for (Transacao t : transacoes) {
+            Categoria c = t.getCategoria();
+            if (c != null && !indiceCategorias.containsKey(c.getId())) {
+                indiceCategorias.put(c.getId(), categorias.size());
+                categorias.add(c);
+            }
+        }
+
+        // grava num temporário e só substitui o arquivo depois do fsync
+        Path tmp = compactar
+                ? arquivo.resolveSibling(arquivo.getFileName() + ".bruto.tmp")
+                : ArquivoAtomico.temporario(arquivo);
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ch.position(CABECALHO);
+            CRC32 crc = new CRC32();
+            DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(ch), 1 << 16), crc));
+
+            for (Categoria c : categorias) {
+                out.writeInt(indice(c.getId(), indiceStrings, strings));
+                out.writeInt(indice(c.getNome(), indiceStrings, strings));
+                out.writeInt(indice(c.getCor(), indiceStrings, strings));
+            }
+            for (Transacao t : transacoes) {
+                BigDecimal original = t.getValorOriginal();
+                BigDecimal brl = t.getValorBRL();
+                out.writeByte(t instanceof Receita ? 1 : 0);
+                out.writeByte(t.getMoeda().ordinal());
+                out.writeByte(brl != null ? FLAG_VALOR_BRL : 0);
+                out.writeByte(escala(original));
+                out.writeByte(brl != null ? escala(brl) : 0);
+                out.writeInt((int) t.getData().toEpochDay());
+                out.writeLong(original.unscaledValue().longValueExact());
+                out.writeLong(brl != null ? brl.unscaledValue().longValueExact() : 0L);
+                out.writeInt(indice(t.getId(), indiceStrings, strings));
+                out.writeInt(t.getCategoria() == null ? -1 : indiceCategorias.get(t.getCategoria().getId()));
+                out.writeInt(indice(t.getDescricao(), indiceStrings, strings));
+            }
+            long offsetStrings = CABECALHO + (long) categorias.size() * CATEGORIA + (long) transacoes.size() * REGISTRO;
+            for (String s : strings) {
+                byte[] b = s.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(b.length);
+                out.write(b);
+            }
+            out.flush();
+
+            ByteBuffer cab = ByteBuffer.allocate(CABECALHO);
+            cab.putInt(MAGIC).putInt(VERSAO)
+                    .putInt(transacoes.size()).putInt(categorias.size()).putInt(strings.size())
+                    .putLong(offsetStrings).putLong(crc.getValue());
+            cab.flip();
+            ch.write(cab, 0);
+            if (!compactar) ch.force(true);
+        } catch (ArithmeticException e) {
+            Files.deleteIfExists(tmp);
+            throw new IOException("Valor não representável no snapshot binário", e);
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        if (compactar) {
+            try {
+                Compressao.gravar(arquivo, true, out -> Files.copy(tmp, out));
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } else {
+            ArquivoAtomico.substituir(tmp, arquivo);
+        }
+    }
+
+    public static void carregar(Path arquivo, Consumer<Transacao> destino) throws IOException {
+        if (Compressao.isGzip(arquivo)) {
+            byte[] conteudo;
+            try (InputStream in = Compressao.abrir(arquivo)) {
+                conteudo = in.readAllBytes();
+            }
+            ler(arquivo, ByteBuffer.wrap(conteudo), destino);
+            return;
+        }
+        ler(arquivo, ByteBuffer.wrap(Files.readAllBytes(arquivo)), destino);
+    }
+
+    private static void ler(Path arquivo, ByteBuffer buf, Consumer<Transacao> destino) throws IOException {
+        try {
+            if (buf.limit() < CABECALHO) throw new IOException("Snapshot truncado: " + arquivo);
+            if (buf.getInt() != MAGIC) throw new IOException("Não é um snapshot binário: " + arquivo);
+            int versao = buf.getInt();
+            if (versao != VERSAO) throw new IOException("Versão de snapshot não suportada: " + versao);
+            int registros = buf.getInt();
+            int nCategorias = buf.getInt();
+            int nStrings = buf.getInt();
+            long offsetStrings = buf.getLong();
+            long checksum = buf.getLong();
+
+            CRC32 crc = new CRC32();
+            crc.update(buf.slice(CABECALHO, buf.limit() - CABECALHO));
+            if (crc.getValue() != checksum) throw new IOException("Checksum inválido: " + arquivo);
+
+            String[] strings = new String[nStrings];
+            buf.position((int) offsetStrings);
+            for (int i = 0; i < nStrings; i++) {
+                byte[] b = new byte[buf.getInt()];
+                buf.get(b);
+                strings[i] = new String(b, StandardCharsets.UTF_8);
+            }
+
+            // uma única instância por categoria em todo o snapshot
+            Categoria[] categorias = new Categoria[nCategorias];
+            buf.position(CABECALHO);
+            for (int i = 0; i < nCategorias; i++) {
+                categorias[i] = new Categoria(string(strings, buf.getInt()), string(strings, buf.getInt()),
+                        string(strings, buf.getInt()));
+            }
+
+            Moeda[] moedas = Moeda.values();
+            for (int i = 0; i < registros; i++) {
+                boolean receita = buf.get() == 1;
+                Moeda moeda = moedas[buf.get()];
+                byte flags = buf.get();
+                int escalaOriginal = buf.get();
+                int escalaBRL = buf.get();
+                LocalDate data = LocalDate.ofEpochDay(buf.getInt());
+                BigDecimal original = BigDecimal.valueOf(buf.getLong(), escalaOriginal);
+                long brl = buf.getLong();
+                String id = string(strings, buf.getInt());
+                int cat = buf.getInt();
+                String descricao = string(strings, buf.getInt());
+
+                Categoria categoria = cat < 0 ? null : categorias[cat];
+                Transacao t = receita
+                        ? new Receita(id, data, original, moeda, categoria, descricao)
+                        : new Despesa(id, data, original, moeda, categoria, descricao);
+                if ((flags & FLAG_VALOR_BRL) != 0) t.setValorBRL(BigDecimal.valueOf(brl, escalaBRL));
+                destino.accept(t);
+            }
+        } catch (DataInvalidaException | RuntimeException e) {
+            throw new IOException("Snapshot binário inválido: " + arquivo, e);
+        }
+    }
+
+    private static int indice(String s, Map<String, Integer> indice, List<String> strings) {
+        if (s == null) return -1;
+        return indice.computeIfAbsent(s, k -> {
+            strings.add(k);
+            return strings.size() - 1;
+        });
+    }
+
+    private static String string(String[] strings, int i) {
+        return i < 0 ? null : strings[i];
+    }
+
+    private static byte escala(BigDecimal v) {
+        int escala = v.scale();
+        if (escala < Byte.MIN_VALUE || escala > Byte.MAX_VALUE) throw new ArithmeticException("escala " + escala);
+        return (byte) escala;
+    }
+}
@@ -0,0 +1,272 @@
+package persistence;
+
+import model.Categoria;
+import model.Despesa;
+import model.Moeda;
+import model.Receita;
+import model.Transacao;
+import util.exceptions.DataInvalidaException;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Transações guardadas em arrays paralelos de primitivos (uma "coluna" por
+ * campo) em vez de um objeto por linha: dia (epochDay), valores em centavos,
+ * índice da categoria, tipo/moeda/flags num byte e id/descrição num buffer de
+ * caracteres compartilhado. Ids no formato UUID ocupam dois longs.
+ *
+ * A escala de cada valor vai num byte à parte, e valores que não são um número
+ * inteiro de centavos (conversões de moeda) ficam também, exatos, numa tabela
+ * à parte: as somas usam os centavos e os objetos montados por transacao(i)
+ * saem idênticos aos originais.
+ */
+final class TabelaCompacta {
+    private static final int RECEITA = 1;
+    private static final int SEM_BRL = 1 << 1;
+    private static final int ID_TEXTO = 1 << 2;
+    private static final int SEM_DESCRICAO = 1 << 3;
+    // bits 4..7: ordinal da moeda
+    private static final int DESLOCAMENTO_MOEDA = 4;
+    private static final Moeda[] MOEDAS = Moeda.values();
+
+    private int n;
+    private int[] dia;
+    private long[] centavos;
+    private long[] centavosBRL;
+    private short[] categoria;
+    private byte[] flags;
+    // escala do valor original (4 bits baixos) e do valor em BRL (4 bits altos)
+    private byte[] escalas;
+    // UUID: os 128 bits; id textual: idAlto guarda o tamanho do id em textos
+    private long[] idAlto;
+    private long[] idBaixo;
+    // início do texto (id textual + descrição) de cada registro; inicioTexto[n] é o fim
+    private int[] inicioTexto;
+    private char[] textos;
+
+    private final List<Categoria> categorias = new ArrayList<>();
+    private final Map<String, Integer> indiceCategorias = new HashMap<>();
+    private final Map<Integer, BigDecimal> originaisExatos = new HashMap<>();
+    private final Map<Integer, BigDecimal> brlExatos = new HashMap<>();
+
+    TabelaCompacta(int capacidade) {
+        capacidade = Math.max(capacidade, 8);
+        dia = new int[capacidade];
+        centavos = new long[capacidade];
+        centavosBRL = new long[capacidade];
+        categoria = new short[capacidade];
+        flags = new byte[capacidade];
+        escalas = new byte[capacidade];
+        idAlto = new long[capacidade];
+        idBaixo = new long[capacidade];
+        inicioTexto = new int[capacidade + 1];
+        textos = new char[capacidade * 8];
+    }
+
+    static TabelaCompacta de(Collection<Transacao> transacoes) {
+        TabelaCompacta tabela = new TabelaCompacta(transacoes.size());
+        for (Transacao t : transacoes) tabela.adicionar(t);
+        tabela.ajustar();
+        return tabela;
+    }
+
+    /**
+     * Libera a folga dos arrays depois que a tabela foi preenchida.
+     */
+    void ajustar() {
+        textos = Arrays.copyOf(textos, inicioTexto[n]);
+        if (n < dia.length) redimensionar(Math.max(n, 1));
+    }
+
+    int size() { return n; }
+
+    void adicionar(Transacao t) {
+        if (n == dia.length) crescer();
+        int i = n;
+        int f = t instanceof Receita ? RECEITA : 0;
+        f |= t.getMoeda().ordinal() << DESLOCAMENTO_MOEDA;
+
+        dia[i] = (int) t.getData().toEpochDay();
+        centavos[i] = emCentavos(t.getValorOriginal(), i, originaisExatos);
+        int e = escala(t.getValorOriginal());
+        if (t.getValorBRL() == null) f |= SEM_BRL;
+        else {
+            centavosBRL[i] = emCentavos(t.getValorBRL(), i, brlExatos);
+            e |= escala(t.getValorBRL()) << 4;
+        }
+        escalas[i] = (byte) e;
+        categoria[i] = (short) indiceCategoria(t.getCategoria());
+
+        int pos = inicioTexto[i];
+        UUID uuid = comoUuid(t.getId());
+        if (uuid != null) {
+            idAlto[i] = uuid.getMostSignificantBits();
+            idBaixo[i] = uuid.getLeastSignificantBits();
+        } else {
+            f |= ID_TEXTO;
+            idAlto[i] = t.getId().length();
+            pos = escreverTexto(pos, t.getId());
+        }
+        if (t.getDescricao() == null) f |= SEM_DESCRICAO;
+        else pos = escreverTexto(pos, t.getDescricao());
+
+        flags[i] = (byte) f;
+        inicioTexto[i + 1] = pos;
+        n++;
+    }
+
+    // --- leitura coluna a coluna, para varreduras sem criar objetos ---
+
+    int epochDay(int i) { return dia[i]; }
+
+    boolean isReceita(int i) { return (flags[i] & RECEITA) != 0; }
+
+    /**
+     * Valor em BRL (ou o original, sem conversão) em centavos, sem sinal.
+     */
+    long centavosEmBRL(int i) {
+        return (flags[i] & SEM_BRL) != 0 ? centavos[i] : centavosBRL[i];
+    }
+
+    Categoria categoria(int i) {
+        return categoria[i] < 0 ? null : categorias.get(categoria[i]);
+    }
+
+    /**
+     * Registro com o id, ou -1. Compara as colunas, sem montar objetos.
+     */
+    int posicao(String id) {
+        UUID uuid = comoUuid(id);
+        for (int i = 0; i < n; i++) {
+            if ((flags[i] & ID_TEXTO) == 0) {
+                if (uuid != null && idAlto[i] == uuid.getMostSignificantBits()
+                        && idBaixo[i] == uuid.getLeastSignificantBits()) return i;
+            } else if (uuid == null && idAlto[i] == id.length() && textoIgual(inicioTexto[i], id)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Registros com dia (epochDay) entre de e ate, inclusive, em ordem de dia
+     * e, no mesmo dia, na ordem de inclusão.
+     */
+    int[] doPeriodo(int de, int ate, boolean decrescente) {
+        long[] chaves = new long[n];
+        int k = 0;
+        for (int i = 0; i < n; i++) {
+            if (dia[i] < de || dia[i] > ate) continue;
+            // dia nos 32 bits altos, posição nos baixos: a ordenação é estável
+            chaves[k++] = ((decrescente ? -(long) dia[i] : dia[i]) << 32) | i;
+        }
+        Arrays.sort(chaves, 0, k);
+        int[] res = new int[k];
+        for (int j = 0; j < k; j++) res[j] = (int) chaves[j];
+        return res;
+    }
+
+    /**
+     * Monta a transação do registro i. Cada chamada cria um objeto novo.
+     */
+    Transacao transacao(int i) {
+        int f = flags[i];
+        int pos = inicioTexto[i];
+        String id;
+        if ((f & ID_TEXTO) != 0) {
+            int tam = (int) idAlto[i];
+            id = new String(textos, pos, tam);
+            pos += tam;
+        } else {
+            id = new UUID(idAlto[i], idBaixo[i]).toString();
+        }
+        String descricao = (f & SEM_DESCRICAO) != 0 ? null : new String(textos, pos, inicioTexto[i + 1] - pos);
+        Moeda moeda = MOEDAS[(f >>> DESLOCAMENTO_MOEDA) & 0xF];
+        LocalDate data = LocalDate.ofEpochDay(dia[i]);
+        BigDecimal original = valor(centavos[i], escalas[i] & 0xF, i, originaisExatos);
+        try {
+            Transacao t = (f & RECEITA) != 0
+                    ? new Receita(id, data, original, moeda, categoria(i), descricao)
+                    : new Despesa(id, data, original, moeda, categoria(i), descricao);
+            if ((f & SEM_BRL) == 0) t.setValorBRL(valor(centavosBRL[i], (escalas[i] >>> 4) & 0xF, i, brlExatos));
+            return t;
+        } catch (DataInvalidaException e) {
+            // a data veio de uma transação válida
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long emCentavos(BigDecimal v, int i, Map<Integer, BigDecimal> exatos) {
+        BigDecimal c = v.movePointRight(2);
+        long arredondado = c.setScale(0, RoundingMode.HALF_EVEN).longValueExact();
+        if (c.compareTo(BigDecimal.valueOf(arredondado)) != 0 || escala(v) != v.scale()) exatos.put(i, v);
+        return arredondado;
+    }
+
+    // 0..15; fora disso o valor vai para a tabela de exatos
+    private static int escala(BigDecimal v) {
+        return v.scale() >= 0 && v.scale() <= 15 ? v.scale() : 2;
+    }
+
+    private static BigDecimal valor(long centavos, int escala, int i, Map<Integer, BigDecimal> exatos) {
+        BigDecimal exato = exatos.get(i);
+        return exato != null ? exato : BigDecimal.valueOf(centavos, 2).setScale(escala);
+    }
+
+    private int indiceCategoria(Categoria c) {
+        if (c == null) return -1;
+        Integer idx = indiceCategorias.get(c.getId());
+        if (idx == null) {
+            if (categorias.size() > Short.MAX_VALUE) throw new IllegalStateException("Categorias demais para a tabela compacta");
+            idx = categorias.size();
+            categorias.add(c);
+            indiceCategorias.put(c.getId(), idx);
+        }
+        return idx;
+    }
+
+    private int escreverTexto(int pos, String s) {
+        if (pos + s.length() > textos.length) {
+            textos = Arrays.copyOf(textos, Math.max(textos.length * 2, pos + s.length()));
+        }
+        s.getChars(0, s.length(), textos, pos);
+        return pos + s.length();
+    }
+
+    private boolean textoIgual(int pos, String s) {
+        for (int j = 0; j < s.length(); j++) {
+            if (textos[pos + j] != s.charAt(j)) return false;
+        }
+        return true;
+    }
+
+    private static UUID comoUuid(String id) {
+        if (id == null || id.length() != 36) return null;
+        try {
+            UUID u = UUID.fromString(id);
+            // só aceita a forma canônica, para o id voltar idêntico
+            return u.toString().equals(id) ? u : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private void crescer() {
+        redimensionar(dia.length * 2);
+    }
+
+    private void redimensionar(int cap) {
+        dia = Arrays.copyOf(dia, cap);
+        centavos = Arrays.copyOf(centavos, cap);
+        centavosBRL = Arrays.copyOf(centavosBRL, cap);
+        categoria = Arrays.copyOf(categoria, cap);
+        flags = Arrays.copyOf(flags, cap);
+        escalas = Arrays.copyOf(escalas, cap);
+        idAlto = Arrays.copyOf(idAlto, cap);
+        idBaixo = Arrays.copyOf(idBaixo, cap);
+        inicioTexto = Arrays.copyOf(inicioTexto, cap + 1);
+    }
+}
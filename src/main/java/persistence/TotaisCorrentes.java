@@ -0,0 +1,127 @@
+package persistence;
+
+import model.Receita;
+import model.Transacao;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Quantidade e soma por (categoria, Receita/Despesa) em aritmética exata,
+ * atualizadas a cada inclusão ou remoção em vez de recalculadas varrendo o
+ * histórico. Serve para o histórico inteiro e para cada mês do CuboMensal.
+ * Valores em BRL (ou o original, quando não houve conversão), sempre positivos.
+ */
+public class TotaisCorrentes {
+    /**
+     * Coordenada de uma célula; categoriaId null para transações sem categoria.
+     */
+    public record Celula(String categoriaId, boolean receita) {}
+
+    private static final class Acumulado {
+        int quantidade;
+        BigDecimal soma = BigDecimal.ZERO;
+    }
+
+    private BigDecimal receitas = BigDecimal.ZERO;
+    private BigDecimal despesas = BigDecimal.ZERO;
+    private int quantidade;
+    private final Map<Celula, Acumulado> celulas = new HashMap<>();
+
+    public BigDecimal getReceitas() { return receitas; }
+
+    public BigDecimal getDespesas() { return despesas; }
+
+    public BigDecimal getSaldo() { return receitas.subtract(despesas); }
+
+    public int getQuantidade() { return quantidade; }
+
+    public boolean isVazio() { return quantidade == 0; }
+
+    /**
+     * Total de despesas por id de categoria (null para as sem categoria).
+     */
+    public Map<String, BigDecimal> getDespesasPorCategoria() { return porCategoria(false); }
+
+    public Map<String, BigDecimal> getReceitasPorCategoria() { return porCategoria(true); }
+
+    public BigDecimal getSoma(String categoriaId, boolean receita) {
+        Acumulado a = celulas.get(new Celula(categoriaId, receita));
+        return a == null ? BigDecimal.ZERO : a.soma;
+    }
+
+    public int getQuantidade(String categoriaId, boolean receita) {
+        Acumulado a = celulas.get(new Celula(categoriaId, receita));
+        return a == null ? 0 : a.quantidade;
+    }
+
+    public Map<Celula, BigDecimal> getSomas() {
+        Map<Celula, BigDecimal> res = new HashMap<>();
+        celulas.forEach((c, a) -> res.put(c, a.soma));
+        return Collections.unmodifiableMap(res);
+    }
+
+    private Map<String, BigDecimal> porCategoria(boolean receita) {
+        Map<String, BigDecimal> res = new HashMap<>();
+        celulas.forEach((c, a) -> {
+            if (c.receita() == receita) res.put(c.categoriaId(), a.soma);
+        });
+        return Collections.unmodifiableMap(res);
+    }
+
+    public TotaisCorrentes copia() {
+        TotaisCorrentes c = new TotaisCorrentes();
+        c.somar(this);
+        return c;
+    }
+
+    public static BigDecimal valorEmBRL(Transacao t) {
+        return t.getValorBRL() == null ? t.getValorOriginal() : t.getValorBRL();
+    }
+
+    void somar(Transacao t) {
+        acumular(t instanceof Receita, t.getCategoria() == null ? null : t.getCategoria().getId(), 1, valorEmBRL(t));
+    }
+
+    void subtrair(Transacao t) {
+        acumular(t instanceof Receita, t.getCategoria() == null ? null : t.getCategoria().getId(), -1, valorEmBRL(t).negate());
+    }
+
+    void somar(boolean receita, BigDecimal valor, String categoriaId) {
+        acumular(receita, categoriaId, 1, valor);
+    }
+
+    void subtrair(boolean receita, BigDecimal valor, String categoriaId) {
+        acumular(receita, categoriaId, -1, valor.negate());
+    }
+
+    void somar(TotaisCorrentes outro) {
+        outro.celulas.forEach((c, a) -> acumular(c.receita(), c.categoriaId(), a.quantidade, a.soma));
+    }
+
+    void subtrair(TotaisCorrentes outro) {
+        outro.celulas.forEach((c, a) -> acumular(c.receita(), c.categoriaId(), -a.quantidade, a.soma.negate()));
+    }
+
+    /**
+     * Soma quantidade e valor numa célula (negativos para descontar).
+     */
+    void acumular(boolean receita, String categoriaId, int quantidade, BigDecimal soma) {
+        if (receita) receitas = receitas.add(soma); else despesas = despesas.add(soma);
+        this.quantidade += quantidade;
+        Celula c = new Celula(categoriaId, receita);
+        Acumulado a = celulas.computeIfAbsent(c, k -> new Acumulado());
+        a.quantidade += quantidade;
+        a.soma = a.soma.add(soma);
+        if (a.quantidade == 0) celulas.remove(c);
+    }
+
+    void zerar() {
+        receitas = BigDecimal.ZERO;
+        despesas = BigDecimal.ZERO;
+        quantidade = 0;
+        celulas.clear();
+    }
+}
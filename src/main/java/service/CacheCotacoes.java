@@ -0,0 +1,138 @@
+package service;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import persistence.ArquivoAtomico;
+import persistence.GravadorAssincrono;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Cache das cotações, por par ("USD_BRL"): a atual, com o instante em que
+ * foi obtida, e as diárias já consultadas. Com um arquivo, é carregado ao
+ * abrir e regravado em segundo plano a cada alteração (alterações seguidas
+ * saem numa única gravação), então o prazo da cotação atual vale também
+ * entre execuções.
+ */
+public class CacheCotacoes {
+
+    // formato do arquivo
+    private static class Dados {
+        Map<String, Atual> atuais = new TreeMap<>();
+        Map<String, Map<String, BigDecimal>> diarias = new TreeMap<>();
+    }
+
+    private static class Atual {
+        BigDecimal rate;
+        long timestamp; // epoch millis
+    }
+
+    private final Path arquivo;
+    private final GravadorAssincrono gravador;
+    private final Map<String, CurrencyService.CacheEntry> atuais = new ConcurrentHashMap<>();
+    private final Map<String, NavigableMap<LocalDate, BigDecimal>> diarias = new ConcurrentHashMap<>();
+
+    /**
+     * Só em memória.
+     */
+    public CacheCotacoes() {
+        this.arquivo = null;
+        this.gravador = null;
+    }
+
+    public CacheCotacoes(Path arquivo) {
+        this.arquivo = arquivo;
+        this.gravador = new GravadorAssincrono();
+        carregar();
+    }
+
+    public CurrencyService.CacheEntry getAtual(String par) {
+        return atuais.get(par);
+    }
+
+    public void putAtual(String par, CurrencyService.CacheEntry e) {
+        atuais.put(par, e);
+        agendarGravacao();
+    }
+
+    public BigDecimal getDiaria(String par, LocalDate dia) {
+        NavigableMap<LocalDate, BigDecimal> dias = diarias.get(par);
+        return dias == null ? null : dias.get(dia);
+    }
+
+    public void putDiarias(String par, Map<LocalDate, BigDecimal> cotacoes) {
+        if (cotacoes.isEmpty()) return;
+        diarias.computeIfAbsent(par, k -> new ConcurrentSkipListMap<>()).putAll(cotacoes);
+        agendarGravacao();
+    }
+
+    /**
+     * Espera a gravação pendente, se houver.
+     */
+    public void flush() {
+        if (gravador != null) gravador.flush();
+    }
+
+    private void agendarGravacao() {
+        if (gravador != null) gravador.agendar("cotacoes", this::gravar);
+    }
+
+    private void carregar() {
+        if (!Files.exists(arquivo)) return;
+        try (Reader r = Files.newBufferedReader(arquivo, StandardCharsets.UTF_8)) {
+            Dados d = new Gson().fromJson(r, Dados.class);
+            if (d == null) return;
+            if (d.atuais != null) {
+                d.atuais.forEach((par, a) -> {
+                    if (a != null && a.rate != null) {
+                        atuais.put(par, new CurrencyService.CacheEntry(a.rate, Instant.ofEpochMilli(a.timestamp)));
+                    }
+                });
+            }
+            if (d.diarias != null) {
+                d.diarias.forEach((par, dias) -> {
+                    NavigableMap<LocalDate, BigDecimal> m = new ConcurrentSkipListMap<>();
+                    dias.forEach((dia, rate) -> m.put(LocalDate.parse(dia), rate));
+                    diarias.put(par, m);
+                });
+            }
+        } catch (IOException | JsonParseException | java.time.DateTimeException e) {
+            // cache perdido: as cotações são consultadas de novo
+            System.err.println("Cache de cotações ignorado: " + e.getMessage());
+            atuais.clear();
+            diarias.clear();
+        }
+    }
+
+    private void gravar() throws IOException {
+        Dados d = new Dados();
+        atuais.forEach((par, e) -> {
+            Atual a = new Atual();
+            a.rate = e.rate;
+            a.timestamp = e.timestamp.toEpochMilli();
+            d.atuais.put(par, a);
+        });
+        diarias.forEach((par, dias) -> {
+            Map<String, BigDecimal> m = new TreeMap<>();
+            dias.forEach((dia, rate) -> m.put(dia.toString(), rate));
+            d.diarias.put(par, m);
+        });
+        Files.createDirectories(arquivo.toAbsolutePath().getParent());
+        ArquivoAtomico.gravar(arquivo, out -> {
+            Writer w = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            new Gson().toJson(d, w);
+            w.flush();
+        });
+    }
+}
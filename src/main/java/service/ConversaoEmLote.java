@@ -0,0 +1,193 @@
+package service;
+
+import model.Moeda;
+import model.Transacao;
+import persistence.Consulta;
+import persistence.Repositorio;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converte para BRL, em lote, as transações em moeda estrangeira ainda sem
+ * valorBRL (as de um extrato importado, por exemplo). Cada par (moeda, dia)
+ * distinto do lote é resolvido uma vez: primeiro no cache do
+ * CurrencyService e, para o que faltar, numa única consulta do período por
+ * moeda. Depois uma passada pelo lote preenche os valores.
+ *
+ * Não bloqueia a importação: uma moeda cuja consulta falhou não é
+ * consultada de novo até reprocessar(), e as transações sem cotação vão
+ * para a fila de pendentes. A fila não é gravada: iniciarReprocessamento a
+ * remonta a partir das transações gravadas sem valor em BRL e a tenta de
+ * novo periodicamente (com a API fora, o disjuntor do histórico falha na
+ * hora, sem esperar timeouts).
+ */
+public class ConversaoEmLote {
+    // intervalo entre as novas tentativas das pendentes
+    private static final Duration INTERVALO = Duration.ofMinutes(5);
+
+    private final CurrencyService cambio;
+    // por id: a mesma transação não entra duas vezes
+    private final Map<String, Transacao> pendentes = new ConcurrentHashMap<>();
+    // moedas cuja consulta falhou desde a última tentativa: cada lote esperaria os timeouts de novo
+    private final Set<Moeda> indisponiveis = ConcurrentHashMap.newKeySet();
+    private ScheduledExecutorService agenda;
+
+    public ConversaoEmLote(CurrencyService cambio) {
+        this.cambio = cambio;
+    }
+
+    /**
+     * Preenche o valorBRL das transações do lote que precisam e devolve
+     * quantas foram convertidas; as demais ficam pendentes.
+     */
+    public int aplicar(Collection<Transacao> lote) {
+        Map<Moeda, SortedSet<LocalDate>> dias = new EnumMap<>(Moeda.class);
+        for (Transacao t : lote) {
+            if (precisa(t)) dias.computeIfAbsent(t.getMoeda(), m -> new TreeSet<>()).add(t.getData());
+        }
+        if (dias.isEmpty()) return 0;
+
+        Map<Moeda, Map<LocalDate, BigDecimal>> taxas = new EnumMap<>(Moeda.class);
+        for (Map.Entry<Moeda, SortedSet<LocalDate>> e : dias.entrySet()) {
+            taxas.put(e.getKey(), resolver(e.getKey(), e.getValue()));
+        }
+
+        int n = 0;
+        for (Transacao t : lote) {
+            if (!precisa(t)) continue;
+            BigDecimal taxa = taxas.get(t.getMoeda()).get(t.getData());
+            if (taxa == null) {
+                pendentes.put(t.getId(), t);
+            } else {
+                t.setValorBRL(emBRL(t, taxa));
+                n++;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Tenta de novo as pendentes (e as moedas que estavam indisponíveis).
+     * Devolve as que foram convertidas, para o chamador registrar a alteração.
+     */
+    public List<Transacao> reprocessar() {
+        indisponiveis.clear();
+        List<Transacao> fila = new ArrayList<>();
+        for (Iterator<Transacao> it = pendentes.values().iterator(); it.hasNext(); ) {
+            fila.add(it.next());
+            it.remove();
+        }
+        aplicar(fila);
+        List<Transacao> convertidas = new ArrayList<>();
+        for (Transacao c : fila) if (c.getValorBRL() != null) convertidas.add(c);
+        return convertidas;
+    }
+
+    /**
+     * Reprocessa e registra no repositório as que foram convertidas; devolve quantas.
+     */
+    public int reprocessar(Repositorio repo) {
+        List<Transacao> convertidas = reprocessar();
+        for (Transacao t : convertidas) repo.updateTransacao(t);
+        return convertidas.size();
+    }
+
+    /**
+     * Põe na fila as transações gravadas em outra moeda e ainda sem valor em
+     * BRL (as que ficaram pendentes numa execução anterior). Devolve quantas.
+     */
+    public int enfileirar(Repositorio repo) {
+        int[] n = {0};
+        repo.consultar(new Consulta().semValorBRL()).forEach(t -> {
+            if (pendentes.putIfAbsent(t.getId(), t) == null) n[0]++;
+        });
+        return n[0];
+    }
+
+    /**
+     * Em segundo plano: remonta a fila a partir do repositório e, a cada
+     * INTERVALO, tenta de novo as pendentes. aoConverter é chamado (na
+     * thread da agenda) quando alguma é convertida.
+     */
+    public synchronized void iniciarReprocessamento(Repositorio repo, Runnable aoConverter) {
+        if (agenda != null) return;
+        agenda = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "conversao-pendentes");
+            t.setDaemon(true);
+            return t;
+        });
+        agenda.execute(() -> {
+            try {
+                enfileirar(repo);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        });
+        agenda.scheduleWithFixedDelay(() -> {
+            try {
+                if (!pendentes.isEmpty() && reprocessar(repo) > 0) aoConverter.run();
+            } catch (RuntimeException e) {
+                // uma falha não pode cancelar as próximas tentativas
+                e.printStackTrace();
+            }
+        }, INTERVALO.toMillis(), INTERVALO.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void pararReprocessamento() {
+        if (agenda == null) return;
+        agenda.shutdownNow();
+        agenda = null;
+    }
+
+    public int getPendentes() {
+        return pendentes.size();
+    }
+
+    private static boolean precisa(Transacao t) {
+        return t.getMoeda() != Moeda.BRL && t.getValorBRL() == null;
+    }
+
+    // centavos, como os valores digitados
+    private static BigDecimal emBRL(Transacao t, BigDecimal taxa) {
+        return t.getValorOriginal().multiply(taxa).setScale(2, RoundingMode.HALF_EVEN);
+    }
+
+    /**
+     * Cotação de cada dia: do cache e, faltando alguma, de uma consulta do
+     * primeiro ao último dia que faltam.
+     */
+    private Map<LocalDate, BigDecimal> resolver(Moeda moeda, SortedSet<LocalDate> dias) {
+        String from = moeda.name();
+        Map<LocalDate, BigDecimal> taxas = new HashMap<>();
+        SortedSet<LocalDate> faltam = new TreeSet<>();
+        for (LocalDate d : dias) {
+            BigDecimal r = cambio.getRateEmCache(from, "BRL", d);
+            if (r != null) taxas.put(d, r); else faltam.add(d);
+        }
+        if (faltam.isEmpty() || indisponiveis.contains(moeda)) return taxas;
+        try {
+            cambio.carregarHistorico(from, "BRL", faltam.first(), faltam.last());
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Cotação de " + from + " indisponível: " + e.getMessage());
+            indisponiveis.add(moeda);
+            return taxas;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return taxas;
+        }
+        for (LocalDate d : faltam) {
+            BigDecimal r = cambio.getRateEmCache(from, "BRL", d);
+            if (r != null) taxas.put(d, r);
+        }
+        return taxas;
+    }
+}
@@ -6,30 +6,104 @@ import java.net.URI;
 import java.net.http.*;
 import java.time.Duration;
 import java.time.Instant;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.*;
 
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import model.Moeda;
+import util.Config;
 
 /**
  * Classe responsável por chamadas HTTP à API de câmbio (AwesomeAPI).
- * Faz cache simples por 10 minutos. Em caso de falha, lança exceção.
+ * Faz cache por 10 minutos. Em caso de falha, lança exceção.
+ * Cotações de dias passados (getRate com data) não mudam e ficam em cache
+ * sem prazo. A instância compartilhada guarda o cache em cotacoes.json, na
+ * pasta de dados. Entre moedas do enum, só as cotações de cada uma em BRL
+ * vão à API; inversas e cruzadas saem delas (MatrizCambio).
  */
 public class CurrencyService {
 
     // URL atualizada para a AwesomeAPI (que é gratuita e não precisa de chave)
     private static final String API_BASE = "https://economia.awesomeapi.com.br/last/";
+    private static final String API_DIARIO = "https://economia.awesomeapi.com.br/json/daily/";
+    // dias buscados antes do período, para cobrir fins de semana e feriados
+    private static final int DIAS_ANTES = 7;
+    // dias por requisição ao histórico
+    private static final int MAX_DIAS = 300;
+    private static final ZoneId FUSO = ZoneId.of("America/Sao_Paulo");
+    // cotações atuais buscadas juntas: cada moeda do enum contra o real
+    private static final List<String> PARES_BASE = Arrays.stream(Moeda.values())
+            .filter(m -> m != Moeda.BRL)
+            .map(m -> m.name() + "_" + Moeda.BRL.name())
+            .toList();
+    // quanto antes do vencimento a cotação é renovada
+    private static final Duration ANTECEDENCIA = Duration.ofMinutes(1);
+    private static final Duration VERIFICACAO = Duration.ofSeconds(30);
+    // sem uso por esse tempo, a renovação para
+    private static final Duration OCIOSO = Duration.ofMinutes(15);
+    // idade máxima, além do prazo, da cotação vencida que getRate e convert
+    // devolvem sem marcação; mais velha, esperam a API
+    private static final Duration MAX_DESATUALIZADA = Duration.ofHours(1);
 
     private final HttpClient http;
-    private final Map<String, CacheEntry> cache;
+    private final CacheCotacoes cache;
     private final Duration ttl = Duration.ofMinutes(10);
 
+    private static CurrencyService instance;
+
+    // requisições da cotação atual em andamento, por par
+    private final Map<String, CompletableFuture<BigDecimal>> emVoo = new ConcurrentHashMap<>();
+    private ScheduledExecutorService agenda;
+    // um por endpoint: cotações atuais e histórico diário
+    private final Disjuntor disjuntor = new Disjuntor("API de câmbio", Duration.ofSeconds(30), Duration.ofMinutes(10));
+    private final Disjuntor disjuntorHistorico = new Disjuntor("Histórico de câmbio", Duration.ofSeconds(30), Duration.ofMinutes(10));
+    private volatile long ultimaAtividade = System.nanoTime();
+
+    /**
+     * Com cache só em memória.
+     */
     public CurrencyService() {
+        this(new CacheCotacoes());
+    }
+
+    public CurrencyService(CacheCotacoes cache) {
         this.http = HttpClient.newBuilder()
                 .connectTimeout(Duration.ofSeconds(10))
                 .build();
-        this.cache = new ConcurrentHashMap<>();
+        this.cache = cache;
+    }
+
+    /**
+     * Instância compartilhada pelas telas: um só cache e uma só requisição
+     * por par. A primeira chamada carrega o cache gravado (usar depois de
+     * Config.init).
+     */
+    public static synchronized CurrencyService getInstance() {
+        if (instance == null) instance = new CurrencyService(new CacheCotacoes(Config.getDataDir().resolve("cotacoes.json")));
+        return instance;
+    }
+
+    /**
+     * Espera o cache chegar ao disco.
+     */
+    public void flush() {
+        cache.flush();
+    }
+
+    /**
+     * Taxa com o instante em que foi obtida; desatualizada se já venceu o prazo do cache.
+     */
+    public record Cotacao(BigDecimal taxa, Instant obtidaEm, boolean desatualizada) {
+        public Duration idade() {
+            return Duration.between(obtidaEm, Instant.now());
+        }
     }
 
     public static class CacheEntry {
@@ -46,26 +120,199 @@ public class CurrencyService {
     }
 
     public BigDecimal getRate(String from, String to) throws IOException, InterruptedException {
+        try {
+            return getRateAsync(from, to).get();
+        } catch (ExecutionException ex) {
+            Throwable causa = ex.getCause();
+            if (causa instanceof IOException io) throw io;
+            if (causa instanceof RuntimeException re) throw re;
+            throw new IOException(causa);
+        }
+    }
+
+    /**
+     * Versão sem bloqueio: a cotação sai do cache ou de uma requisição
+     * assíncrona. Chamadas simultâneas para o mesmo par compartilham a mesma
+     * requisição. Falhas chegam como IOException (causa da exceção do future).
+     * Vencida há pouco (até MAX_DESATUALIZADA), a última cotação conhecida é
+     * devolvida na hora; mais velha, a chamada espera a API. Para saber a
+     * idade da cotação, use getCotacaoAsync.
+     */
+    public CompletableFuture<BigDecimal> getRateAsync(String from, String to) {
+        return getCotacaoAsync(from, to, MAX_DESATUALIZADA).thenApply(Cotacao::taxa);
+    }
+
+    /**
+     * Cotação com a sua idade. Se a do cache venceu, ela é devolvida na hora,
+     * marcada como desatualizada, e a renovação segue em segundo plano
+     * (stale-while-revalidate). Só sem nenhuma cotação conhecida a chamada
+     * espera a API; com o disjuntor aberto, falha na hora.
+     */
+    public CompletableFuture<Cotacao> getCotacaoAsync(String from, String to) {
+        return getCotacaoAsync(from, to, null);
+    }
+
+    /**
+     * tolerancia: quanto além do prazo a cotação vencida ainda é devolvida
+     * na hora; null aceita qualquer idade.
+     */
+    private CompletableFuture<Cotacao> getCotacaoAsync(String from, String to, Duration tolerancia) {
+        Moeda de = moeda(from), para = moeda(to);
+        // entre moedas do enum só os pares base vão à API; o resto sai deles
+        if (de != null && para != null && para != Moeda.BRL) return cruzada(de, para, tolerancia);
+        registrarAtividade();
         String key = cacheKey(from, to);
-        CacheEntry e = cache.get(key);
+        CacheEntry e = cache.getAtual(key);
 
-        // Verifica se existe no cache e se ainda é válido (menos de 10 min)
-        if (e != null && Instant.now().minus(ttl).isBefore(e.timestamp)) {
-            System.out.println("Recuperado do cache: " + key); // Log opcional para você ver funcionando
-            return e.rate;
+        // Verifica se existe no cache e se ainda é válido (menos de 10 min, mesmo se de outra execução)
+        if (emDia(e, Duration.ZERO)) {
+            return CompletableFuture.completedFuture(new Cotacao(e.rate, e.timestamp, false));
         }
 
-        // Se não tiver no cache, busca na API
-        BigDecimal rate = fetchRateFromApi(from, to);
-        cache.put(key, new CacheEntry(rate, Instant.now()));
-        return rate;
+        // Se não estiver em dia, busca na API (ou aproveita a busca já em andamento),
+        // junto com os pares base que vencem em breve
+        Map<String, CompletableFuture<BigDecimal>> novos = new LinkedHashMap<>();
+        CompletableFuture<BigDecimal> doPar = registrar(key, novos);
+        for (String base : PARES_BASE) {
+            if (!base.equals(key) && !emDia(cache.getAtual(base), ANTECEDENCIA)) registrar(base, novos);
+        }
+        disparar(novos);
+        if (e != null && (tolerancia == null || emDia(e, tolerancia.negated()))) {
+            return CompletableFuture.completedFuture(new Cotacao(e.rate, e.timestamp, true));
+        }
+        // dependente: quem cancelar a sua não cancela a dos outros
+        return doPar.thenApply(rate -> new Cotacao(rate, Instant.now(), false));
     }
 
-    private BigDecimal fetchRateFromApi(String from, String to) throws IOException, InterruptedException {
-        // Monta a URL no padrão: .../last/USD-BRL
-        String uri = API_BASE + from + "-" + to;
+    /**
+     * Inversa ou cruzada pelo real, a partir das cotações base (buscadas
+     * juntas numa só requisição). Desatualizada se alguma delas estiver;
+     * obtidaEm é a da mais antiga.
+     */
+    private CompletableFuture<Cotacao> cruzada(Moeda de, Moeda para, Duration tolerancia) {
+        if (de == para) return CompletableFuture.completedFuture(new Cotacao(BigDecimal.ONE, Instant.now(), false));
+        CompletableFuture<Cotacao> b = getCotacaoAsync(para.name(), Moeda.BRL.name(), tolerancia);
+        CompletableFuture<Cotacao> a = de == Moeda.BRL
+                ? b.thenApply(y -> new Cotacao(BigDecimal.ONE, y.obtidaEm(), false))
+                : getCotacaoAsync(de.name(), Moeda.BRL.name(), tolerancia);
+        return a.thenCombine(b, (x, y) -> new Cotacao(
+                MatrizCambio.cruzar(x.taxa(), y.taxa()),
+                x.obtidaEm().isBefore(y.obtidaEm()) ? x.obtidaEm() : y.obtidaEm(),
+                x.desatualizada() || y.desatualizada()));
+    }
+
+    /**
+     * Matriz com as cotações base em cache (em dia ou não), sem rede.
+     */
+    public MatrizCambio getMatrizEmCache() {
+        Map<Moeda, BigDecimal> emBRL = new EnumMap<>(Moeda.class);
+        for (Moeda m : Moeda.values()) {
+            CacheEntry e = cache.getAtual(cacheKey(m.name(), Moeda.BRL.name()));
+            if (e != null) emBRL.put(m, e.rate);
+        }
+        return new MatrizCambio(emBRL);
+    }
+
+    private static Moeda moeda(String codigo) {
+        for (Moeda m : Moeda.values()) if (m.name().equals(codigo)) return m;
+        return null;
+    }
+
+    /**
+     * Situação da API de cotações atuais, para a interface. Sem sucesso
+     * nesta execução, ultimoSucesso é o da cotação mais recente do cache.
+     */
+    public Disjuntor.Estado getEstadoApi() {
+        Disjuntor.Estado estado = disjuntor.getEstado();
+        if (estado.ultimoSucesso() != null) return estado;
+        Instant maisRecente = null;
+        for (String par : PARES_BASE) {
+            CacheEntry e = cache.getAtual(par);
+            if (e != null && (maisRecente == null || e.timestamp.isAfter(maisRecente))) maisRecente = e.timestamp;
+        }
+        return new Disjuntor.Estado(estado.situacao(), maisRecente, estado.reabreEm(), estado.ultimoErro());
+    }
+
+    private boolean emDia(CacheEntry e, Duration antecedencia) {
+        return e != null && Instant.now().minus(ttl).plus(antecedencia).isBefore(e.timestamp);
+    }
+
+    /**
+     * Future do par: o da requisição em andamento ou um novo, acrescentado a novos.
+     */
+    private CompletableFuture<BigDecimal> registrar(String key, Map<String, CompletableFuture<BigDecimal>> novos) {
+        CompletableFuture<BigDecimal> nova = new CompletableFuture<>();
+        CompletableFuture<BigDecimal> emAndamento = emVoo.putIfAbsent(key, nova);
+        if (emAndamento != null) return emAndamento;
+        novos.put(key, nova);
+        return nova;
+    }
+
+    /**
+     * Uma requisição para todos os pares registrados; ao terminar, cada um
+     * sai da lista de em andamento antes de completar, e quem chegar depois
+     * vê o cache ou tenta de novo.
+     */
+    private void disparar(Map<String, CompletableFuture<BigDecimal>> novos) {
+        if (novos.isEmpty()) return;
+        CompletableFuture<Map<String, BigDecimal>> busca;
+        if (!disjuntor.permite()) {
+            // API fora: falha na hora, sem esperar timeouts
+            busca = CompletableFuture.failedFuture(disjuntor.erroAberto());
+        } else {
+            try {
+                busca = fetchRatesAsync(new ArrayList<>(novos.keySet()));
+            } catch (RuntimeException ex) {
+                busca = CompletableFuture.failedFuture(ex);
+            }
+            busca.whenComplete((rates, erro) -> registrarResultado(disjuntor, erro));
+        }
+        busca.whenComplete((rates, erro) -> {
+            Instant agora = Instant.now();
+            novos.forEach((key, f) -> {
+                BigDecimal rate = rates == null ? null : rates.get(key);
+                if (rate != null) cache.putAtual(key, new CacheEntry(rate, agora));
+                emVoo.remove(key, f);
+                if (rate != null) {
+                    f.complete(rate);
+                } else if (erro != null) {
+                    f.completeExceptionally(erro instanceof CompletionException ? erro.getCause() : erro);
+                } else {
+                    f.completeExceptionally(new IOException("Cotação não encontrada na resposta para: " + key.replace("_", "")));
+                }
+            });
+        });
+    }
+
+    /**
+     * Falhas de rede e erros 5xx abrem o disjuntor; respostas 4xx (par
+     * inexistente, por exemplo) mostram que a API está no ar.
+     */
+    private static void registrarResultado(Disjuntor d, Throwable erro) {
+        Throwable causa = erro instanceof CompletionException && erro.getCause() != null ? erro.getCause() : erro;
+        if (causa == null || causa instanceof ErroDaApi api && api.status < 500) d.sucesso();
+        else d.falha(causa);
+    }
+
+    /**
+     * Resposta da API com status diferente de 200.
+     */
+    private static class ErroDaApi extends IOException {
+        final int status;
+
+        ErroDaApi(int status, String body) {
+            super("Falha na API (Status " + status + "): " + body);
+            this.status = status;
+        }
+    }
 
-        // System.out.println("Consultando API: " + uri); // Descomente se precisar debugar
+    /**
+     * Requisição assíncrona das cotações atuais de vários pares ("USD_BRL")
+     * numa só chamada; a resposta é tratada no pool do HttpClient.
+     */
+    protected CompletableFuture<Map<String, BigDecimal>> fetchRatesAsync(List<String> pares) {
+        // Monta a URL no padrão: .../last/USD-BRL,EUR-BRL
+        String uri = API_BASE + String.join(",", pares).replace('_', '-');
 
         HttpRequest req = HttpRequest.newBuilder()
                 .uri(URI.create(uri))
@@ -73,28 +320,185 @@ public class CurrencyService {
                 .GET()
                 .build();
 
-        HttpResponse<String> resp = http.send(req, HttpResponse.BodyHandlers.ofString());
+        return http.sendAsync(req, HttpResponse.BodyHandlers.ofString())
+                .thenApply(resp -> {
+                    try {
+                        return lerCotacoes(resp, pares);
+                    } catch (IOException ex) {
+                        throw new CompletionException(ex);
+                    }
+                });
+    }
 
+    private static Map<String, BigDecimal> lerCotacoes(HttpResponse<String> resp, List<String> pares) throws IOException {
         if (resp.statusCode() != 200) {
-            throw new IOException("Falha na API (Status " + resp.statusCode() + "): " + resp.body());
+            throw new ErroDaApi(resp.statusCode(), resp.body());
         }
 
         JsonObject json = JsonParser.parseString(resp.body()).getAsJsonObject();
 
-        // A chave no JSON vem combinada, ex: "USDBRL"
-        String jsonKey = from + to;
+        Map<String, BigDecimal> rates = new HashMap<>();
+        for (String par : pares) {
+            // A chave no JSON vem combinada, ex: "USDBRL"; pega o valor "bid" (compra)
+            String jsonKey = par.replace("_", "");
+            if (json.has(jsonKey)) rates.put(par, json.getAsJsonObject(jsonKey).get("bid").getAsBigDecimal());
+        }
+        return rates;
+    }
+
+    // --- Renovação antecipada ---
+
+    /**
+     * Renova as cotações dos pares base pouco antes de vencerem, para que
+     * nenhuma chamada da interface espere a API. Para enquanto o aplicativo
+     * está ocioso (sem chamadas nem registrarAtividade há OCIOSO).
+     */
+    public synchronized void iniciarAtualizacao() {
+        if (agenda != null) return;
+        agenda = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "cotacoes");
+            t.setDaemon(true);
+            return t;
+        });
+        agenda.scheduleWithFixedDelay(this::renovar, 0, VERIFICACAO.toSeconds(), TimeUnit.SECONDS);
+    }
+
+    public synchronized void pararAtualizacao() {
+        if (agenda == null) return;
+        agenda.shutdown();
+        agenda = null;
+    }
 
-        if (!json.has(jsonKey)) {
-            throw new IOException("Cotação não encontrada na resposta para: " + jsonKey);
+    /**
+     * Sinal de uso (a tela chama a cada interação). Saindo da ociosidade,
+     * renova na hora o que venceu nesse meio tempo.
+     */
+    public void registrarAtividade() {
+        long agora = System.nanoTime();
+        long antes = ultimaAtividade;
+        ultimaAtividade = agora;
+        if (agora - antes > OCIOSO.toNanos()) {
+            ScheduledExecutorService a = agenda;
+            if (a != null) a.execute(this::renovar);
         }
+    }
+
+    /**
+     * Numa só requisição, os pares base que vencem dentro da antecedência.
+     */
+    void renovar() {
+        if (System.nanoTime() - ultimaAtividade > OCIOSO.toNanos()) return;
+        Map<String, CompletableFuture<BigDecimal>> novos = new LinkedHashMap<>();
+        for (String base : PARES_BASE) {
+            if (!emDia(cache.getAtual(base), ANTECEDENCIA)) registrar(base, novos);
+        }
+        disparar(novos);
+    }
+
+    /**
+     * Cotação de uma data: a de fechamento do último dia útil até ela. Para
+     * hoje ou depois, a cotação atual.
+     */
+    public BigDecimal getRate(String from, String to, LocalDate data) throws IOException, InterruptedException {
+        if (!data.isBefore(LocalDate.now(FUSO))) return getRate(from, to);
+        Moeda de = moeda(from), para = moeda(to);
+        if (de != null && para != null && para != Moeda.BRL) {
+            // cruzada pelas cotações do dia de cada moeda em BRL
+            if (de == para) return BigDecimal.ONE;
+            BigDecimal a = de == Moeda.BRL ? BigDecimal.ONE : getRate(from, Moeda.BRL.name(), data);
+            return MatrizCambio.cruzar(a, getRate(to, Moeda.BRL.name(), data));
+        }
+        BigDecimal rate = getRateEmCache(from, to, data);
+        if (rate != null) return rate;
+        carregarHistorico(from, to, data, data);
+        rate = getRateEmCache(from, to, data);
+        if (rate == null) throw new IOException("Sem cotação de " + from + "-" + to + " até " + data);
+        return rate;
+    }
 
-        // Pega o valor "bid" (compra)
-        return json.getAsJsonObject(jsonKey).get("bid").getAsBigDecimal();
+    /**
+     * Só o que já está em cache (sem rede); null se a cotação da data não foi consultada.
+     */
+    public BigDecimal getRateEmCache(String from, String to, LocalDate data) {
+        if (!data.isBefore(LocalDate.now(FUSO))) {
+            CacheEntry e = cache.getAtual(cacheKey(from, to));
+            return e != null && Instant.now().minus(ttl).isBefore(e.timestamp) ? e.rate : null;
+        }
+        return cache.getDiaria(cacheKey(from, to), data);
     }
 
-    // Utilitário para converter valor
+    /**
+     * Consulta de uma vez as cotações diárias do período (em blocos de
+     * MAX_DIAS) e guarda no cache a de cada dia. Se o período chega a hoje,
+     * busca também a cotação atual.
+     */
+    public void carregarHistorico(String from, String to, LocalDate inicio, LocalDate fim) throws IOException, InterruptedException {
+        LocalDate hoje = LocalDate.now(FUSO);
+        if (!fim.isBefore(hoje)) {
+            getRate(from, to);
+            fim = hoje.minusDays(1);
+        }
+        for (LocalDate ini = inicio; !ini.isAfter(fim); ini = ini.plusDays(MAX_DIAS)) {
+            LocalDate ate = ini.plusDays(MAX_DIAS - 1).isBefore(fim) ? ini.plusDays(MAX_DIAS - 1) : fim;
+            if (!disjuntorHistorico.permite()) throw disjuntorHistorico.erroAberto();
+            NavigableMap<LocalDate, BigDecimal> cotacoes;
+            try {
+                cotacoes = fetchDailyFromApi(from, to, ini.minusDays(DIAS_ANTES), ate);
+                registrarResultado(disjuntorHistorico, null);
+            } catch (IOException | RuntimeException | InterruptedException ex) {
+                // interrompida, a chamada de teste também não pode deixar o disjuntor meio aberto
+                registrarResultado(disjuntorHistorico, ex);
+                throw ex;
+            }
+            // cada dia recebe a cotação do último dia útil até ele
+            Map<LocalDate, BigDecimal> dias = new TreeMap<>();
+            for (LocalDate d = ini; !d.isAfter(ate); d = d.plusDays(1)) {
+                Map.Entry<LocalDate, BigDecimal> e = cotacoes.floorEntry(d);
+                if (e != null) dias.put(d, e.getValue());
+            }
+            cache.putDiarias(cacheKey(from, to), dias);
+        }
+    }
+
+    private NavigableMap<LocalDate, BigDecimal> fetchDailyFromApi(String from, String to, LocalDate inicio, LocalDate fim)
+            throws IOException, InterruptedException {
+        DateTimeFormatter f = DateTimeFormatter.BASIC_ISO_DATE;
+        long dias = ChronoUnit.DAYS.between(inicio, fim) + 1;
+        // Ex.: .../json/daily/USD-BRL/30?start_date=20250101&end_date=20250130
+        String uri = API_DIARIO + from + "-" + to + "/" + dias
+                + "?start_date=" + f.format(inicio) + "&end_date=" + f.format(fim);
+
+        HttpRequest req = HttpRequest.newBuilder()
+                .uri(URI.create(uri))
+                .timeout(Duration.ofSeconds(15))
+                .GET()
+                .build();
+
+        HttpResponse<String> resp = http.send(req, HttpResponse.BodyHandlers.ofString());
+
+        if (resp.statusCode() != 200) {
+            throw new ErroDaApi(resp.statusCode(), resp.body());
+        }
+
+        // Lista de cotações, uma por dia útil, cada uma com "bid" e "timestamp" (segundos)
+        NavigableMap<LocalDate, BigDecimal> cotacoes = new TreeMap<>();
+        JsonArray lista = JsonParser.parseString(resp.body()).getAsJsonArray();
+        for (JsonElement el : lista) {
+            JsonObject o = el.getAsJsonObject();
+            LocalDate dia = Instant.ofEpochSecond(o.get("timestamp").getAsLong()).atZone(FUSO).toLocalDate();
+            // a lista vem da mais recente para a mais antiga: fica a última do dia
+            cotacoes.putIfAbsent(dia, o.get("bid").getAsBigDecimal());
+        }
+        return cotacoes;
+    }
+
+    // Utilitário para converter valor (mesma tolerância de getRate)
     public BigDecimal convert(String from, String to, BigDecimal amount) throws IOException, InterruptedException {
         BigDecimal rate = getRate(from, to);
         return amount.multiply(rate);
     }
+
+    public CompletableFuture<BigDecimal> convertAsync(String from, String to, BigDecimal amount) {
+        return getRateAsync(from, to).thenApply(amount::multiply);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,90 @@
+package service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Disjuntor (circuit breaker) de um endpoint. Depois de uma falha ele abre
+ * e as chamadas falham na hora, sem rede, durante a espera; passada a
+ * espera, uma única chamada de teste é liberada (meio aberto). Se ela der
+ * certo, o disjuntor fecha; se falhar, abre de novo com o dobro da espera,
+ * até a máxima.
+ */
+public class Disjuntor {
+
+    public enum Situacao { FECHADO, ABERTO, MEIO_ABERTO }
+
+    /**
+     * Retrato para a interface. ultimoSucesso e reabreEm podem ser null.
+     */
+    public record Estado(Situacao situacao, Instant ultimoSucesso, Instant reabreEm, String ultimoErro) {
+        public boolean isDisponivel() { return situacao == Situacao.FECHADO; }
+    }
+
+    private static final DateTimeFormatter HORA = DateTimeFormatter.ofPattern("HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    private final String nome;
+    private final Duration esperaInicial;
+    private final Duration esperaMaxima;
+
+    private Situacao situacao = Situacao.FECHADO;
+    private Duration espera;
+    private Instant reabreEm;
+    private Instant ultimoSucesso;
+    private String ultimoErro;
+
+    public Disjuntor(String nome, Duration esperaInicial, Duration esperaMaxima) {
+        this.nome = nome;
+        this.esperaInicial = esperaInicial;
+        this.esperaMaxima = esperaMaxima;
+        this.espera = esperaInicial;
+    }
+
+    /**
+     * Se a chamada pode ir à rede. No fim da espera libera uma só, a de teste.
+     */
+    public synchronized boolean permite() {
+        return switch (situacao) {
+            case FECHADO -> true;
+            case ABERTO -> {
+                if (Instant.now().isBefore(reabreEm)) yield false;
+                situacao = Situacao.MEIO_ABERTO;
+                yield true;
+            }
+            case MEIO_ABERTO -> false; // a chamada de teste ainda não voltou
+        };
+    }
+
+    public synchronized void sucesso() {
+        situacao = Situacao.FECHADO;
+        espera = esperaInicial;
+        reabreEm = null;
+        ultimoSucesso = Instant.now();
+        ultimoErro = null;
+    }
+
+    public synchronized void falha(Throwable erro) {
+        // a primeira abertura usa a espera inicial; cada falha do teste dobra
+        if (situacao == Situacao.MEIO_ABERTO) {
+            espera = espera.multipliedBy(2).compareTo(esperaMaxima) > 0 ? esperaMaxima : espera.multipliedBy(2);
+        }
+        situacao = Situacao.ABERTO;
+        reabreEm = Instant.now().plus(espera);
+        ultimoErro = erro == null ? null : erro.getMessage();
+    }
+
+    /**
+     * Erro devolvido às chamadas barradas.
+     */
+    public synchronized IOException erroAberto() {
+        return new IOException(nome + " indisponível" + (ultimoErro == null ? "" : " (" + ultimoErro + ")")
+                + (reabreEm == null ? "" : "; nova tentativa às " + HORA.format(reabreEm)));
+    }
+
+    public synchronized Estado getEstado() {
+        return new Estado(situacao, ultimoSucesso, reabreEm, ultimoErro);
+    }
+}
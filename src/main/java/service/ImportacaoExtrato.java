@@ -0,0 +1,386 @@
+package service;
+
+import model.Categoria;
+import model.Despesa;
+import model.Moeda;
+import model.Receita;
+import model.Transacao;
+import persistence.Repositorio;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.Normalizer;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Importação em massa de extratos bancários em CSV ou OFX. O arquivo é lido
+ * em fluxo, em lotes de LOTE registros; cada lote é convertido em
+ * Receita/Despesa em paralelo e entregue de uma vez ao destino
+ * (normalmente repo.addTransacoes), e o repositório só grava no fim.
+ *
+ * Os ids saem do próprio extrato (FITID no OFX; data, valor, descrição e
+ * ocorrência no dia no CSV), então importar de novo o mesmo extrato, ou um
+ * que se sobrepõe a ele, não duplica lançamentos. Valor positivo é receita e
+ * negativo é despesa, a menos que haja coluna de tipo. Transações em outra
+ * moeda são convertidas lote a lote pela ConversaoEmLote, se houver uma, mas
+ * só as que o destino aceitou: uma linha repetida não chega à conversão nem
+ * à fila de pendentes, que depois sobrescreveria a transação já gravada. As
+ * que ficam sem cotação entram sem o valor em BRL.
+ */
+public class ImportacaoExtrato {
+    static final int LOTE = 10_000;
+    // mensagens guardadas; as demais linhas inválidas só são contadas
+    private static final int MAX_ERROS = 100;
+
+    /**
+     * Chamado na thread da importação ao fim de cada lote.
+     */
+    public interface Progresso {
+        void atualizar(long bytesLidos, long bytesTotais, int lidas, int importadas);
+    }
+
+    /**
+     * Para onde vão as transações lidas; normalmente o repositório.
+     */
+    public interface Destino {
+        /** Inclui as do lote cujo id ainda não existe e devolve as que entraram. */
+        List<Transacao> incluir(List<Transacao> lote);
+
+        /** Registra o valor em BRL preenchido numa transação já incluída. */
+        default void atualizar(Transacao t) {}
+    }
+
+    public static final class Resultado {
+        private final int lidas;
+        private final int importadas;
+        private final int invalidas;
+        private final int semCotacao;
+        private final List<String> erros;
+
+        private Resultado(int lidas, int importadas, int invalidas, int semCotacao, List<String> erros) {
+            this.lidas = lidas;
+            this.importadas = importadas;
+            this.invalidas = invalidas;
+            this.semCotacao = semCotacao;
+            this.erros = erros;
+        }
+
+        public int getLidas() { return lidas; }
+
+        public int getImportadas() { return importadas; }
+
+        /** Lançamentos válidos que já estavam no repositório. */
+        public int getDuplicadas() { return lidas - importadas - invalidas; }
+
+        public int getInvalidas() { return invalidas; }
+
+        /** Em moeda estrangeira e ainda sem valor em BRL (ficaram pendentes na conversão). */
+        public int getSemCotacao() { return semCotacao; }
+
+        /** As primeiras mensagens de erro, no formato "linha N: motivo". */
+        public List<String> getErros() { return erros; }
+    }
+
+    private record Convertida(Transacao transacao, String erro) {}
+
+    private final Map<String, Categoria> categoriasPorNome = new HashMap<>();
+    private final ConversaoEmLote conversao;
+
+    public ImportacaoExtrato(Collection<Categoria> categorias) {
+        this(categorias, null);
+    }
+
+    /**
+     * conversao pode ser null: as transações em outra moeda ficam sem valor em BRL.
+     */
+    public ImportacaoExtrato(Collection<Categoria> categorias, ConversaoEmLote conversao) {
+        this.conversao = conversao;
+        for (Categoria c : categorias) {
+            if (c.getNome() != null) categoriasPorNome.putIfAbsent(normalizar(c.getNome()), c);
+        }
+    }
+
+    /**
+     * Importa o arquivo para o repositório e grava uma vez ao final.
+     */
+    public static Resultado importar(Repositorio repo, Path arquivo, ConversaoEmLote conversao, Progresso progresso)
+            throws IOException {
+        Destino destino = new Destino() {
+            @Override
+            public List<Transacao> incluir(List<Transacao> lote) {
+                return repo.addTransacoes(lote);
+            }
+
+            @Override
+            public void atualizar(Transacao t) {
+                repo.updateTransacao(t);
+            }
+        };
+        Resultado r = new ImportacaoExtrato(repo.getCategorias(), conversao).importar(arquivo, destino, progresso);
+        if (r.getImportadas() > 0) repo.saveTransacoes();
+        return r;
+    }
+
+    /**
+     * Lê o arquivo e entrega as transações ao destino, lote a lote.
+     */
+    public Resultado importar(Path arquivo, Destino destino, Progresso progresso) throws IOException {
+        long total = Files.size(arquivo);
+        Charset charset = detectarCharset(arquivo);
+        boolean ofx = isOfx(arquivo);
+        try (ContadorBytes bytes = new ContadorBytes(Files.newInputStream(arquivo));
+             BufferedReader in = new BufferedReader(new InputStreamReader(bytes, charset), 64 * 1024)) {
+            Carga carga = new Carga(destino, (lidas, importadas) ->
+                    progresso.atualizar(bytes.lidos, total, lidas, importadas));
+            if (ofx) new LeitorOfx(in).ler(carga::receber); else new LeitorCsv(in).ler(carga::receber);
+            carga.concluir();
+            return new Resultado(carga.lidas, carga.importadas, carga.invalidas, carga.semCotacao, carga.erros);
+        }
+    }
+
+    /**
+     * Junta os registros em lotes; converte cada lote em paralelo e entrega as
+     * válidas ao destino, mantendo a ordem do arquivo nas mensagens de erro.
+     */
+    private final class Carga {
+        private final Destino destino;
+        private final java.util.function.ObjIntConsumer<Integer> aoFimDoLote;
+        private List<RegistroExtrato> lote = new ArrayList<>(LOTE);
+        private int lidas;
+        private int importadas;
+        private int invalidas;
+        private int semCotacao;
+        private final List<String> erros = new ArrayList<>();
+
+        Carga(Destino destino, java.util.function.ObjIntConsumer<Integer> aoFimDoLote) {
+            this.destino = destino;
+            this.aoFimDoLote = aoFimDoLote;
+        }
+
+        void receber(RegistroExtrato r) {
+            lote.add(r);
+            if (lote.size() == LOTE) processar();
+        }
+
+        void concluir() {
+            if (!lote.isEmpty()) processar();
+        }
+
+        private void processar() {
+            List<Convertida> convertidas = lote.parallelStream().map(ImportacaoExtrato.this::converter)
+                    .collect(Collectors.toList());
+            List<Transacao> validas = new ArrayList<>(convertidas.size());
+            for (Convertida c : convertidas) {
+                if (c.transacao() != null) {
+                    validas.add(c.transacao());
+                } else {
+                    invalidas++;
+                    if (erros.size() < MAX_ERROS) erros.add(c.erro());
+                }
+            }
+            List<Transacao> incluidas = destino.incluir(validas);
+            if (conversao != null) {
+                int antes = conversao.getPendentes();
+                conversao.aplicar(incluidas);
+                semCotacao += conversao.getPendentes() - antes;
+                for (Transacao t : incluidas) {
+                    if (t.getMoeda() != Moeda.BRL && t.getValorBRL() != null) destino.atualizar(t);
+                }
+            }
+            lidas += lote.size();
+            importadas += incluidas.size();
+            lote = new ArrayList<>(LOTE);
+            aoFimDoLote.accept(lidas, importadas);
+        }
+    }
+
+    private Convertida converter(RegistroExtrato r) {
+        try {
+            return new Convertida(transacao(r), null);
+        } catch (Exception e) {
+            return new Convertida(null, "linha " + r.linha() + ": " + e.getMessage());
+        }
+    }
+
+    Transacao transacao(RegistroExtrato r) throws Exception {
+        if (r.data() == null) throw new IllegalArgumentException("data ausente");
+        LocalDate data = lerData(r.data());
+        BigDecimal valor = lerValor(r.valor());
+        boolean receita = isReceita(r.tipo(), valor);
+        valor = valor.abs();
+        Moeda moeda = lerMoeda(r.moeda());
+        Categoria cat = r.categoria() == null ? null : categoriasPorNome.get(normalizar(r.categoria()));
+        String id = UUID.nameUUIDFromBytes(r.chave().getBytes(StandardCharsets.UTF_8)).toString();
+
+        Transacao t = receita
+                ? new Receita(id, data, valor, moeda, cat, r.descricao())
+                : new Despesa(id, data, valor, moeda, cat, r.descricao());
+        if (moeda == Moeda.BRL) t.setValorBRL(valor);
+        return t;
+    }
+
+    /**
+     * Aceita dd/MM/aaaa (e com '-' ou '.'), dd/MM/aa, aaaa-MM-dd e aaaaMMdd
+     * (OFX), com ou sem hora depois.
+     */
+    static LocalDate lerData(String s) {
+        s = s.trim();
+        int fim = s.length();
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == ' ' || c == 'T' || c == '[') {
+                fim = i;
+                break;
+            }
+        }
+        s = s.substring(0, fim);
+        int sep1 = -1, sep2 = -1;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '/' || c == '-' || c == '.') {
+                if (sep1 < 0) sep1 = i; else if (sep2 < 0) sep2 = i;
+            }
+        }
+        try {
+            if (sep1 < 0 && s.length() >= 8) {
+                return LocalDate.of(Integer.parseInt(s, 0, 4, 10), Integer.parseInt(s, 4, 6, 10), Integer.parseInt(s, 6, 8, 10));
+            }
+            if (sep1 > 0 && sep2 > sep1) {
+                int a = Integer.parseInt(s, 0, sep1, 10);
+                int m = Integer.parseInt(s, sep1 + 1, sep2, 10);
+                int b = Integer.parseInt(s, sep2 + 1, s.length(), 10);
+                if (sep1 == 4) return LocalDate.of(a, m, b);
+                return LocalDate.of(s.length() - sep2 - 1 <= 2 ? 2000 + b : b, m, a);
+            }
+        } catch (NumberFormatException | java.time.DateTimeException e) {
+            // cai na mensagem abaixo
+        }
+        throw new IllegalArgumentException("data inválida: " + s);
+    }
+
+    /**
+     * Aceita "1.234,56", "1,234.56", "-12.5", "R$ 10,00", "(10,00)" e
+     * "10,00-". Com um só tipo de separador, ele é o decimal, a menos que
+     * apareça mais de uma vez (aí é de milhar).
+     */
+    static BigDecimal lerValor(String s) {
+        if (s == null) throw new IllegalArgumentException("valor ausente");
+        int ponto = s.lastIndexOf('.'), virgula = s.lastIndexOf(',');
+        char decimal;
+        if (ponto >= 0 && virgula >= 0) decimal = ponto > virgula ? '.' : ',';
+        else if (ponto >= 0) decimal = s.indexOf('.') == ponto ? '.' : 0;
+        else if (virgula >= 0) decimal = s.indexOf(',') == virgula ? ',' : 0;
+        else decimal = 0;
+        int posDecimal = decimal == '.' ? ponto : decimal == ',' ? virgula : -1;
+
+        StringBuilder sb = new StringBuilder(s.length());
+        boolean negativo = false;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= '0' && c <= '9') sb.append(c);
+            else if (i == posDecimal) sb.append('.');
+            else if (c == '-' || c == '(') negativo = true;
+        }
+        if (sb.length() == 0 || sb.charAt(0) == '.' && sb.length() == 1) {
+            throw new IllegalArgumentException("valor inválido: " + s);
+        }
+        BigDecimal v = new BigDecimal(sb.toString());
+        return negativo ? v.negate() : v;
+    }
+
+    /**
+     * Pela coluna de tipo (crédito/receita/entrada ou débito/despesa/saída),
+     * ou pelo sinal do valor quando não há tipo reconhecível.
+     */
+    private static boolean isReceita(String tipo, BigDecimal valor) {
+        if (tipo != null && !tipo.isBlank()) {
+            char c = normalizar(tipo).charAt(0);
+            if (c == 'c' || c == 'r' || c == 'e') return true;
+            if (c == 'd' || c == 's') return false;
+        }
+        return valor.signum() > 0;
+    }
+
+    private static Moeda lerMoeda(String s) {
+        if (s == null) return Moeda.BRL;
+        String m = s.trim().toUpperCase(Locale.ROOT);
+        switch (m) {
+            case "R$": return Moeda.BRL;
+            case "US$": case "$": return Moeda.USD;
+            case "€": return Moeda.EUR;
+            default:
+                try {
+                    return Moeda.valueOf(m);
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("moeda não suportada: " + s);
+                }
+        }
+    }
+
+    private static String normalizar(String s) {
+        return Normalizer.normalize(s.trim(), Normalizer.Form.NFD).replaceAll("\\p{M}+", "").toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean isOfx(Path arquivo) throws IOException {
+        String nome = arquivo.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (nome.endsWith(".ofx") || nome.endsWith(".qfx")) return true;
+        if (nome.endsWith(".csv") || nome.endsWith(".txt")) return false;
+        String inicio = new String(lerInicio(arquivo, 512), StandardCharsets.ISO_8859_1);
+        return inicio.contains("OFXHEADER") || inicio.contains("<OFX>");
+    }
+
+    /**
+     * UTF-8 se o começo do arquivo for UTF-8 válido; senão windows-1252, o
+     * padrão dos extratos exportados pelos bancos brasileiros.
+     */
+    static Charset detectarCharset(Path arquivo) throws IOException {
+        byte[] inicio = lerInicio(arquivo, 64 * 1024);
+        CharsetDecoder dec = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        ByteBuffer bb = ByteBuffer.wrap(inicio);
+        CoderResult r = dec.decode(bb, java.nio.CharBuffer.allocate(inicio.length), false);
+        // um caractere cortado no fim do trecho lido não conta como erro
+        if (r.isError() && bb.position() < inicio.length - 3) {
+            return Charset.isSupported("windows-1252") ? Charset.forName("windows-1252") : StandardCharsets.ISO_8859_1;
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    private static byte[] lerInicio(Path arquivo, int max) throws IOException {
+        try (InputStream in = Files.newInputStream(arquivo)) {
+            return in.readNBytes(max);
+        }
+    }
+
+    /**
+     * Conta os bytes lidos, para o progresso.
+     */
+    private static final class ContadorBytes extends FilterInputStream {
+        volatile long lidos;
+
+        ContadorBytes(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) lidos++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) lidos += n;
+            return n;
+        }
+    }
+}
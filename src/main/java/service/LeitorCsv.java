@@ -0,0 +1,180 @@
+package service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.text.Normalizer;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Lê um CSV de extrato linha a linha. O separador (';', ',' ou tab) sai da
+ * primeira linha; se ela tiver nomes de coluna conhecidos, as colunas são
+ * achadas por eles, senão vale a ordem data, descrição, valor.
+ * Campos entre aspas podem conter o separador, aspas dobradas e quebras de linha.
+ */
+class LeitorCsv {
+    private static final Map<String, String> COLUNAS = new HashMap<>();
+
+    static {
+        for (String s : List.of("data", "date", "dt", "data lancamento", "data do lancamento")) COLUNAS.put(s, "data");
+        for (String s : List.of("descricao", "description", "historico", "memo", "lancamento", "estabelecimento")) {
+            COLUNAS.put(s, "descricao");
+        }
+        for (String s : List.of("valor", "amount", "value", "valor (r$)", "quantia")) COLUNAS.put(s, "valor");
+        for (String s : List.of("tipo", "type", "natureza", "d/c", "c/d")) COLUNAS.put(s, "tipo");
+        for (String s : List.of("moeda", "currency")) COLUNAS.put(s, "moeda");
+        for (String s : List.of("categoria", "category")) COLUNAS.put(s, "categoria");
+    }
+
+    private final BufferedReader in;
+    private char separador;
+    private int colData = 0, colDescricao = 1, colValor = 2, colTipo = -1, colMoeda = -1, colCategoria = -1;
+    private long linha;
+
+    // ocorrências de cada lançamento (data, valor, descrição) no trecho atual do dia:
+    // dois cafés iguais no mesmo dia recebem chaves diferentes, e as mesmas a cada
+    // nova importação do extrato. Num arquivo fora de ordem o mesmo dia pode voltar;
+    // cada volta é um novo trecho, numerado, e só o trecho atual fica em memória
+    private String diaAtual;
+    private String trechoAtual = "";
+    private final Map<String, Integer> trechosPorDia = new HashMap<>();
+    private final Map<String, Integer> ocorrencias = new HashMap<>();
+
+    LeitorCsv(BufferedReader in) {
+        this.in = in;
+    }
+
+    void ler(Consumer<RegistroExtrato> destino) throws IOException {
+        String primeira = proximaLinha();
+        if (primeira == null) return;
+        if (!primeira.isEmpty() && primeira.charAt(0) == '\uFEFF') primeira = primeira.substring(1); // BOM
+        separador = detectarSeparador(primeira);
+        List<String> campos = dividir(primeira);
+        if (!lerCabecalho(campos)) emitir(campos, destino);
+
+        String l;
+        while ((l = proximaLinha()) != null) {
+            if (l.isBlank()) continue;
+            emitir(dividir(l), destino);
+        }
+    }
+
+    private void emitir(List<String> campos, Consumer<RegistroExtrato> destino) {
+        String data = campo(campos, colData);
+        String valor = campo(campos, colValor);
+        String descricao = campo(campos, colDescricao);
+        if (!Objects.equals(data, diaAtual)) {
+            diaAtual = data;
+            int trecho = trechosPorDia.merge(String.valueOf(data), 1, Integer::sum);
+            trechoAtual = trecho == 1 ? "" : "#" + trecho;
+            ocorrencias.clear();
+        }
+        String base = data + '|' + valor + '|' + descricao;
+        int n = ocorrencias.merge(base, 1, Integer::sum);
+        destino.accept(new RegistroExtrato(linha, data, valor, descricao, campo(campos, colTipo),
+                campo(campos, colMoeda), campo(campos, colCategoria), "csv:" + base + '|' + n + trechoAtual));
+    }
+
+    private static String campo(List<String> campos, int i) {
+        if (i < 0 || i >= campos.size()) return null;
+        String s = campos.get(i).trim();
+        return s.isEmpty() ? null : s;
+    }
+
+    /**
+     * Mapeia as colunas pelo cabeçalho; falso se a linha não parecer um.
+     */
+    private boolean lerCabecalho(List<String> campos) {
+        Map<String, Integer> achadas = new HashMap<>();
+        for (int i = 0; i < campos.size(); i++) {
+            String nome = Normalizer.normalize(campos.get(i).trim(), Normalizer.Form.NFD)
+                    .replaceAll("\\p{M}+", "").toLowerCase(Locale.ROOT);
+            String col = COLUNAS.get(nome);
+            if (col != null) achadas.putIfAbsent(col, i);
+        }
+        if (!achadas.containsKey("data") || !achadas.containsKey("valor")) return false;
+        colData = achadas.get("data");
+        colValor = achadas.get("valor");
+        colDescricao = achadas.getOrDefault("descricao", -1);
+        colTipo = achadas.getOrDefault("tipo", -1);
+        colMoeda = achadas.getOrDefault("moeda", -1);
+        colCategoria = achadas.getOrDefault("categoria", -1);
+        return true;
+    }
+
+    private static char detectarSeparador(String l) {
+        int pv = 0, v = 0, tab = 0;
+        boolean aspas = false;
+        for (int i = 0; i < l.length(); i++) {
+            char c = l.charAt(i);
+            if (c == '"') aspas = !aspas;
+            else if (!aspas && c == ';') pv++;
+            else if (!aspas && c == ',') v++;
+            else if (!aspas && c == '\t') tab++;
+        }
+        if (tab > pv && tab > v) return '\t';
+        return pv >= v && pv > 0 ? ';' : ',';
+    }
+
+    /**
+     * Próxima linha lógica: junta as físicas enquanto houver aspas abertas.
+     */
+    private String proximaLinha() throws IOException {
+        String l = in.readLine();
+        if (l == null) return null;
+        linha++;
+        if (l.indexOf('"') < 0) return l;
+        StringBuilder sb = new StringBuilder(l);
+        while (aspasAbertas(sb)) {
+            String mais = in.readLine();
+            if (mais == null) break;
+            sb.append('\n').append(mais);
+        }
+        return sb.toString();
+    }
+
+    private static boolean aspasAbertas(CharSequence s) {
+        boolean aberta = false;
+        for (int i = 0; i < s.length(); i++) if (s.charAt(i) == '"') aberta = !aberta;
+        return aberta;
+    }
+
+    private List<String> dividir(String l) {
+        List<String> campos = new ArrayList<>(8);
+        if (l.indexOf('"') < 0) {
+            int ini = 0;
+            for (int i = 0; i < l.length(); i++) {
+                if (l.charAt(i) == separador) {
+                    campos.add(l.substring(ini, i));
+                    ini = i + 1;
+                }
+            }
+            campos.add(l.substring(ini));
+            return campos;
+        }
+        StringBuilder atual = new StringBuilder();
+        boolean aspas = false;
+        for (int i = 0; i < l.length(); i++) {
+            char c = l.charAt(i);
+            if (aspas) {
+                if (c == '"' && i + 1 < l.length() && l.charAt(i + 1) == '"') {
+                    atual.append('"');
+                    i++;
+                } else if (c == '"') {
+                    aspas = false;
+                } else {
+                    atual.append(c);
+                }
+            } else if (c == '"') {
+                aspas = true;
+            } else if (c == separador) {
+                campos.add(atual.toString());
+                atual.setLength(0);
+            } else {
+                atual.append(c);
+            }
+        }
+        campos.add(atual.toString());
+        return campos;
+    }
+}
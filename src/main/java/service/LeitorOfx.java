@@ -0,0 +1,106 @@
+package service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Lê os lançamentos (STMTTRN) de um arquivo OFX, tanto o 1.x em SGML, em que
+ * os campos simples não fecham a tag, quanto o 2.x em XML. Percorre o texto
+ * uma vez, tag a tag, sem montar a árvore do documento.
+ */
+class LeitorOfx {
+    private final Reader in;
+    private final char[] buf = new char[16 * 1024];
+    private int pos, lim;
+    private final StringBuilder sb = new StringBuilder();
+
+    LeitorOfx(Reader in) {
+        this.in = in;
+    }
+
+    void ler(Consumer<RegistroExtrato> destino) throws IOException {
+        String moeda = null;
+        String conta = "";
+        Map<String, String> trn = null;
+        long n = 0;
+        String tag;
+        while ((tag = proximaTag()) != null) {
+            if (tag.isEmpty() || tag.charAt(0) == '?' || tag.charAt(0) == '!') continue;
+            if (tag.equals("STMTTRN") || tag.equals("/STMTTRN") || tag.equals("/BANKTRANLIST")) {
+                if (trn != null) destino.accept(registro(++n, trn, moeda, conta));
+                trn = tag.equals("STMTTRN") ? new HashMap<>() : null;
+                continue;
+            }
+            if (tag.charAt(0) == '/') continue;
+            String valor = texto();
+            if (valor.isEmpty()) continue;
+            if (trn != null) {
+                trn.put(tag, valor);
+            } else if (tag.equals("CURDEF")) {
+                moeda = valor;
+            } else if (tag.equals("ACCTID")) {
+                conta = valor;
+            }
+        }
+        if (trn != null) destino.accept(registro(++n, trn, moeda, conta));
+    }
+
+    private static RegistroExtrato registro(long n, Map<String, String> trn, String moeda, String conta) {
+        String descricao = trn.getOrDefault("MEMO", trn.get("NAME"));
+        String fitid = trn.get("FITID");
+        String chave = fitid != null
+                ? "ofx:" + conta + ':' + fitid
+                : "ofx:" + conta + ':' + trn.get("DTPOSTED") + '|' + trn.get("TRNAMT") + '|' + descricao + '|' + n;
+        return new RegistroExtrato(n, trn.get("DTPOSTED"), trn.get("TRNAMT"), descricao, null,
+                moeda, null, chave);
+    }
+
+    /**
+     * Nome da próxima tag (com '/' se for de fechamento), ou null no fim do arquivo.
+     */
+    private String proximaTag() throws IOException {
+        int c;
+        while ((c = ler()) != -1 && c != '<') {
+            // ignora o texto até a próxima tag
+        }
+        if (c == -1) return null;
+        sb.setLength(0);
+        while ((c = ler()) != -1 && c != '>') sb.append((char) c);
+        return sb.toString().trim();
+    }
+
+    /**
+     * Texto de um campo: até a próxima tag, sem espaços nas pontas.
+     */
+    private String texto() throws IOException {
+        sb.setLength(0);
+        while (true) {
+            if (pos == lim && !encher()) break;
+            char c = buf[pos];
+            if (c == '<') break;
+            sb.append(c);
+            pos++;
+        }
+        String s = sb.toString().trim();
+        return s.indexOf('&') < 0 ? s
+                : s.replace("&lt;", "<").replace("&gt;", ">").replace("&quot;", "\"").replace("&apos;", "'").replace("&amp;", "&");
+    }
+
+    private int ler() throws IOException {
+        if (pos == lim && !encher()) return -1;
+        return buf[pos++];
+    }
+
+    private boolean encher() throws IOException {
+        lim = in.read(buf);
+        pos = 0;
+        if (lim <= 0) {
+            lim = 0;
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,47 @@
+package service;
+
+import model.Moeda;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Taxas entre quaisquer duas moedas do enum a partir só das cotações de
+ * cada uma em BRL: a inversa (BRL para X) é 1 / X-BRL e a cruzada (X para
+ * Y) é X-BRL / Y-BRL. As divisões usam sempre o mesmo MathContext, então o
+ * resultado não depende da ordem das buscas.
+ */
+public final class MatrizCambio {
+    // 16 dígitos significativos, arredondamento bancário
+    public static final MathContext MC = MathContext.DECIMAL64;
+
+    private final Map<Moeda, BigDecimal> emBRL = new EnumMap<>(Moeda.class);
+
+    /**
+     * emBRL: quanto vale em reais uma unidade de cada moeda (a de BRL é 1 e pode faltar).
+     */
+    public MatrizCambio(Map<Moeda, BigDecimal> emBRL) {
+        this.emBRL.putAll(emBRL);
+        this.emBRL.put(Moeda.BRL, BigDecimal.ONE);
+    }
+
+    /**
+     * Quantas unidades de para vale uma de de; null se faltar a cotação de alguma das duas.
+     */
+    public BigDecimal taxa(Moeda de, Moeda para) {
+        if (de == para) return BigDecimal.ONE;
+        BigDecimal a = emBRL.get(de);
+        BigDecimal b = emBRL.get(para);
+        return a == null || b == null ? null : cruzar(a, b);
+    }
+
+    /**
+     * Taxa de X para Y dadas X-BRL e Y-BRL.
+     */
+    public static BigDecimal cruzar(BigDecimal deEmBRL, BigDecimal paraEmBRL) {
+        if (paraEmBRL.compareTo(BigDecimal.ONE) == 0) return deEmBRL;
+        return deEmBRL.divide(paraEmBRL, MC);
+    }
+}
@@ -0,0 +1,16 @@
+package service;
+
+/**
+ * Uma linha de extrato como lida do arquivo, ainda em texto. A conversão e a
+ * validação acontecem depois, em paralelo.
+ *
+ * @param linha     número da linha (CSV) ou do lançamento (OFX), para as mensagens de erro
+ * @param data      data como no arquivo
+ * @param valor     valor como no arquivo, com sinal
+ * @param tipo      "C"/"D", "Receita"/"Despesa" etc., ou null para decidir pelo sinal
+ * @param moeda     código da moeda, ou null para BRL
+ * @param categoria nome da categoria, ou null
+ * @param chave     identifica o lançamento entre importações do mesmo extrato
+ */
+record RegistroExtrato(long linha, String data, String valor, String descricao, String tipo,
+                       String moeda, String categoria, String chave) {}
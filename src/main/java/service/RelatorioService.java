@@ -3,28 +3,57 @@ package service;
 import export.Exportavel;
 import export.RelatorioMensal;
 import model.Transacao;
-import persistence.RepositorioPersistencia;
+import persistence.Consulta;
+import persistence.CuboMensal;
+import persistence.Repositorio;
+import persistence.TotaisCorrentes;
 
 import java.io.File;
-import java.time.LocalDate;
+import java.math.BigDecimal;
+import java.time.YearMonth;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
  * Serviço que fornece funções de geração de relatórios.
  */
 public class RelatorioService {
-    private final RepositorioPersistencia repo;
+    private final Repositorio repo;
 
-    public RelatorioService(RepositorioPersistencia repo) {
+    public RelatorioService(Repositorio repo) {
         this.repo = repo;
     }
 
     public void gerarRelatorioMensal(int ano, int mes, File destino, String formato) throws Exception {
-        List<Transacao> trans = repo.getTransacoes().stream()
-                .filter(t -> t.getData().getYear() == ano && t.getData().getMonthValue() == mes)
+        // lê apenas a partição do mês, já em ordem de data
+        YearMonth ym = YearMonth.of(ano, mes);
+        List<Transacao> trans = repo.consultar(new Consulta().periodo(ym.atDay(1), ym.atEndOfMonth()))
                 .collect(Collectors.toList());
-        Exportavel rel = new RelatorioMensal(ano, mes, trans);
+        CuboMensal cubo = repo.getCubo();
+        Exportavel rel = new RelatorioMensal(ano, mes, trans, cubo.doMes(ym), cubo.doMes(ym.minusMonths(1)));
         rel.gerarRelatorio(formato, destino);
     }
+
+    // --- Consultas respondidas pelo cubo, sem ler as transações ---
+
+    public TotaisCorrentes resumoMensal(int ano, int mes) {
+        return repo.getCubo().doMes(YearMonth.of(ano, mes));
+    }
+
+    /**
+     * Despesas por id de categoria entre os dois meses, inclusive.
+     */
+    public Map<String, BigDecimal> despesasPorCategoria(YearMonth inicio, YearMonth fim) {
+        return repo.getCubo().doPeriodo(inicio, fim).getDespesasPorCategoria();
+    }
+
+    /**
+     * Diferença do saldo do mês em relação ao mês anterior.
+     */
+    public BigDecimal variacaoSaldo(int ano, int mes) {
+        CuboMensal cubo = repo.getCubo();
+        YearMonth ym = YearMonth.of(ano, mes);
+        return cubo.doMes(ym).getSaldo().subtract(cubo.doMes(ym.minusMonths(1)).getSaldo());
+    }
 }
\ No newline at end of file
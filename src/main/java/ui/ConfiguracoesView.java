@@ -11,7 +11,7 @@ import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
 import javafx.scene.text.Text;
 import model.Categoria;
-import persistence.RepositorioPersistencia;
+import persistence.Repositorio;
 
 import java.util.UUID;
 
@@ -19,7 +19,7 @@ import java.util.UUID;
  * Tela de configurações: Gerenciamento de Categorias com visual Master-Detail.
  */
 public class ConfiguracoesView {
-    private final RepositorioPersistencia repo;
+    private final Repositorio repo;
     private final BorderPane view;
 
     // Componentes de UI que precisam ser acessados pelos eventos
@@ -33,7 +33,7 @@ public class ConfiguracoesView {
     // Controle de estado
     private Categoria categoriaSelecionada = null;
 
-    public ConfiguracoesView(RepositorioPersistencia repo) {
+    public ConfiguracoesView(Repositorio repo) {
         this.repo = repo;
         this.view = new BorderPane();
         build();
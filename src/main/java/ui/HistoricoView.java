@@ -0,0 +1,166 @@
+package ui;
+
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Node;
+import javafx.scene.control.*;
+import javafx.scene.layout.*;
+import javafx.scene.text.Font;
+import javafx.scene.text.FontWeight;
+import javafx.scene.text.Text;
+import model.Categoria;
+import persistence.Consulta;
+import persistence.Repositorio;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Tela de histórico: todas as transações numa tabela que só lê as páginas
+ * visíveis (ListaPaginada). Filtros e ordem viram uma Consulta executada
+ * pelo repositório; a tabela nunca ordena nem filtra em memória.
+ */
+public class HistoricoView {
+    private static final String TODAS = "Todas";
+    private static final String RECEITAS = "Receitas";
+    private static final String DESPESAS = "Despesas";
+
+    private final Repositorio repo;
+    private final BorderPane view;
+
+    // Componentes de UI que precisam ser acessados pelos eventos
+    private TableView<ListaPaginada.Linha> table;
+    private TableColumn<ListaPaginada.Linha, String> colData;
+    private TextField txtTexto;
+    private ComboBox<String> cmbTipo;
+    private ComboBox<Categoria> cmbCategoria;
+    private Label lblTotal;
+
+    private ListaPaginada lista;
+    // ordem da lista atual
+    private boolean recentes;
+
+    public HistoricoView(Repositorio repo) {
+        this.repo = repo;
+        this.view = new BorderPane();
+        build();
+        recarregar();
+    }
+
+    private void build() {
+        view.setPadding(new Insets(20));
+
+        // --- TÍTULO E FILTROS ---
+        Text titulo = new Text("Histórico de Transações");
+        titulo.setFont(Font.font("Segoe UI", FontWeight.BOLD, 20));
+
+        txtTexto = new TextField();
+        txtTexto.setPromptText("Descrição contém...");
+        txtTexto.setOnAction(e -> recarregar()); // Enter aplica
+
+        cmbTipo = new ComboBox<>();
+        cmbTipo.getItems().addAll(TODAS, RECEITAS, DESPESAS);
+        cmbTipo.setValue(TODAS);
+        cmbTipo.setOnAction(e -> recarregar());
+
+        cmbCategoria = new ComboBox<>();
+        cmbCategoria.getItems().add(null); // sem filtro
+        cmbCategoria.getItems().addAll(repo.getCategorias());
+        cmbCategoria.setButtonCell(celulaCategoria());
+        cmbCategoria.setCellFactory(lv -> celulaCategoria());
+        cmbCategoria.setOnAction(e -> recarregar());
+
+        Button btnFiltrar = new Button("Filtrar");
+        btnFiltrar.setOnAction(e -> recarregar());
+
+        lblTotal = new Label();
+
+        HBox filtros = new HBox(10, txtTexto, cmbTipo, cmbCategoria, btnFiltrar, lblTotal);
+        filtros.setAlignment(Pos.CENTER_LEFT);
+
+        VBox topo = new VBox(15, titulo, filtros);
+        BorderPane.setMargin(topo, new Insets(0, 0, 15, 0));
+
+        // --- TABELA ---
+        table = new TableView<>();
+        table.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY); // Colunas ocupam todo espaço
+        table.setPlaceholder(new Label("Nenhuma transação"));
+
+        // valores já formatados em cada linha: nada é criado ao rolar
+        colData = new TableColumn<>("Data");
+        colData.setCellValueFactory(c -> c.getValue().data);
+        colData.setSortType(TableColumn.SortType.DESCENDING);
+
+        TableColumn<ListaPaginada.Linha, String> colDesc = new TableColumn<>("Descrição");
+        colDesc.setCellValueFactory(c -> c.getValue().descricao);
+        colDesc.setSortable(false);
+
+        TableColumn<ListaPaginada.Linha, String> colCat = new TableColumn<>("Categoria");
+        colCat.setCellValueFactory(c -> c.getValue().categoria);
+        colCat.setSortable(false);
+
+        TableColumn<ListaPaginada.Linha, String> colValor = new TableColumn<>("Valor");
+        colValor.setStyle("-fx-alignment: CENTER-RIGHT;"); // Alinha números à direita
+        colValor.setCellValueFactory(c -> c.getValue().valor);
+        colValor.setSortable(false);
+
+        table.getColumns().addAll(colData, colDesc, colCat, colValor);
+        table.getSortOrder().add(colData);
+        // a ordem vai para a consulta; a lista paginada não pode ser ordenada em memória
+        table.setSortPolicy(t -> {
+            if (lista != null && querRecentes() != recentes) recarregar();
+            return true;
+        });
+
+        view.setTop(topo);
+        view.setCenter(table);
+    }
+
+    private ListCell<Categoria> celulaCategoria() {
+        return new ListCell<>() {
+            @Override
+            protected void updateItem(Categoria item, boolean empty) {
+                super.updateItem(item, empty);
+                setText(empty ? null : item == null ? "Todas as categorias" : item.getNome());
+            }
+        };
+    }
+
+    /**
+     * Troca a lista da tabela por uma nova com os filtros e a ordem atuais.
+     */
+    private void recarregar() {
+        if (lista != null) lista.descartar();
+        lblTotal.setText("Contando...");
+        recentes = querRecentes();
+        lista = new ListaPaginada(repo, consultaAtual(), n -> lblTotal.setText(n + " transação(ões)"));
+        table.setItems(lista);
+    }
+
+    private boolean querRecentes() {
+        return !table.getSortOrder().contains(colData) || colData.getSortType() == TableColumn.SortType.DESCENDING;
+    }
+
+    private Supplier<Consulta> consultaAtual() {
+        boolean recentes = this.recentes;
+        String texto = txtTexto.getText();
+        String tipo = cmbTipo.getValue();
+        Categoria cat = cmbCategoria.getValue();
+        List<String> categorias = new ArrayList<>();
+        if (cat != null) categorias.add(cat.getId());
+        return () -> {
+            Consulta c = new Consulta()
+                    .ordem(recentes ? Consulta.Ordem.MAIS_RECENTES : Consulta.Ordem.MAIS_ANTIGAS)
+                    .descricaoContem(texto);
+            if (RECEITAS.equals(tipo)) c.somenteReceitas();
+            if (DESPESAS.equals(tipo)) c.somenteDespesas();
+            if (!categorias.isEmpty()) c.categorias(categorias);
+            return c;
+        };
+    }
+
+    public Node getView() {
+        return view;
+    }
+}
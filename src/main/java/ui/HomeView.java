@@ -1,5 +1,6 @@
 package ui;
 
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
@@ -7,34 +8,73 @@ import javafx.scene.Node;
 import javafx.scene.chart.PieChart;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
+import model.Categoria;
 import model.Transacao;
-import model.Receita;
-import model.Despesa;
-import persistence.RepositorioPersistencia;
+import persistence.Repositorio;
+import persistence.TotaisCorrentes;
 
 import java.math.BigDecimal;
 import java.text.NumberFormat;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
 import java.util.stream.Collectors;
 
 /**
  * Tela Home: Dashboard moderno com cards de resumo, gráfico e tabela.
+ * A tela aparece na hora com marcadores; os números são calculados numa
+ * thread de fundo e aplicados com Platform.runLater. Uma atualização nova
+ * torna obsoleta a anterior, que para no próximo passo e é descartada.
  */
 public class HomeView {
-    private final RepositorioPersistencia repo;
+    // threads daemon: um cálculo em andamento não segura o fechamento do programa
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "dashboard");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Tudo o que a tela mostra, montado fora da thread da interface.
+     */
+    private record Dados(TotaisCorrentes totais, List<Transacao> ultimas,
+                         Map<String, Double> despesasPorCategoria) {}
+
+    private final Repositorio repo;
     private final BorderPane view;
     // Formatador para Dinheiro Brasileiro (R$ 1.000,00)
     private final NumberFormat nf = NumberFormat.getCurrencyInstance(new Locale("pt", "BR"));
     private final DateTimeFormatter df = DateTimeFormatter.ofPattern("dd/MM/yyyy");
 
-    public HomeView(RepositorioPersistencia repo, Runnable onNovaTransacao, Runnable onConfiguracoes) {
+    private Label lblSaldo;
+    private Label lblReceitas;
+    private Label lblDespesas;
+    private Label lblUltimas;
+    private TextField txtBusca;
+    private TableView<Transacao> table;
+    private PieChart chart;
+    private List<Transacao> ultimas = List.of();
+
+    // cada atualização (e cada busca) recebe um número; só a mais recente é aplicada
+    private final AtomicLong geracao = new AtomicLong();
+    private final AtomicLong geracaoBusca = new AtomicLong();
+    private Future<?> calculo;
+    private Future<?> busca;
+
+    public HomeView(Repositorio repo, Runnable onNovaTransacao, Runnable onHistorico, Runnable onConfiguracoes) {
         this.repo = repo;
         this.view = new BorderPane();
-        build(onNovaTransacao, onConfiguracoes);
+        build(onNovaTransacao, onHistorico, onConfiguracoes);
+        atualizar();
     }
 
-    private void build(Runnable onNovaTransacao, Runnable onConfiguracoes) {
+    private void build(Runnable onNovaTransacao, Runnable onHistorico, Runnable onConfiguracoes) {
         view.setPadding(new Insets(20));
 
         // --- 1. BARRA LATERAL (Botões) ---
@@ -50,28 +90,30 @@ public class HomeView {
         btnNova.getStyleClass().add("button-success"); // Verde
         btnNova.setOnAction(e -> onNovaTransacao.run());
 
+        Button btnHist = new Button("Histórico Completo");
+        btnHist.setMaxWidth(Double.MAX_VALUE);
+        btnHist.setOnAction(e -> onHistorico.run());
+
         Button btnCfg = new Button("Configurações");
         btnCfg.setMaxWidth(Double.MAX_VALUE);
         btnCfg.setOnAction(e -> onConfiguracoes.run());
 
-        sidebar.getChildren().addAll(lblMenu, btnNova, btnCfg);
+        sidebar.getChildren().addAll(lblMenu, btnNova, btnHist, btnCfg);
         view.setLeft(sidebar);
 
         // --- 2. ÁREA CENTRAL (Dashboard) ---
         VBox centerLayout = new VBox(20); // Espaço vertical entre elementos
 
-        // 2.1 Cards de Resumo (Topo)
+        // 2.1 Cards de Resumo (Topo), com "..." até os números chegarem
         HBox cardsBox = new HBox(20); // Espaço horizontal entre cards
         cardsBox.setAlignment(Pos.CENTER_LEFT);
 
-        double saldo = calcularSaldo();
-        double rec = totalReceitas();
-        double desp = totalDespesas();
-
-        // Criação dos cards usando método auxiliar
-        VBox cardSaldo = createCard("SALDO ATUAL", saldo, saldo >= 0 ? "text-primary" : "text-danger");
-        VBox cardReceita = createCard("RECEITAS", rec, "text-success");
-        VBox cardDespesa = createCard("DESPESAS", desp, "text-danger");
+        lblSaldo = new Label();
+        lblReceitas = new Label();
+        lblDespesas = new Label();
+        VBox cardSaldo = createCard("SALDO ATUAL", lblSaldo, "text-primary");
+        VBox cardReceita = createCard("RECEITAS", lblReceitas, "text-success");
+        VBox cardDespesa = createCard("DESPESAS", lblDespesas, "text-danger");
 
         cardsBox.getChildren().addAll(cardSaldo, cardReceita, cardDespesa);
 
@@ -81,12 +123,17 @@ public class HomeView {
 
         // Coluna da Tabela (Esquerda do content)
         VBox tableBox = new VBox(10);
-        Label lblUltimas = new Label("Últimas Transações");
+        lblUltimas = new Label("Últimas Transações");
         lblUltimas.getStyleClass().add("section-title");
 
-        TableView<Transacao> table = createTable();
+        table = createTable();
         VBox.setVgrow(table, Priority.ALWAYS); // Tabela cresce
-        tableBox.getChildren().addAll(lblUltimas, table);
+
+        // Busca pelo índice de texto do repositório, também em segundo plano
+        txtBusca = new TextField();
+        txtBusca.setPromptText("Buscar por descrição ou categoria...");
+        txtBusca.textProperty().addListener((obs, antigo, texto) -> buscar(texto));
+        tableBox.getChildren().addAll(lblUltimas, txtBusca, table);
         HBox.setHgrow(tableBox, Priority.ALWAYS); // Box da tabela cresce horizontalmente
 
         // Coluna do Gráfico (Direita do content)
@@ -94,7 +141,7 @@ public class HomeView {
         Label lblChart = new Label("Despesas por Categoria");
         lblChart.getStyleClass().add("section-title");
 
-        PieChart chart = createPieChart();
+        chart = new PieChart();
         chart.setLabelsVisible(false); // Limpa visual
         chart.setLegendSide(javafx.geometry.Side.BOTTOM);
         chartBox.getChildren().addAll(lblChart, chart);
@@ -107,16 +154,100 @@ public class HomeView {
         view.setCenter(centerLayout);
     }
 
+    /**
+     * Recalcula o dashboard em segundo plano. Chamar de novo antes de terminar
+     * descarta o cálculo anterior.
+     */
+    public void atualizar() {
+        for (Label l : List.of(lblSaldo, lblReceitas, lblDespesas)) l.setText("...");
+        table.setPlaceholder(new Label("Carregando..."));
+        calculo = emSegundoPlano(geracao, calculo, this::calcular, this::aplicar);
+    }
+
+    private void buscar(String texto) {
+        if (texto == null || texto.isBlank()) {
+            geracaoBusca.incrementAndGet();
+            if (busca != null) busca.cancel(false);
+            lblUltimas.setText("Últimas Transações");
+            table.setItems(FXCollections.observableArrayList(ultimas));
+            return;
+        }
+        lblUltimas.setText("Resultados da Busca");
+        busca = emSegundoPlano(geracaoBusca, busca, minha -> repo.buscarTexto(texto, 50),
+                achadas -> table.setItems(FXCollections.observableArrayList(achadas)));
+    }
+
+    /**
+     * Roda a tarefa no executor e entrega o resultado na thread da interface
+     * se nenhuma outra com o mesmo contador tiver começado depois. A anterior
+     * é cancelada sem interromper a thread: interromper no meio de uma leitura
+     * fecharia o canal do arquivo e a partição seria tratada como corrompida.
+     */
+    private <T> Future<?> emSegundoPlano(AtomicLong contador, Future<?> anterior, LongFunction<T> tarefa,
+                                         Consumer<T> aplicar) {
+        if (anterior != null) anterior.cancel(false);
+        long minha = contador.incrementAndGet();
+        return EXECUTOR.submit(() -> {
+            try {
+                T resultado = tarefa.apply(minha);
+                Platform.runLater(() -> {
+                    if (contador.get() == minha) aplicar.accept(resultado);
+                });
+            } catch (CancellationException e) {
+                // outra atualização começou depois desta
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    private Dados calcular(long minha) {
+        // totais mantidos pelo repositório: não varre o histórico
+        TotaisCorrentes totais = repo.getTotais();
+        verificarAtual(minha);
+        // Últimas 15, pelo índice de data do repositório (sem ordenar o histórico)
+        List<Transacao> ultimas = repo.getUltimas(15);
+        verificarAtual(minha);
+        return new Dados(totais, ultimas, porCategoriaDespesa(totais));
+    }
+
+    private void verificarAtual(long minha) {
+        if (geracao.get() != minha) throw new CancellationException();
+    }
+
+    private void aplicar(Dados d) {
+        BigDecimal saldo = d.totais().getSaldo();
+        mostrar(lblSaldo, saldo, saldo.signum() >= 0 ? "text-primary" : "text-danger");
+        lblReceitas.setText(nf.format(d.totais().getReceitas()));
+        lblDespesas.setText(nf.format(d.totais().getDespesas()));
+
+        ultimas = d.ultimas();
+        table.setPlaceholder(new Label("Nenhuma transação"));
+        // com busca ativa, os resultados podem ter mudado junto com os dados
+        buscar(txtBusca.getText());
+
+        List<PieChart.Data> data = d.despesasPorCategoria().entrySet().stream()
+                .map(en -> new PieChart.Data(en.getKey(), en.getValue()))
+                .collect(Collectors.toList());
+        chart.setData(FXCollections.observableArrayList(data));
+    }
+
+    private void mostrar(Label lbl, BigDecimal valor, String cssClass) {
+        lbl.setText(nf.format(valor));
+        lbl.getStyleClass().removeAll("text-primary", "text-danger");
+        lbl.getStyleClass().add(cssClass);
+    }
+
     // --- Métodos Auxiliares de Construção ---
 
-    private VBox createCard(String title, double value, String cssClass) {
+    private VBox createCard(String title, Label lblValue, String cssClass) {
         VBox card = new VBox(5);
         card.getStyleClass().add("card"); // Classe CSS do card branco
 
         Label lblTitle = new Label(title);
         lblTitle.getStyleClass().add("card-title");
 
-        Label lblValue = new Label(nf.format(value)); // Formata R$
+        lblValue.setText("...");
         lblValue.getStyleClass().add("card-value");
         lblValue.getStyleClass().add(cssClass); // Cor do texto (verde/vermelho/azul)
 
@@ -140,6 +271,13 @@ public class HomeView {
                 )
         );
 
+        TableColumn<Transacao, String> colDesc = new TableColumn<>("Descrição");
+        colDesc.setCellValueFactory(c ->
+                new javafx.beans.property.SimpleStringProperty(
+                        c.getValue().getDescricao() == null ? "" : c.getValue().getDescricao()
+                )
+        );
+
         TableColumn<Transacao, String> colValor = new TableColumn<>("Valor");
         colValor.setStyle("-fx-alignment: CENTER-RIGHT;"); // Alinha números à direita
         colValor.setCellValueFactory(c -> {
@@ -147,70 +285,23 @@ public class HomeView {
             return new javafx.beans.property.SimpleStringProperty(nf.format(val));
         });
 
-        table.getColumns().addAll(colData, colCat, colValor);
-
-        // Ordenar últimas 15
-        List<Transacao> ultimas = repo.getTransacoes().stream()
-                .sorted(Comparator.comparing(Transacao::getData).reversed())
-                .limit(15)
-                .collect(Collectors.toList());
-        table.setItems(FXCollections.observableArrayList(ultimas));
-
+        table.getColumns().addAll(colData, colDesc, colCat, colValor);
         return table;
     }
 
-    private PieChart createPieChart() {
-        PieChart chart = new PieChart();
-        // Filtra apenas DESPESAS para o gráfico fazer sentido
-        Map<String, Double> porCat = porCategoriaDespesa();
-
-        List<PieChart.Data> data = porCat.entrySet().stream()
-                .map(en -> new PieChart.Data(en.getKey(), en.getValue()))
-                .collect(Collectors.toList());
-
-        chart.setData(FXCollections.observableArrayList(data));
-        return chart;
-    }
-
     public Node getView() {
         return view;
     }
 
     // --- Métodos de Cálculo ---
 
-    private double calcularSaldo() {
-        return repo.getTransacoes().stream()
-                .map(Transacao::impactoNoSaldo)
-                .map(BigDecimal::doubleValue)
-                .reduce(0.0, Double::sum);
-    }
-
-    private double totalReceitas() {
-        return repo.getTransacoes().stream()
-                .filter(t -> t instanceof Receita) // Uso seguro de instanceof
-                .map(Transacao::impactoNoSaldo)
-                .map(BigDecimal::doubleValue)
-                .reduce(0.0, Double::sum);
-    }
-
-    private double totalDespesas() {
-        return repo.getTransacoes().stream()
-                .filter(t -> t instanceof Despesa)
-                .map(Transacao::impactoNoSaldo)
-                .map(BigDecimal::doubleValue)
-                .map(Math::abs) // Pega valor absoluto para mostrar no card
-                .reduce(0.0, Double::sum);
-    }
-
-    private Map<String, Double> porCategoriaDespesa() {
+    private Map<String, Double> porCategoriaDespesa(TotaisCorrentes totais) {
         Map<String, Double> map = new HashMap<>();
-        repo.getTransacoes().stream()
-                .filter(t -> t instanceof Despesa) // Apenas despesas no gráfico
-                .forEach(t -> {
-                    String nome = t.getCategoria() == null ? "Outros" : t.getCategoria().getNome();
-                    double val = Math.abs((t.getValorBRL() == null ? t.getValorOriginal().doubleValue() : t.getValorBRL().doubleValue()));
-                    map.put(nome, map.getOrDefault(nome, 0.0) + val);
-                });
+        totais.getDespesasPorCategoria().forEach((id, val) -> {
+            String nome = id == null ? "Outros"
+                    : repo.findCategoriaById(id).map(Categoria::getNome).orElse("Sem categoria");
+            map.merge(nome, val.doubleValue(), Double::sum);
+        });
         return map;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,202 @@
+package ui;
+
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.beans.value.ObservableValue;
+import javafx.collections.ObservableListBase;
+import model.Transacao;
+import persistence.Consulta;
+import persistence.Pagina;
+import persistence.Repositorio;
+
+import java.math.BigDecimal;
+import java.text.NumberFormat;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Lista observável sobre o resultado de uma Consulta, para a TableView do
+ * histórico. De início só o tamanho é buscado; as linhas chegam em páginas,
+ * lidas em segundo plano quando a tabela pede uma que ainda não está em
+ * memória, e até MAX_PAGINAS ficam guardadas (sai a menos usada). Enquanto a
+ * página não chega, a linha mostra um marcador.
+ *
+ * Cada linha traz os textos já formatados, então rolar não cria propriedades
+ * nem formata nada. A página seguinte à última lida continua pelo cursor;
+ * saltos (arrastar a barra) usam a posição.
+ */
+class ListaPaginada extends ObservableListBase<ListaPaginada.Linha> {
+    static final int TAMANHO_PAGINA = 200;
+    private static final int MAX_PAGINAS = 20;
+    // páginas pedidas e ainda não lidas; rolando rápido, as mais antigas deixam de interessar
+    private static final int MAX_PEDIDOS = 4;
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "historico");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Uma linha da tabela, com as colunas prontas para exibição.
+     */
+    static final class Linha {
+        private final Transacao transacao;
+        final ObservableValue<String> data;
+        final ObservableValue<String> descricao;
+        final ObservableValue<String> categoria;
+        final ObservableValue<String> valor;
+
+        private Linha(Transacao transacao, String data, String descricao, String categoria, String valor) {
+            this.transacao = transacao;
+            this.data = new ReadOnlyStringWrapper(data).getReadOnlyProperty();
+            this.descricao = new ReadOnlyStringWrapper(descricao).getReadOnlyProperty();
+            this.categoria = new ReadOnlyStringWrapper(categoria).getReadOnlyProperty();
+            this.valor = new ReadOnlyStringWrapper(valor).getReadOnlyProperty();
+        }
+
+        /** A transação da linha, ou null enquanto a página não chegou. */
+        Transacao getTransacao() { return transacao; }
+    }
+
+    private static final Linha CARREGANDO = new Linha(null, "...", "", "", "");
+
+    private final Repositorio repo;
+    private final Supplier<Consulta> consulta;
+    // só usados na thread de leitura (NumberFormat não é thread-safe)
+    private final NumberFormat nf = NumberFormat.getCurrencyInstance(new Locale("pt", "BR"));
+    private final DateTimeFormatter df = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    private final IntConsumer aoContar;
+
+    private int tamanho;
+    // ordem de acesso: a primeira é a menos usada
+    private final LinkedHashMap<Integer, List<Linha>> paginas = new LinkedHashMap<>(32, 0.75f, true);
+    // último item de cada página lida, para continuar a seguinte pelo cursor
+    private final Map<Integer, Pagina.Cursor> fimDaPagina = new HashMap<>();
+    private final Set<Integer> pedidas = new HashSet<>();
+    private final Deque<Integer> fila = new ArrayDeque<>();
+    private volatile boolean ativa = true;
+
+    /**
+     * consulta deve devolver uma Consulta nova a cada chamada (a lista acrescenta o cursor).
+     * aoContar recebe o tamanho, na thread da interface, quando ele fica conhecido.
+     */
+    ListaPaginada(Repositorio repo, Supplier<Consulta> consulta, IntConsumer aoContar) {
+        this.repo = repo;
+        this.consulta = consulta;
+        this.aoContar = aoContar;
+        EXECUTOR.execute(() -> {
+            if (!ativa) return;
+            int n = repo.contar(consulta.get());
+            Platform.runLater(() -> {
+                if (!ativa) return;
+                tamanho = n;
+                beginChange();
+                nextAdd(0, n);
+                endChange();
+                aoContar.accept(n);
+            });
+        });
+    }
+
+    @Override
+    public int size() {
+        return tamanho;
+    }
+
+    @Override
+    public Linha get(int i) {
+        if (i < 0 || i >= tamanho) throw new IndexOutOfBoundsException(i);
+        int p = i / TAMANHO_PAGINA;
+        List<Linha> pagina = paginas.get(p);
+        if (pagina == null) {
+            pedir(p);
+            return CARREGANDO;
+        }
+        int j = i % TAMANHO_PAGINA;
+        // a base pode ter encolhido depois da contagem
+        return j < pagina.size() ? pagina.get(j) : CARREGANDO;
+    }
+
+    /**
+     * Para de buscar páginas; chamado quando a tela troca de consulta.
+     */
+    void descartar() {
+        ativa = false;
+        synchronized (fila) {
+            fila.clear();
+        }
+    }
+
+    private void pedir(int p) {
+        if (!pedidas.add(p)) return;
+        synchronized (fila) {
+            fila.push(p);
+            if (fila.size() > MAX_PEDIDOS) pedidas.remove(fila.removeLast());
+        }
+        EXECUTOR.execute(this::atenderPedido);
+    }
+
+    /**
+     * Lê a página pedida mais recentemente (a que está na tela agora).
+     */
+    private void atenderPedido() {
+        Integer p;
+        synchronized (fila) {
+            p = fila.poll();
+        }
+        if (p == null || !ativa) return;
+        Pagina.Cursor anterior = p == 0 ? null : fimDaPaginaAnterior(p);
+        List<Transacao> lidas;
+        if (p == 0) {
+            lidas = repo.paginar(consulta.get(), TAMANHO_PAGINA).getItens();
+        } else if (anterior != null) {
+            lidas = repo.paginar(consulta.get().apos(anterior), TAMANHO_PAGINA).getItens();
+        } else {
+            lidas = repo.consultar(consulta.get(), p * TAMANHO_PAGINA, TAMANHO_PAGINA);
+        }
+        List<Linha> linhas = lidas.stream().map(this::linha).collect(Collectors.toList());
+        Platform.runLater(() -> guardar(p, linhas));
+    }
+
+    private Pagina.Cursor fimDaPaginaAnterior(int p) {
+        synchronized (fimDaPagina) {
+            return fimDaPagina.get(p - 1);
+        }
+    }
+
+    private void guardar(int p, List<Linha> linhas) {
+        pedidas.remove(p);
+        if (!ativa) return;
+        paginas.put(p, linhas);
+        synchronized (fimDaPagina) {
+            if (!linhas.isEmpty()) fimDaPagina.put(p, Pagina.Cursor.de(linhas.get(linhas.size() - 1).getTransacao()));
+        }
+        Iterator<Integer> it = paginas.keySet().iterator();
+        while (paginas.size() > MAX_PAGINAS) {
+            it.next();
+            it.remove();
+        }
+        // avisa a tabela que as linhas da página trocaram de marcador para dados
+        int de = p * TAMANHO_PAGINA;
+        int ate = Math.min(tamanho, de + TAMANHO_PAGINA);
+        if (de >= ate) return;
+        beginChange();
+        nextReplace(de, ate, Collections.nCopies(ate - de, CARREGANDO));
+        endChange();
+    }
+
+    private Linha linha(Transacao t) {
+        BigDecimal val = t.getValorBRL() != null ? t.getValorBRL() : t.getValorOriginal();
+        return new Linha(t,
+                df.format(t.getData()),
+                t.getDescricao() == null ? "" : t.getDescricao(),
+                t.getCategoria() == null ? "-" : t.getCategoria().getNome(),
+                nf.format(val));
+    }
+}
@@ -1,33 +1,41 @@
 package ui; // Confirme se o pacote é esse mesmo
 
+import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Node;
 import javafx.scene.control.*;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
 import javafx.scene.text.Text;
 import javafx.collections.FXCollections;
 import model.*; // Seus imports de model
-import persistence.RepositorioPersistencia;
+import persistence.Repositorio;
 import service.CurrencyService;
+import service.Disjuntor;
 import util.DateUtils; // Seus imports utilitarios
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.UUID;
+import java.util.concurrent.CompletionException;
 
 public class NovaTransacaoView {
-    private final RepositorioPersistencia repo;
+    private static final DateTimeFormatter HORA = DateTimeFormatter.ofPattern("dd/MM HH:mm");
+
+    private final Repositorio repo;
     private final GridPane view;
     private final CurrencyService currencyService;
 
-    public NovaTransacaoView(RepositorioPersistencia repo, Runnable onSaved) {
+    public NovaTransacaoView(Repositorio repo, Runnable onSaved) {
         this.repo = repo;
         this.view = new GridPane();
-        this.currencyService = new CurrencyService();
+        this.currencyService = CurrencyService.getInstance();
         build(onSaved);
     }
 
@@ -72,6 +80,11 @@ public class NovaTransacaoView {
         Label lblConvertido = new Label("");
         lblConvertido.setStyle("-fx-text-fill: #27ae60; -fx-font-weight: bold;"); // Texto verde destaque
 
+        // situação da API de câmbio; vazio enquanto ela responde
+        Label lblApi = new Label("");
+        lblApi.setStyle("-fx-text-fill: #c0392b;");
+        mostrarEstadoApi(lblApi);
+
         Button btnSalvar = new Button("Salvar");
         btnSalvar.getStyleClass().add("button-success"); // <--- CLASSE CSS VERDE
         btnSalvar.setDefaultButton(true); // Ativa com Enter
@@ -98,8 +111,8 @@ public class NovaTransacaoView {
         HBox boxMoeda = new HBox(10, moeda, btnConverter); // Moeda e botão juntos
         view.add(boxMoeda, 1, 3);
 
-        // Linha 4 (Resultado conversão)
-        view.add(lblConvertido, 1, 4);
+        // Linha 4 (Resultado conversão e situação da API)
+        view.add(new VBox(4, lblConvertido, lblApi), 1, 4);
 
         // Linha 5
         view.add(new Label("Data:"), 0, 5);
@@ -128,11 +141,23 @@ public class NovaTransacaoView {
                     lblConvertido.setText("Já em BRL: R$ " + v);
                     return;
                 }
-                // Convertendo
+                // Convertendo fora da thread da interface; o resultado volta por runLater
                 lblConvertido.setText("Consultando API...");
-                // Idealmente rodar em outra thread, mas para estudo ok:
-                BigDecimal converted = currencyService.convert(m.name(), "BRL", v);
-                lblConvertido.setText(String.format("≈ R$ %.2f (Cotação Online)", converted.doubleValue()));
+                btnConverter.setDisable(true);
+                currencyService.getCotacaoAsync(m.name(), "BRL").whenComplete((cotacao, ex) -> Platform.runLater(() -> {
+                    btnConverter.setDisable(false);
+                    mostrarEstadoApi(lblApi);
+                    if (ex != null) {
+                        lblConvertido.setText("");
+                        showAlert("Erro conversão: " + causa(ex).getMessage());
+                    } else if (cotacao.desatualizada()) {
+                        // última cotação conhecida; a nova chega em segundo plano
+                        lblConvertido.setText(String.format("≈ R$ %.2f (cotação de %s atrás)",
+                                v.multiply(cotacao.taxa()).doubleValue(), idade(cotacao)));
+                    } else {
+                        lblConvertido.setText(String.format("≈ R$ %.2f (Cotação Online)", v.multiply(cotacao.taxa()).doubleValue()));
+                    }
+                }));
             } catch (Exception ex) {
                 lblConvertido.setText("");
                 showAlert("Erro conversão: " + ex.getMessage());
@@ -166,39 +191,26 @@ public class NovaTransacaoView {
                     t = new Despesa(id, d, v, moeda.getValue(), cat, descricao.getText());
                 }
 
-                // Lógica de conversão ao salvar
+                // Lógica de conversão ao salvar: a cotação chega em segundo plano
                 if (t.getMoeda() != Moeda.BRL) {
-                    try {
-                        BigDecimal converted = currencyService.convert(t.getMoeda().name(), "BRL", t.getValorOriginal());
-                        t.setValorBRL(converted);
-                    } catch (Exception ex) {
-                        TextInputDialog dlg = new TextInputDialog();
-                        dlg.setHeaderText("API Offline. Informe a taxa manual (1 " + t.getMoeda() + " = ? BRL)");
-                        dlg.showAndWait();
-                        if (dlg.getResult() == null || dlg.getResult().isEmpty()) {
-                            showAlert("Taxa necessária para salvar.");
-                            return;
-                        }
-                        BigDecimal taxa = new BigDecimal(dlg.getResult().replace(",", "."));
-                        t.setValorBRL(t.getValorOriginal().multiply(taxa));
-                    }
-                } else {
-                    t.setValorBRL(t.getValorOriginal());
+                    btnSalvar.setDisable(true);
+                    currencyService.getCotacaoAsync(t.getMoeda().name(), "BRL")
+                            .whenComplete((cotacao, ex) -> Platform.runLater(() -> {
+                                btnSalvar.setDisable(false);
+                                mostrarEstadoApi(lblApi);
+                                if (ex == null) {
+                                    // cotação vencida (talvez de dias atrás): só com a confirmação do usuário
+                                    if (cotacao.desatualizada() && !confirmarCotacaoAntiga(t, cotacao)) return;
+                                    t.setValorBRL(t.getValorOriginal().multiply(cotacao.taxa()));
+                                } else if (!pedirTaxaManual(t)) {
+                                    return;
+                                }
+                                concluir(t, onSaved);
+                            }));
+                    return;
                 }
-
-                // Validação de saldo (Opcional)
-                double saldoAtual = repo.getTransacoes().stream()
-                        .mapToDouble(tr -> tr.impactoNoSaldo().doubleValue())
-                        .sum();
-
-                // Exemplo: Bloquear se ficar negativo (Descomente se quiser usar)
-                // if (t instanceof Despesa && (saldoAtual + t.impactoNoSaldo().doubleValue()) < 0) {
-                //    throw new SaldoInsuficienteException("Saldo insuficiente!");
-                // }
-
-                repo.addTransacao(t);
-                showInfo("Transação salva com sucesso!");
-                onSaved.run(); // Volta para a tela anterior
+                t.setValorBRL(t.getValorOriginal());
+                concluir(t, onSaved);
 
             } catch (NumberFormatException nfe) {
                 showAlert("Valor numérico inválido.");
@@ -208,6 +220,76 @@ public class NovaTransacaoView {
         });
     }
 
+    /**
+     * API indisponível: pede a taxa ao usuário. Falso se ele não informar.
+     */
+    private boolean pedirTaxaManual(Transacao t) {
+        TextInputDialog dlg = new TextInputDialog();
+        dlg.setHeaderText("API Offline. Informe a taxa manual (1 " + t.getMoeda() + " = ? BRL)");
+        dlg.showAndWait();
+        if (dlg.getResult() == null || dlg.getResult().isEmpty()) {
+            showAlert("Taxa necessária para salvar.");
+            return false;
+        }
+        try {
+            BigDecimal taxa = new BigDecimal(dlg.getResult().replace(",", "."));
+            t.setValorBRL(t.getValorOriginal().multiply(taxa));
+            return true;
+        } catch (NumberFormatException nfe) {
+            showAlert("Valor numérico inválido.");
+            return false;
+        }
+    }
+
+    private boolean confirmarCotacaoAntiga(Transacao t, CurrencyService.Cotacao cotacao) {
+        Alert a = new Alert(Alert.AlertType.CONFIRMATION,
+                String.format("A cotação disponível (1 %s = R$ %s) é de %s atrás e ainda não foi renovada. Salvar com ela?",
+                        t.getMoeda(), cotacao.taxa().toPlainString(), idade(cotacao)),
+                ButtonType.YES, ButtonType.NO);
+        a.showAndWait();
+        return a.getResult() == ButtonType.YES;
+    }
+
+    private static String idade(CurrencyService.Cotacao cotacao) {
+        long min = cotacao.idade().toMinutes();
+        if (min < 120) return min + " min";
+        if (min < 48 * 60) return (min / 60) + " h";
+        return (min / (24 * 60)) + " dias";
+    }
+
+    private void concluir(Transacao t, Runnable onSaved) {
+        try {
+            // Validação de saldo (Opcional)
+            BigDecimal saldoAtual = repo.getTotais().getSaldo();
+
+            // Exemplo: Bloquear se ficar negativo (Descomente se quiser usar)
+            // if (t instanceof Despesa && saldoAtual.add(t.impactoNoSaldo()).signum() < 0) {
+            //    throw new SaldoInsuficienteException("Saldo insuficiente!");
+            // }
+
+            repo.addTransacao(t);
+            showInfo("Transação salva com sucesso!");
+            onSaved.run(); // Volta para a tela anterior
+        } catch (Exception ex) {
+            showAlert("Erro: " + ex.getMessage());
+        }
+    }
+
+    private void mostrarEstadoApi(Label lbl) {
+        Disjuntor.Estado estado = currencyService.getEstadoApi();
+        if (estado.isDisponivel()) {
+            lbl.setText("");
+            return;
+        }
+        String desde = estado.ultimoSucesso() == null ? "nunca"
+                : HORA.format(estado.ultimoSucesso().atZone(ZoneId.systemDefault()));
+        lbl.setText("API de câmbio fora do ar; usando a última cotação (obtida: " + desde + ")");
+    }
+
+    private static Throwable causa(Throwable ex) {
+        return ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+    }
+
     public Node getView() {
         return view;
     }
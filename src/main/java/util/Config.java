@@ -8,6 +8,12 @@ import java.nio.file.Paths;
  */
 public class Config {
     private static Path dataDir = Paths.get("./data");
+    // -Dfinmanager.compactar=true: grava os arquivos de dados com GZIP
+    private static boolean armazenamentoCompactado = Boolean.getBoolean("finmanager.compactar");
+    // -Dfinmanager.memoriaCompacta=true: mantém os meses em memória como arrays de primitivos
+    private static boolean memoriaCompacta = Boolean.getBoolean("finmanager.memoriaCompacta");
+    // -Dfinmanager.backend=sql: usa o banco H2 embarcado em vez dos arquivos
+    private static String backend = System.getProperty("finmanager.backend", "arquivos");
 
     public static void init() {
         // poderia ser carregado de arquivo config.json; por ora usa padrão ./data
@@ -16,4 +22,32 @@ public class Config {
     public static Path getDataDir() {
         return dataDir;
     }
-}
\ No newline at end of file
+
+    public static void setDataDir(Path dir) {
+        dataDir = dir;
+    }
+
+    public static boolean isArmazenamentoCompactado() {
+        return armazenamentoCompactado;
+    }
+
+    public static void setArmazenamentoCompactado(boolean compactado) {
+        armazenamentoCompactado = compactado;
+    }
+
+    public static boolean isMemoriaCompacta() {
+        return memoriaCompacta;
+    }
+
+    public static void setMemoriaCompacta(boolean compacta) {
+        memoriaCompacta = compacta;
+    }
+
+    public static boolean isBackendSql() {
+        return "sql".equalsIgnoreCase(backend);
+    }
+
+    public static void setBackend(String nome) {
+        backend = nome;
+    }
+}
@@ -0,0 +1,7 @@
+package util.exceptions;
+
+public class PersistenciaException extends RuntimeException {
+    public PersistenciaException(String msg, Throwable cause) {
+        super(msg, cause);
+    }
+}
@@ -0,0 +1,50 @@
+package persistence;
+
+import model.Categoria;
+import model.Transacao;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Medição manual (não roda com os testes): montagem do IndiceTexto e tempo
+ * de buscas por prefixo, comparado com a varredura por contains.
+ *
+ * Uso: java -cp target/classes:target/test-classes:&lt;gson.jar&gt; persistence.BuscaBenchmark [registros]
+ */
+public class BuscaBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        List<Transacao> transacoes = CompressaoBenchmark.gerar(n);
+        List<Categoria> categorias = new ArrayList<>(transacoes.stream()
+                .map(Transacao::getCategoria)
+                .collect(Collectors.toMap(Categoria::getId, c -> c, (a, b) -> a))
+                .values());
+
+        long t0 = System.nanoTime();
+        IndiceTexto indice = new IndiceTexto();
+        for (Transacao t : transacoes) indice.incluir(t);
+        System.out.printf("%d transações, índice montado em %d ms%n", n, (System.nanoTime() - t0) / 1_000_000);
+
+        String[] buscas = {"m", "merc", "farmacia", "alim", "padaria alim", "onibus transp", "xyz"};
+        // aquecimento
+        for (int i = 0; i < 20; i++) for (String b : buscas) indice.buscar(b, categorias, 50);
+
+        for (String b : buscas) {
+            long ini = System.nanoTime();
+            int achados = indice.buscar(b, categorias, 50).size();
+            long indiceUs = (System.nanoTime() - ini) / 1000;
+
+            ini = System.nanoTime();
+            String alvo = b.split(" ")[0];
+            long varredura = transacoes.stream()
+                    .filter(t -> IndiceTexto.normalizar(t.getDescricao()).contains(alvo))
+                    .count();
+            long varreduraUs = (System.nanoTime() - ini) / 1000;
+            System.out.printf("%-15s índice %6d µs (%d)   contains %8d µs (%d)%n",
+                    b, indiceUs, achados, varreduraUs, varredura);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package persistence;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import model.Categoria;
+import model.Despesa;
+import model.Moeda;
+import model.Receita;
+import model.Transacao;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CodecTransacaoJsonTest {
+
+    @Test
+    public void testRoundTripPolimorfico() throws Exception {
+        Categoria cat = new Categoria("c1", "Salário", "#4CAF50");
+        Transacao r = new Receita("r1", LocalDate.of(2024, 12, 31), new BigDecimal("10.5"), Moeda.USD, cat, "freela");
+        r.setValorBRL(new BigDecimal("52.335"));
+
+        StringWriter out = new StringWriter();
+        try (JsonWriter w = new JsonWriter(out)) {
+            CodecTransacaoJson.escrever(w, r);
+        }
+        Transacao lida = CodecTransacaoJson.ler(new JsonReader(new StringReader(out.toString())));
+
+        assertTrue(lida instanceof Receita);
+        assertEquals("r1", lida.getId());
+        assertEquals(LocalDate.of(2024, 12, 31), lida.getData());
+        assertEquals(new BigDecimal("10.5"), lida.getValorOriginal());
+        assertEquals(new BigDecimal("52.335"), lida.getValorBRL());
+        assertEquals(Moeda.USD, lida.getMoeda());
+        // só o id da categoria vai para o arquivo
+        assertFalse(out.toString().contains("Salário"));
+        assertEquals("c1", lida.getCategoria().getId());
+        assertEquals("freela", lida.getDescricao());
+    }
+
+    @Test
+    public void testRegistroAntigoSemTipo() throws Exception {
+        String antigo = "{\"id\":\"x\",\"data\":\"2025-01-02\",\"valorOriginal\":12.3,\"valorBRL\":null,"
+                + "\"moeda\":\"BRL\",\"categoria\":{\"id\":\"c\",\"nome\":\"Mercado\",\"cor\":\"#888888\"},\"extra\":[1,2]}";
+        Transacao t = CodecTransacaoJson.ler(new JsonReader(new StringReader(antigo)));
+        assertTrue(t instanceof Despesa);
+        assertNull(t.getValorBRL());
+        assertEquals(new BigDecimal("12.3"), t.getValorOriginal());
+        assertEquals("Mercado", t.getCategoria().getNome());
+    }
+
+    @Test
+    public void testRegistroInvalido() {
+        String semData = "{\"tipo\":\"Receita\",\"id\":\"x\",\"valorOriginal\":1}";
+        assertThrows(java.io.IOException.class,
+                () -> CodecTransacaoJson.ler(new JsonReader(new StringReader(semData))));
+    }
+}
@@ -0,0 +1,92 @@
+package persistence;
+
+import model.Categoria;
+import model.Despesa;
+import model.Moeda;
+import model.Receita;
+import model.Transacao;
+import util.Config;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Medição manual (não roda com os testes): tamanho em disco e tempo de
+ * gravação/leitura de um histórico sintético em cada formato.
+ *
+ * Uso: java -cp target/classes:target/test-classes:&lt;gson.jar&gt; persistence.CompressaoBenchmark [registros]
+ */
+public class CompressaoBenchmark {
+
+    private interface Etapa {
+        void executar() throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        Path dir = Files.createTempDirectory("finmanager-bench");
+        Config.setDataDir(dir);
+        List<Transacao> transacoes = gerar(n);
+        JsonPersistencia json = new JsonPersistencia();
+
+        System.out.printf("%d transações%n", n);
+        System.out.printf("%-26s %12s %10s %10s%n", "formato", "bytes", "grava ms", "lê ms");
+
+        medir("JSON indentado (anterior)", dir.resolve("a.json"),
+                () -> json.saveTransacoes(dir.resolve("a.json"), transacoes),
+                () -> json.loadTransacoes(dir.resolve("a.json"), t -> {}));
+        medir("JSON compacto + GZIP", dir.resolve("b.json.gz"),
+                () -> json.saveTransacoes(dir.resolve("b.json.gz"), transacoes),
+                () -> json.loadTransacoes(dir.resolve("b.json.gz"), t -> {}));
+        medir("binário", dir.resolve("c.bin"),
+                () -> SnapshotBinario.salvar(dir.resolve("c.bin"), transacoes, false),
+                () -> SnapshotBinario.carregar(dir.resolve("c.bin"), t -> {}));
+        medir("binário + GZIP", dir.resolve("d.bin"),
+                () -> SnapshotBinario.salvar(dir.resolve("d.bin"), transacoes, true),
+                () -> SnapshotBinario.carregar(dir.resolve("d.bin"), t -> {}));
+    }
+
+    private static void medir(String nome, Path arquivo, Etapa gravar, Etapa ler) throws Exception {
+        // aquecimento do JIT
+        gravar.executar();
+        ler.executar();
+        long t0 = System.nanoTime();
+        gravar.executar();
+        long t1 = System.nanoTime();
+        ler.executar();
+        long t2 = System.nanoTime();
+        System.out.printf("%-26s %12d %10d %10d%n", nome, Files.size(arquivo),
+                (t1 - t0) / 1_000_000, (t2 - t1) / 1_000_000);
+    }
+
+    static List<Transacao> gerar(int n) throws Exception {
+        Random rnd = new Random(42);
+        Categoria[] cats = {
+                new Categoria(UUID.randomUUID().toString(), "Salário", "#4CAF50"),
+                new Categoria(UUID.randomUUID().toString(), "Alimentação", "#FF9800"),
+                new Categoria(UUID.randomUUID().toString(), "Transporte", "#2196F3"),
+                new Categoria(UUID.randomUUID().toString(), "Moradia", "#9C27B0"),
+        };
+        String[] descricoes = {"mercado", "padaria", "ônibus", "aluguel", "freela", "farmácia", "restaurante"};
+        LocalDate inicio = LocalDate.of(2015, 1, 1);
+        List<Transacao> list = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            LocalDate data = inicio.plusDays(rnd.nextInt(3650));
+            BigDecimal valor = BigDecimal.valueOf(100 + rnd.nextInt(500_000), 2);
+            Categoria cat = cats[rnd.nextInt(cats.length)];
+            String desc = descricoes[rnd.nextInt(descricoes.length)];
+            Transacao t = rnd.nextInt(5) == 0
+                    ? new Receita(UUID.randomUUID().toString(), data, valor, Moeda.BRL, cat, desc)
+                    : new Despesa(UUID.randomUUID().toString(), data, valor, Moeda.BRL, cat, desc);
+            t.setValorBRL(valor);
+            list.add(t);
+        }
+        return list;
+    }
+}
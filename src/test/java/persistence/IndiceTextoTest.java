@@ -0,0 +1,110 @@
+package persistence;
+
+import model.Categoria;
+import model.Despesa;
+import model.Moeda;
+import model.Transacao;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import util.Config;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IndiceTextoTest {
+
+    @TempDir
+    Path dir;
+
+    private final Categoria mercado = new Categoria("c1", "Alimentação", null);
+    private final Categoria transporte = new Categoria("c2", "Transporte", null);
+
+    private Transacao despesa(String id, LocalDate data, Categoria cat, String descricao) throws Exception {
+        return new Despesa(id, data, new BigDecimal("10.00"), Moeda.BRL, cat, descricao);
+    }
+
+    private static List<String> ids(List<IndiceTexto.Achado> achados) {
+        return achados.stream().map(IndiceTexto.Achado::id).toList();
+    }
+
+    @Test
+    public void testPrefixoSemAcentoEPorCategoria() throws Exception {
+        IndiceTexto indice = new IndiceTexto();
+        indice.incluir(despesa("a", LocalDate.of(2025, 1, 10), mercado, "Padaria São João"));
+        indice.incluir(despesa("b", LocalDate.of(2025, 2, 10), transporte, "Ônibus"));
+        indice.incluir(despesa("c", LocalDate.of(2025, 3, 10), mercado, "Supermercado"));
+        List<Categoria> cats = List.of(mercado, transporte);
+
+        assertEquals(List.of("a"), ids(indice.buscar("sao", cats, 10)));
+        assertEquals(List.of("b"), ids(indice.buscar("ONIB", cats, 10)));
+        // nome da categoria, mais recente primeiro
+        assertEquals(List.of("c", "a"), ids(indice.buscar("alim", cats, 10)));
+        // todas as palavras precisam casar
+        assertEquals(List.of("a"), ids(indice.buscar("alim pad", cats, 10)));
+        assertTrue(indice.buscar("mercado", cats, 10).isEmpty());
+        assertTrue(indice.buscar("  ", cats, 10).isEmpty());
+    }
+
+    @Test
+    public void testExatoAntesDePrefixo() throws Exception {
+        IndiceTexto indice = new IndiceTexto();
+        indice.incluir(despesa("novo", LocalDate.of(2025, 5, 1), null, "Farmácias"));
+        indice.incluir(despesa("velho", LocalDate.of(2020, 1, 1), null, "farmacia"));
+
+        assertEquals(List.of("velho", "novo"), ids(indice.buscar("farmacia", List.of(), 10)));
+        assertEquals(List.of("velho"), ids(indice.buscar("farmacia", List.of(), 1)));
+    }
+
+    @Test
+    public void testAlteracoesMantemIndice() throws Exception {
+        IndiceTexto indice = new IndiceTexto();
+        for (int i = 0; i < 10; i++) indice.incluir(despesa("t" + i, LocalDate.of(2025, 1, 1 + i), null, "uber " + i));
+        indice.incluir(despesa("t3", LocalDate.of(2025, 1, 4), null, "taxi"));
+        for (int i = 5; i < 10; i++) indice.remover("t" + i);
+
+        assertEquals(5, indice.size());
+        assertEquals(List.of("t4", "t2", "t1", "t0"), ids(indice.buscar("uber", List.of(), 10)));
+        assertEquals(List.of("t3"), ids(indice.buscar("tax", List.of(), 10)));
+    }
+
+    @Test
+    public void testEdicoesNaoCrescemAFaixa() throws Exception {
+        IndiceTexto indice = new IndiceTexto();
+        for (int i = 0; i < 100; i++) indice.incluir(despesa("t" + i, LocalDate.of(2025, 1, 1), null, "mercado " + i));
+        // cada edição mata um número e ocupa outro; a compactação renumera
+        for (int i = 0; i < 10_000; i++) indice.incluir(despesa("t7", LocalDate.of(2025, 2, 1), null, "feira " + i));
+
+        assertEquals(100, indice.size());
+        assertTrue(indice.faixa() <= 2 * indice.size() + 1, "faixa " + indice.faixa());
+        assertEquals(List.of("t7"), ids(indice.buscar("feira 9999", List.of(), 10)));
+        assertEquals(99, indice.buscar("mercado", List.of(), 200).size());
+    }
+
+    @Test
+    public void testRepositorioBuscaEAcompanhaAlteracoes() throws Exception {
+        Config.setDataDir(dir);
+        ParticoesMensais particoes = new ParticoesMensais(dir.resolve("transacoes"), new JsonPersistencia());
+        particoes.abrir();
+        particoes.adicionar(despesa("a", LocalDate.of(2024, 6, 1), mercado, "Feira do bairro"));
+        particoes.salvarAlteradas();
+        List<Categoria> cats = List.of(mercado, transporte);
+
+        assertEquals(1, particoes.buscarTexto("feira", cats, 10).size());
+
+        // índice já montado: inclusão e mudança de data seguem valendo
+        particoes.adicionar(despesa("b", LocalDate.of(2025, 1, 2), mercado, "Feira orgânica"));
+        Transacao a = despesa("a", LocalDate.of(2025, 2, 1), transporte, "Feira do bairro");
+        particoes.substituir(a);
+        List<Transacao> achadas = particoes.buscarTexto("feira", cats, 10);
+        assertEquals(List.of("a", "b"), achadas.stream().map(Transacao::getId).toList());
+        assertEquals(LocalDate.of(2025, 2, 1), achadas.get(0).getData());
+        assertEquals(List.of("a"), particoes.buscarTexto("transp", cats, 10).stream().map(Transacao::getId).toList());
+
+        particoes.remover(a);
+        assertEquals(List.of("b"), particoes.buscarTexto("feira", cats, 10).stream().map(Transacao::getId).toList());
+    }
+}
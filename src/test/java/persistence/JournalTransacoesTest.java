@@ -0,0 +1,87 @@
+package persistence;
+
+import model.Categoria;
+import model.Despesa;
+import model.Moeda;
+import model.Receita;
+import model.Transacao;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JournalTransacoesTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testAppendReplay() throws Exception {
+        Categoria cat = new Categoria("c1", "Alimentação", "#FF9800");
+        Transacao r = new Receita("r1", LocalDate.of(2025, 3, 1), new BigDecimal("100.00"), Moeda.BRL, cat, "salário");
+        Transacao d = new Despesa("d1", LocalDate.of(2025, 3, 2), new BigDecimal("20.50"), Moeda.BRL, cat, "mercado");
+
+        JournalTransacoes journal = new JournalTransacoes(dir.resolve("transacoes.log"));
+        journal.append(JournalTransacoes.Operacao.ADD, r);
+        journal.append(JournalTransacoes.Operacao.ADD, d);
+        journal.append(JournalTransacoes.Operacao.REMOVE, r);
+        assertEquals(3, journal.getRegistros());
+        journal.descarregar();
+
+        List<String> ops = new ArrayList<>();
+        List<Transacao> lidas = new ArrayList<>();
+        new JournalTransacoes(dir.resolve("transacoes.log")).replay((op, t) -> {
+            ops.add(op.name());
+            lidas.add(t);
+        });
+        assertEquals(List.of("ADD", "ADD", "REMOVE"), ops);
+        assertTrue(lidas.get(0) instanceof Receita);
+        assertTrue(lidas.get(1) instanceof Despesa);
+        assertEquals(0, new BigDecimal("20.50").compareTo(lidas.get(1).getValorOriginal()));
+        assertEquals("c1", lidas.get(1).getCategoria().getId());
+    }
+
+    @Test
+    public void testReplayParaEmLinhaCorrompida() throws Exception {
+        Path arquivo = dir.resolve("transacoes.log");
+        JournalTransacoes journal = new JournalTransacoes(arquivo);
+        journal.append(JournalTransacoes.Operacao.ADD,
+                new Despesa("d1", LocalDate.of(2025, 1, 5), BigDecimal.TEN, Moeda.BRL, null, "x"));
+        journal.descarregar();
+        Files.writeString(arquivo, Files.readString(arquivo) + "{\"op\":\"ADD\",\"tip", java.nio.file.StandardOpenOption.TRUNCATE_EXISTING);
+
+        List<Transacao> lidas = new ArrayList<>();
+        journal.replay((op, t) -> lidas.add(t));
+        assertEquals(1, lidas.size());
+
+        journal.truncar();
+        assertEquals(0, Files.size(arquivo));
+    }
+
+    @Test
+    public void testNovaGeracaoDescartaCobertosPeloSnapshot() throws Exception {
+        Path arquivo = dir.resolve("transacoes.log");
+        JournalTransacoes journal = new JournalTransacoes(arquivo);
+        journal.append(JournalTransacoes.Operacao.ADD,
+                new Despesa("antes", LocalDate.of(2025, 1, 5), BigDecimal.TEN, Moeda.BRL, null, "x"));
+        int geracao = journal.novaGeracao();
+        journal.append(JournalTransacoes.Operacao.ADD,
+                new Despesa("depois", LocalDate.of(2025, 1, 6), BigDecimal.TEN, Moeda.BRL, null, "y"));
+
+        // registros da nova geração esperam o arquivo ser truncado
+        journal.descarregar();
+        assertFalse(Files.exists(arquivo));
+        journal.truncar(geracao);
+
+        List<String> ids = new ArrayList<>();
+        new JournalTransacoes(arquivo).replay((op, t) -> ids.add(t.getId()));
+        assertEquals(List.of("depois"), ids);
+    }
+}
@@ -0,0 +1,52 @@
+package persistence;
+
+import model.Transacao;
+
+import java.util.List;
+
+/**
+ * Medição manual (não roda com os testes): heap ocupado pelo mesmo histórico
+ * como objetos Transacao e como TabelaCompacta, e tempo de uma soma.
+ *
+ * Uso: java -cp target/classes:target/test-classes:&lt;gson.jar&gt; persistence.MemoriaBenchmark [registros]
+ */
+public class MemoriaBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+
+        long antes = usado();
+        List<Transacao> objetos = CompressaoBenchmark.gerar(n);
+        long heapObjetos = usado() - antes;
+
+        antes = usado();
+        TabelaCompacta tabela = TabelaCompacta.de(objetos);
+        long heapTabela = usado() - antes;
+
+        long t0 = System.nanoTime();
+        double somaObjetos = 0;
+        for (Transacao t : objetos) somaObjetos += t.getValorBRL().doubleValue();
+        long t1 = System.nanoTime();
+        long somaCentavos = 0;
+        for (int i = 0; i < tabela.size(); i++) somaCentavos += tabela.centavosEmBRL(i);
+        long t2 = System.nanoTime();
+
+        System.out.printf("%d transações%n", n);
+        System.out.printf("objetos:  %,d bytes (%d por registro), soma em %d µs%n",
+                heapObjetos, heapObjetos / n, (t1 - t0) / 1000);
+        System.out.printf("compacta: %,d bytes (%d por registro), soma em %d µs%n",
+                heapTabela, heapTabela / n, (t2 - t1) / 1000);
+        // mantém as duas estruturas vivas até aqui
+        System.out.printf("somas: %.2f / %.2f (%d / %d registros)%n",
+                somaObjetos, somaCentavos / 100.0, objetos.size(), tabela.size());
+    }
+
+    private static long usado() throws InterruptedException {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
@@ -0,0 +1,442 @@
+package persistence;
+
+import model.Categoria;
+import model.Despesa;
+import model.Moeda;
+import model.Receita;
+import model.Transacao;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import util.Config;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParticoesMensaisTest {
+
+    @TempDir
+    Path dir;
+
+    private Transacao despesa(String id, LocalDate data) throws Exception {
+        return new Despesa(id, data, new BigDecimal("10.00"), Moeda.BRL, null, id);
+    }
+
+    @Test
+    public void testSalvaApenasParticoesAlteradas() throws Exception {
+        Config.setDataDir(dir);
+        Path pdir = dir.resolve("transacoes");
+        ParticoesMensais particoes = new ParticoesMensais(pdir, new JsonPersistencia());
+        particoes.abrir();
+        particoes.adicionar(despesa("a", LocalDate.of(2025, 1, 10)));
+        particoes.adicionar(despesa("b", LocalDate.of(2025, 1, 20)));
+        particoes.adicionar(new Receita("c", LocalDate.of(2025, 3, 5), BigDecimal.ONE, Moeda.BRL, null, "c"));
+        particoes.salvarAlteradas();
+
+        assertTrue(Files.exists(pdir.resolve("2025-01.bin")));
+        assertTrue(Files.exists(pdir.resolve("2025-03.bin")));
+        Files.setLastModifiedTime(pdir.resolve("2025-01.bin"), FileTime.fromMillis(0));
+
+        ParticoesMensais reaberto = new ParticoesMensais(pdir, new JsonPersistencia());
+        reaberto.abrir();
+        assertEquals(3, reaberto.total());
+        assertEquals(1, reaberto.particao(YearMonth.of(2025, 3)).size());
+        reaberto.adicionar(despesa("d", LocalDate.of(2025, 3, 6)));
+        reaberto.salvarAlteradas();
+
+        // janeiro não foi tocado
+        assertEquals(0, Files.getLastModifiedTime(pdir.resolve("2025-01.bin")).toMillis());
+        assertEquals(2, reaberto.particao(YearMonth.of(2025, 1)).size());
+        assertEquals(4, reaberto.todas().size());
+    }
+
+    @Test
+    public void testSubstituirMoveDeParticao() throws Exception {
+        Config.setDataDir(dir);
+        ParticoesMensais particoes = new ParticoesMensais(dir.resolve("transacoes"), new JsonPersistencia());
+        particoes.abrir();
+        Transacao t = despesa("a", LocalDate.of(2025, 1, 10));
+        particoes.adicionar(t);
+        t.setData(LocalDate.of(2025, 2, 1));
+        assertTrue(particoes.substituir(t));
+        assertTrue(particoes.particao(YearMonth.of(2025, 1)).isEmpty());
+        assertEquals(1, particoes.particao(YearMonth.of(2025, 2)).size());
+        particoes.salvarAlteradas();
+        assertFalse(Files.exists(dir.resolve("transacoes").resolve("2025-01.bin")));
+    }
+
+    @Test
+    public void testIndicesAcompanhamAlteracoes() throws Exception {
+        Config.setDataDir(dir);
+        ParticoesMensais particoes = new ParticoesMensais(dir.resolve("transacoes"), new JsonPersistencia());
+        particoes.abrir();
+        Categoria mercado = new Categoria("m", "Mercado", "#000000");
+        Categoria lazer = new Categoria("l", "Lazer", "#FFFFFF");
+        Transacao a = new Despesa("a", LocalDate.of(2025, 1, 10), BigDecimal.TEN, Moeda.BRL, mercado, "a");
+        Transacao b = new Despesa("b", LocalDate.of(2025, 2, 15), BigDecimal.TEN, Moeda.BRL, mercado, "b");
+        particoes.adicionar(a);
+        particoes.adicionar(b);
+
+        assertEquals(2, particoes.entre(LocalDate.of(2025, 1, 1), LocalDate.of(2025, 2, 28)).size());
+        assertEquals(1, particoes.entre(LocalDate.of(2025, 1, 11), LocalDate.of(2025, 2, 28)).size());
+        assertSame(b, particoes.buscar("b"));
+
+        // objeto alterado fora do repositório: os índices usam as chaves antigas para desindexar
+        a.setCategoria(lazer);
+        a.setData(LocalDate.of(2025, 2, 20));
+        assertTrue(particoes.substituir(a));
+        assertEquals(1, particoes.daCategoria("m").size());
+        assertEquals(1, particoes.daCategoria("l").size());
+        assertTrue(particoes.entre(LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 31)).isEmpty());
+
+        assertTrue(particoes.remover(b));
+        assertNull(particoes.buscar("b"));
+        assertTrue(particoes.daCategoria("m").isEmpty());
+        assertFalse(particoes.remover(b));
+    }
+
+    @Test
+    public void testCategoriaResolvidaParaInstanciaUnica() throws Exception {
+        Config.setDataDir(dir);
+        Path pdir = dir.resolve("transacoes");
+        ParticoesMensais particoes = new ParticoesMensais(pdir, new JsonPersistencia());
+        particoes.abrir();
+        particoes.adicionar(new Despesa("a", LocalDate.of(2025, 1, 10), BigDecimal.TEN, Moeda.BRL,
+                new Categoria("m", "Mercado", null), "a"));
+        particoes.adicionar(new Despesa("b", LocalDate.of(2025, 2, 10), BigDecimal.TEN, Moeda.BRL,
+                new Categoria("m", "Mercado", null), "b"));
+        particoes.salvarAlteradas();
+
+        Categoria canonica = new Categoria("m", "Supermercado", null);
+        ParticoesMensais reaberto = new ParticoesMensais(pdir, new JsonPersistencia());
+        reaberto.usarCategorias(c -> c != null && c.getId().equals("m") ? canonica : c);
+        reaberto.abrir();
+        for (Transacao t : reaberto.todas()) assertSame(canonica, t.getCategoria());
+    }
+
+    @Test
+    public void testMemoriaCompactaRemontaSemReler() throws Exception {
+        Config.setDataDir(dir);
+        Config.setMemoriaCompacta(true);
+        try {
+            Path pdir = dir.resolve("transacoes");
+            ParticoesMensais particoes = new ParticoesMensais(pdir, new JsonPersistencia());
+            particoes.abrir();
+            // mais meses do que ficam carregados como objetos
+            for (int m = 1; m <= 24; m++) {
+                particoes.adicionar(despesa("t" + m, LocalDate.of(2023, 1, 15).plusMonths(m)));
+            }
+            particoes.salvarAlteradas();
+            try (var arquivos = Files.list(pdir)) {
+                for (Path p : arquivos.toList()) if (p.toString().endsWith(".bin")) Files.delete(p);
+            }
+            assertEquals(24, particoes.todas().size());
+            assertEquals("t1", particoes.particao(YearMonth.of(2023, 2)).get(0).getId());
+        } finally {
+            Config.setMemoriaCompacta(false);
+        }
+    }
+
+    @Test
+    public void testMesesFriosFicamSoNaTabelaCompacta() throws Exception {
+        Config.setDataDir(dir);
+        Config.setMemoriaCompacta(true);
+        try {
+            Path pdir = dir.resolve("transacoes");
+            ParticoesMensais particoes = new ParticoesMensais(pdir, new JsonPersistencia());
+            particoes.abrir();
+            Categoria salario = new Categoria("s", "Salário", null);
+            YearMonth inicio = YearMonth.of(2010, 1);
+            for (int m = 0; m < 130; m++) {
+                LocalDate dia = inicio.plusMonths(m).atDay(5);
+                particoes.adicionar(new Receita("r" + m, dia, new BigDecimal("100.00"), Moeda.BRL, salario, "salário"));
+                particoes.adicionar(despesa("d" + m, dia));
+            }
+            particoes.salvarAlteradas();
+            for (int m = 0; m < 130; m++) {
+                YearMonth mes = inicio.plusMonths(m);
+                assertFalse(particoes.isCarregada(mes) && particoes.isCompacta(mes), mes.toString());
+            }
+            assertTrue(particoes.compactasEmMemoria() <= 120);
+
+            // reaberto: as varreduras leem os meses direto para tabelas, sem partições
+            ParticoesMensais reaberto = new ParticoesMensais(pdir, new JsonPersistencia());
+            reaberto.abrir();
+            assertEquals(130, reaberto.contar(new Consulta().descricaoContem("salário")));
+            assertEquals(List.of("r0", "r1", "r2"), reaberto.consultar(new Consulta().somenteReceitas()
+                    .categorias(List.of("s")), 0, 3).stream().map(Transacao::getId).toList());
+            assertEquals(List.of("r129", "d129", "r128"),
+                    reaberto.consultar(new Consulta().ordem(Consulta.Ordem.MAIS_RECENTES), 0, 3).stream().map(Transacao::getId).toList());
+            assertEquals(new BigDecimal("13000.00"), reaberto.totais().getReceitas());
+            for (int m = 0; m < 130; m++) assertFalse(reaberto.isCarregada(inicio.plusMonths(m)));
+            assertTrue(reaberto.isCompacta(inicio.plusMonths(129)));
+            assertEquals(120, reaberto.compactasEmMemoria());
+
+            // buscar pelo id promove o mês para partição, que deixa de estar na tabela
+            assertEquals("d127", reaberto.buscar("d127").getId());
+            assertTrue(reaberto.isCarregada(inicio.plusMonths(127)));
+            assertFalse(reaberto.isCompacta(inicio.plusMonths(127)));
+        } finally {
+            Config.setMemoriaCompacta(false);
+        }
+    }
+
+    @Test
+    public void testIdForaDaMemoriaNaoAbreOutrasParticoes() throws Exception {
+        Config.setDataDir(dir);
+        Path pdir = dir.resolve("transacoes");
+        ParticoesMensais particoes = new ParticoesMensais(pdir, new JsonPersistencia());
+        particoes.abrir();
+        YearMonth inicio = YearMonth.of(2020, 1);
+        List<String> ids = new java.util.ArrayList<>();
+        for (int m = 0; m < 30; m++) {
+            String id = java.util.UUID.randomUUID().toString();
+            ids.add(id);
+            particoes.adicionar(despesa(id, inicio.plusMonths(m).atDay(3)));
+        }
+        particoes.adicionar(despesa("texto", inicio.plusMonths(7).atDay(4)));
+        particoes.salvarAlteradas();
+
+        ParticoesMensais reaberto = new ParticoesMensais(pdir, new JsonPersistencia());
+        reaberto.abrir();
+        assertNull(reaberto.buscar(java.util.UUID.randomUUID().toString()));
+        assertNull(reaberto.buscar("desconhecido"));
+        for (int m = 0; m < 30; m++) assertFalse(reaberto.isCarregada(inicio.plusMonths(m)));
+
+        // só o mês do id é aberto
+        assertEquals(ids.get(12), reaberto.buscar(ids.get(12)).getId());
+        assertEquals("texto", reaberto.buscar("texto").getId());
+        for (int m = 0; m < 30; m++) {
+            assertEquals(m == 12 || m == 7, reaberto.isCarregada(inicio.plusMonths(m)), "mês " + m);
+        }
+
+        // base sem os índices: volta a procurar lendo as partições
+        try (var arquivos = Files.list(pdir)) {
+            for (Path p : arquivos.toList()) if (p.toString().endsWith(".ids")) Files.delete(p);
+        }
+        ParticoesMensais antiga = new ParticoesMensais(pdir, new JsonPersistencia());
+        antiga.abrir();
+        assertEquals(ids.get(25), antiga.buscar(ids.get(25)).getId());
+    }
+
+    @Test
+    public void testTotaisAcompanhamAlteracoes() throws Exception {
+        Config.setDataDir(dir);
+        Path pdir = dir.resolve("transacoes");
+        ParticoesMensais particoes = new ParticoesMensais(pdir, new JsonPersistencia());
+        particoes.abrir();
+        Categoria mercado = new Categoria("m", "Mercado", null);
+        Transacao salario = new Receita("s", LocalDate.of(2024, 1, 5), new BigDecimal("3000.00"), Moeda.BRL, null, "s");
+        Transacao compra = new Despesa("c", LocalDate.of(2024, 1, 6), new BigDecimal("10.00"), Moeda.USD, mercado, "c");
+        compra.setValorBRL(new BigDecimal("50.25"));
+        particoes.adicionar(salario);
+        particoes.adicionar(compra);
+        // meses suficientes para despejar janeiro da memória
+        for (int m = 1; m <= 20; m++) particoes.adicionar(despesa("d" + m, LocalDate.of(2024, 1, 1).plusMonths(m)));
+        particoes.salvarAlteradas();
+
+        compra.setValorBRL(new BigDecimal("60.00"));
+        compra.setData(LocalDate.of(2024, 2, 1));
+        particoes.substituir(compra);
+        TotaisCorrentes totais = particoes.totais();
+        assertEquals(new BigDecimal("3000.00"), totais.getReceitas());
+        assertEquals(new BigDecimal("260.00"), totais.getDespesas());
+        assertEquals(new BigDecimal("2740.00"), totais.getSaldo());
+        assertEquals(new BigDecimal("60.00"), totais.getDespesasPorCategoria().get("m"));
+
+        particoes.remover(compra);
+        particoes.salvarAlteradas();
+        ParticoesMensais reaberto = new ParticoesMensais(pdir, new JsonPersistencia());
+        reaberto.abrir();
+        assertEquals(new BigDecimal("2800.00"), reaberto.totais().getSaldo());
+        assertNull(reaberto.totais().getDespesasPorCategoria().get("m"));
+    }
+
+    @Test
+    public void testCuboGravadoNoManifesto() throws Exception {
+        Config.setDataDir(dir);
+        Path pdir = dir.resolve("transacoes");
+        ParticoesMensais particoes = new ParticoesMensais(pdir, new JsonPersistencia());
+        particoes.abrir();
+        Categoria mercado = new Categoria("m", "Mercado", null);
+        particoes.adicionar(new Despesa("a", LocalDate.of(2025, 1, 3), new BigDecimal("20.00"), Moeda.BRL, mercado, "a"));
+        particoes.adicionar(new Despesa("b", LocalDate.of(2025, 1, 9), new BigDecimal("5.50"), Moeda.BRL, mercado, "b"));
+        particoes.adicionar(new Receita("c", LocalDate.of(2025, 2, 1), new BigDecimal("100"), Moeda.BRL, null, "c"));
+        particoes.salvarAlteradas();
+
+        // sem as partições no disco, o cubo só pode ter vindo do manifesto
+        Files.delete(pdir.resolve("2025-01.bin"));
+        Files.delete(pdir.resolve("2025-02.bin"));
+        ParticoesMensais reaberto = new ParticoesMensais(pdir, new JsonPersistencia());
+        reaberto.abrir();
+        CuboMensal cubo = reaberto.cubo();
+        assertEquals(2, cubo.doMes(YearMonth.of(2025, 1)).getQuantidade("m", false));
+        assertEquals(new BigDecimal("25.50"), cubo.doMes(YearMonth.of(2025, 1)).getDespesasPorCategoria().get("m"));
+        assertEquals(new BigDecimal("74.50"), cubo.doPeriodo(YearMonth.of(2025, 1), YearMonth.of(2025, 2)).getSaldo());
+        assertEquals(2, cubo.serie(YearMonth.of(2024, 12), YearMonth.of(2025, 3)).size());
+        assertEquals(new BigDecimal("74.50"), reaberto.totais().getSaldo());
+    }
+
+    @Test
+    public void testParticaoIlegivelMantemResumo() throws Exception {
+        Config.setDataDir(dir);
+        Path pdir = dir.resolve("transacoes");
+        ParticoesMensais particoes = new ParticoesMensais(pdir, new JsonPersistencia());
+        particoes.abrir();
+        particoes.adicionar(despesa("a", LocalDate.of(2025, 1, 3)));
+        particoes.adicionar(despesa("b", LocalDate.of(2025, 1, 9)));
+        particoes.adicionar(new Receita("c", LocalDate.of(2025, 2, 1), new BigDecimal("100"), Moeda.BRL, null, "c"));
+        particoes.salvarAlteradas();
+        Files.write(pdir.resolve("2025-01.bin"), new byte[]{1, 2, 3});
+
+        ParticoesMensais reaberto = new ParticoesMensais(pdir, new JsonPersistencia());
+        reaberto.abrir();
+        assertTrue(reaberto.particao(YearMonth.of(2025, 1)).isEmpty());
+        assertEquals(java.util.Set.of(YearMonth.of(2025, 1)), reaberto.mesesIlegiveis());
+        // os 20,00 de janeiro continuam no saldo e no cubo
+        assertEquals(new BigDecimal("80.00"), reaberto.totais().getSaldo());
+        assertEquals(2, reaberto.cubo().doMes(YearMonth.of(2025, 1)).getQuantidade());
+        // mas a contagem de linhas é a das que a consulta devolve
+        assertEquals(1, reaberto.contar(new Consulta()));
+        assertEquals(List.of("c"), reaberto.consultar(new Consulta(), 0, 10).stream().map(Transacao::getId).toList());
+
+        // lançamento novo no mês soma ao que não pôde ser lido, também depois de reabrir
+        reaberto.adicionar(despesa("d", LocalDate.of(2025, 1, 20)));
+        reaberto.salvarAlteradas();
+        assertEquals(new BigDecimal("70.00"), reaberto.totais().getSaldo());
+        assertEquals(2, reaberto.contar(new Consulta()));
+        assertEquals(List.of("c"), reaberto.consultar(new Consulta(), 1, 10).stream().map(Transacao::getId).toList());
+        ParticoesMensais outra = new ParticoesMensais(pdir, new JsonPersistencia());
+        outra.abrir();
+        assertEquals(1, outra.particao(YearMonth.of(2025, 1)).size());
+        assertEquals(new BigDecimal("70.00"), outra.totais().getSaldo());
+        assertEquals(3, outra.cubo().doMes(YearMonth.of(2025, 1)).getQuantidade());
+        assertEquals(java.util.Set.of(YearMonth.of(2025, 1)), outra.mesesIlegiveis());
+    }
+
+    @Test
+    public void testUltimasComLancamentoRetroativo() throws Exception {
+        Config.setDataDir(dir);
+        ParticoesMensais particoes = new ParticoesMensais(dir.resolve("transacoes"), new JsonPersistencia());
+        particoes.abrir();
+        for (int d = 1; d <= 40; d++) particoes.adicionar(despesa("t" + d, LocalDate.of(2025, 1, 1).plusDays(d * 3L)));
+        // incluído por último, mas com data antiga: não pode aparecer entre as recentes
+        particoes.adicionar(despesa("antiga", LocalDate.of(2020, 5, 5)));
+        particoes.adicionar(despesa("retro", LocalDate.of(2025, 3, 10)));
+
+        List<Transacao> ultimas = particoes.ultimas(5);
+        assertEquals(List.of("t40", "t39", "t38", "t37", "t36"), ultimas.stream().map(Transacao::getId).toList());
+        List<String> maisUm = particoes.ultimas(30).stream().map(Transacao::getId).toList();
+        assertTrue(maisUm.contains("retro"));
+        assertFalse(maisUm.contains("antiga"));
+        assertEquals(42, particoes.ultimas(100).size());
+        assertEquals("antiga", particoes.ultimas(100).get(41).getId());
+    }
+
+    @Test
+    public void testConsultaComCursor() throws Exception {
+        Config.setDataDir(dir);
+        ParticoesMensais particoes = new ParticoesMensais(dir.resolve("transacoes"), new JsonPersistencia());
+        particoes.abrir();
+        Categoria mercado = new Categoria("m", "Mercado", null);
+        for (int i = 0; i < 30; i++) {
+            // três por dia, incluídas fora da ordem de id
+            String id = String.format("%02d", 29 - i);
+            particoes.adicionar(new Despesa(id, LocalDate.of(2025, 1, 1).plusDays(i / 3 * 20L), BigDecimal.valueOf(i + 1),
+                    Moeda.BRL, i % 2 == 0 ? mercado : null, i % 5 == 0 ? "Feira livre" : "outros"));
+        }
+        particoes.adicionar(new Receita("r", LocalDate.of(2025, 2, 1), BigDecimal.TEN, Moeda.USD, mercado, "feira"));
+
+        Consulta c = new Consulta().somenteDespesas().ordem(Consulta.Ordem.MAIS_RECENTES);
+        List<String> todas = particoes.consultar(c).map(Transacao::getId).toList();
+        assertEquals(30, todas.size());
+        assertEquals(List.of("02", "01", "00", "05", "04"), todas.subList(0, 5));
+
+        // continua exatamente de onde parou, inclusive no meio de um dia
+        Transacao quarta = particoes.consultar(c).skip(3).findFirst().orElseThrow();
+        c.apos(Pagina.Cursor.de(quarta));
+        assertEquals(todas.subList(4, 30), particoes.consultar(c).map(Transacao::getId).toList());
+
+        Consulta filtros = new Consulta().categorias(List.of("m")).descricaoContem("FEIRA")
+                .valorEntre(new BigDecimal("5"), null).periodo(LocalDate.of(2025, 2, 1), null);
+        assertEquals(List.of("r", "19", "09"), particoes.consultar(filtros).map(Transacao::getId).toList());
+        assertEquals(1, particoes.consultar(new Consulta().moedas(Moeda.USD)).count());
+    }
+
+    @Test
+    public void testContagemEAcessoPorPosicao() throws Exception {
+        Config.setDataDir(dir);
+        Path pdir = dir.resolve("transacoes");
+        ParticoesMensais particoes = new ParticoesMensais(pdir, new JsonPersistencia());
+        particoes.abrir();
+        Categoria mercado = new Categoria("m", "Mercado", null);
+        for (int i = 0; i < 300; i++) {
+            Transacao t = i % 4 == 0
+                    ? new Receita("r" + i, LocalDate.of(2024, 1, 1).plusDays(i), BigDecimal.ONE, Moeda.BRL, null, "pix")
+                    : new Despesa("d" + i, LocalDate.of(2024, 1, 1).plusDays(i), BigDecimal.ONE, Moeda.BRL, i % 3 == 0 ? mercado : null, "compra");
+            particoes.adicionar(t);
+        }
+        particoes.salvarAlteradas();
+
+        // reaberto: as contagens de meses inteiros saem do cubo no manifesto
+        ParticoesMensais reaberto = new ParticoesMensais(pdir, new JsonPersistencia());
+        reaberto.abrir();
+        Consulta despesasDoMercado = new Consulta().somenteDespesas().categorias(List.of("m"));
+        assertEquals(reaberto.consultar(despesasDoMercado).count(), reaberto.contar(despesasDoMercado));
+        assertEquals(75, reaberto.contar(new Consulta().somenteReceitas()));
+        Consulta periodo = new Consulta().periodo(LocalDate.of(2024, 2, 10), LocalDate.of(2024, 5, 3));
+        assertEquals(reaberto.consultar(periodo).count(), reaberto.contar(periodo));
+        assertEquals(75, reaberto.contar(new Consulta().descricaoContem("PIX")));
+
+        for (Consulta c : List.of(new Consulta().ordem(Consulta.Ordem.MAIS_RECENTES), despesasDoMercado, periodo)) {
+            List<String> todas = reaberto.consultar(c).map(Transacao::getId).toList();
+            for (int de : new int[]{0, 17, 31, todas.size() - 5, todas.size()}) {
+                assertEquals(todas.subList(de, Math.min(todas.size(), de + 40)),
+                        reaberto.consultar(c, de, 40).stream().map(Transacao::getId).toList());
+            }
+        }
+    }
+
+    @Test
+    public void testLeituraEmOutraThreadDuranteGravacoes() throws Exception {
+        Config.setDataDir(dir);
+        ParticoesMensais particoes = new ParticoesMensais(dir.resolve("transacoes"), new JsonPersistencia());
+        particoes.abrir();
+        AtomicBoolean parar = new AtomicBoolean();
+        AtomicReference<Throwable> erro = new AtomicReference<>();
+        Thread leitor = new Thread(() -> {
+            try {
+                while (!parar.get()) {
+                    particoes.totais();
+                    particoes.ultimas(15);
+                    particoes.consultar(new Consulta().ordem(Consulta.Ordem.MAIS_RECENTES)).limit(50).count();
+                    particoes.buscarTexto("compra", List.of(), 10);
+                }
+            } catch (Throwable t) {
+                erro.set(t);
+            }
+        });
+        leitor.start();
+        // mais meses que o limite em memória, para forçar leituras e despejos
+        for (int i = 0; i < 600; i++) {
+            Transacao t = new Despesa("t" + i, LocalDate.of(2020, 1, 1).plusDays(i * 5L), BigDecimal.ONE, Moeda.BRL, null, "compra " + i);
+            particoes.adicionar(t);
+            if (i % 3 == 0) particoes.remover(t);
+            if (i % 100 == 99) particoes.salvarAlteradas();
+        }
+        parar.set(true);
+        leitor.join();
+
+        assertNull(erro.get());
+        assertEquals(400, particoes.totais().getQuantidade());
+        assertEquals(400, particoes.buscarTexto("compra", List.of(), 1000).size());
+    }
+}
@@ -0,0 +1,140 @@
+package persistence;
+
+import model.Categoria;
+import model.Despesa;
+import model.Moeda;
+import model.Transacao;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import service.ConversaoEmLote;
+import service.CurrencyService;
+import util.Config;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RepositorioPersistenciaTest {
+
+    @TempDir
+    Path dir;
+
+    private Transacao despesa(String id) throws Exception {
+        return new Despesa(id, LocalDate.of(2025, 1, 10), BigDecimal.TEN, Moeda.BRL, null, id);
+    }
+
+    @Test
+    public void testCompactacaoQueFalhaMantemJournal() throws Exception {
+        Config.setDataDir(dir);
+        RepositorioPersistencia repo = new RepositorioPersistencia();
+        repo.loadAll();
+        repo.addTransacao(despesa("a"));
+        repo.flush();
+
+        // um arquivo no lugar da pasta das partições: a regravação falha
+        Path pdir = dir.resolve("transacoes");
+        try (Stream<Path> s = Files.walk(pdir)) {
+            for (Path p : s.sorted(Comparator.reverseOrder()).toList()) Files.delete(p);
+        }
+        Files.writeString(pdir, "");
+        repo.saveTransacoes();
+        repo.flush();
+
+        repo.addTransacao(despesa("b"));
+        repo.flush();
+
+        List<String> ids = new ArrayList<>();
+        new JournalTransacoes(new JsonPersistencia().getJournalFile()).replay((op, t) -> ids.add(t.getId()));
+        assertEquals(List.of("a", "b"), ids);
+    }
+
+    @Test
+    public void testPendentesDeCotacaoSobrevivemAoReinicio() throws Exception {
+        Config.setDataDir(dir);
+        RepositorioPersistencia repo = new RepositorioPersistencia();
+        repo.loadAll();
+        repo.addTransacao(new Despesa("usd", LocalDate.of(2025, 3, 10), new BigDecimal("10"), Moeda.USD, null, "x"));
+        repo.addTransacao(despesa("brl"));
+        repo.saveTransacoes();
+        repo.flush();
+
+        // nova execução: a fila em memória se perdeu, mas a transação ficou sem valor em BRL
+        RepositorioPersistencia reaberto = new RepositorioPersistencia();
+        reaberto.loadAll();
+        CurrencyService cambio = new CurrencyService() {
+            @Override
+            public BigDecimal getRateEmCache(String from, String to, LocalDate data) {
+                return new BigDecimal("5");
+            }
+        };
+        ConversaoEmLote conversao = new ConversaoEmLote(cambio);
+        assertEquals(1, conversao.enfileirar(reaberto));
+        assertEquals(0, conversao.enfileirar(reaberto)); // já na fila
+        assertEquals(1, conversao.reprocessar(reaberto));
+        assertEquals(new BigDecimal("50.00"), reaberto.findTransacaoById("usd").orElseThrow().getValorBRL());
+        assertEquals(0, reaberto.contar(new Consulta().semValorBRL()));
+    }
+
+    @Test
+    public void testExportacaoLevaCategoriasParaOutraPasta() throws Exception {
+        Config.setDataDir(dir.resolve("a"));
+        RepositorioPersistencia origem = new RepositorioPersistencia();
+        origem.loadAll();
+        Categoria alimentacao = origem.getCategorias().stream()
+                .filter(c -> c.getNome().equals("Alimentação")).findFirst().orElseThrow();
+        Categoria viagem = new Categoria("viagem", "Viagem", "#000000");
+        origem.addCategoria(viagem);
+        origem.addTransacao(new Despesa("m", LocalDate.of(2025, 1, 10), BigDecimal.TEN, Moeda.BRL, alimentacao, "mercado"));
+        origem.addTransacao(new Despesa("v", LocalDate.of(2025, 1, 11), BigDecimal.TEN, Moeda.BRL, viagem, "hotel"));
+        Path exportado = dir.resolve("exportado.json");
+        origem.exportarJson(exportado);
+        origem.flush();
+
+        // outra pasta: as categorias padrão têm outros ids
+        Config.setDataDir(dir.resolve("b"));
+        RepositorioPersistencia destino = new RepositorioPersistencia();
+        destino.loadAll();
+        assertEquals(2, destino.importarJson(exportado));
+        Categoria local = destino.getCategorias().stream()
+                .filter(c -> c.getNome().equals("Alimentação")).findFirst().orElseThrow();
+        assertNotEquals(alimentacao.getId(), local.getId());
+        assertSame(local, destino.findTransacaoById("m").orElseThrow().getCategoria());
+        // a que não existia é cadastrada com o nome e a cor do arquivo
+        Categoria criada = destino.findCategoriaById("viagem").orElseThrow();
+        assertEquals("Viagem", criada.getNome());
+        assertSame(criada, destino.findTransacaoById("v").orElseThrow().getCategoria());
+        destino.flush();
+    }
+
+    @Test
+    public void testArquivoRuimSoECopiadoSeForDaPastaDeDados() throws Exception {
+        Path dados = dir.resolve("dados");
+        Config.setDataDir(dados);
+        Files.createDirectories(dados);
+        Files.writeString(dados.resolve("transacoes.json"), "[{\"tipo\":\"Despesa\",");
+        RepositorioPersistencia repo = new RepositorioPersistencia();
+        repo.loadAll();
+        repo.flush();
+        assertEquals(1, corrompidos(dados));
+
+        // importar um arquivo externo ruim só falha: nada é copiado para a pasta de dados
+        Path externo = dir.resolve("externo.json");
+        Files.writeString(externo, "[{\"tipo\":");
+        assertThrows(java.io.IOException.class, () -> repo.importarJson(externo));
+        assertEquals(1, corrompidos(dados));
+        assertEquals(0, corrompidos(dir));
+    }
+
+    private static long corrompidos(Path pasta) throws Exception {
+        try (Stream<Path> s = Files.list(pasta)) {
+            return s.filter(p -> p.getFileName().toString().contains(".corrompido-")).count();
+        }
+    }
+}
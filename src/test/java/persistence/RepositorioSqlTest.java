@@ -0,0 +1,125 @@
+package persistence;
+
+import model.Categoria;
+import model.Despesa;
+import model.Moeda;
+import model.Receita;
+import model.Transacao;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import util.Config;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RepositorioSqlTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testCrudEConsultaPorPeriodo() throws Exception {
+        Config.setDataDir(dir);
+        RepositorioSql repo = new RepositorioSql();
+        repo.loadAll();
+        assertEquals(3, repo.getCategorias().size());
+        Categoria cat = repo.getCategorias().get(0);
+
+        Transacao r = new Receita("r1", LocalDate.of(2025, 3, 1), new BigDecimal("1000.00"), Moeda.BRL, cat, "salário");
+        Transacao d = new Despesa("d1", LocalDate.of(2025, 4, 2), new BigDecimal("35.90"), Moeda.USD, cat, "livro");
+        d.setValorBRL(new BigDecimal("180.5"));
+        repo.addTransacao(r);
+        repo.addTransacao(d);
+
+        List<Transacao> marco = repo.getTransacoesDoMes(YearMonth.of(2025, 3));
+        assertEquals(1, marco.size());
+        assertTrue(marco.get(0) instanceof Receita);
+        assertSame(cat, marco.get(0).getCategoria());
+
+        d.setDescricao("livros");
+        repo.updateTransacao(d);
+        Transacao lida = repo.getTransacoesEntre(LocalDate.of(2025, 4, 1), LocalDate.of(2025, 4, 30)).get(0);
+        assertEquals("livros", lida.getDescricao());
+        assertEquals(0, new BigDecimal("180.5").compareTo(lida.getValorBRL()));
+        assertEquals(Moeda.USD, lida.getMoeda());
+
+        d.setValorBRL(new BigDecimal("200.00"));
+        repo.updateTransacao(d);
+        assertEquals(0, new BigDecimal("800.00").compareTo(repo.getTotais().getSaldo()));
+
+        assertEquals(1, repo.getCubo().doMes(YearMonth.of(2025, 4)).getQuantidade(cat.getId(), false));
+        assertEquals(0, new BigDecimal("1000").compareTo(repo.getCubo().doMes(YearMonth.of(2025, 3)).getReceitas()));
+
+        assertEquals(0, repo.contar(new Consulta().semValorBRL()));
+        d.setValorBRL(null);
+        repo.updateTransacao(d);
+        assertEquals(List.of("d1"), repo.consultar(new Consulta().moedas(Moeda.USD).semValorBRL()).map(Transacao::getId).toList());
+        d.setValorBRL(new BigDecimal("200.00"));
+        repo.updateTransacao(d);
+
+        assertEquals("d1", repo.getUltimas(1).get(0).getId());
+        repo.removeTransacao(r);
+        assertEquals(1, repo.getTransacoes().size());
+        assertEquals(0, repo.getTotais().getReceitas().signum());
+        assertEquals(0, new BigDecimal("200").compareTo(repo.getTotais().getDespesasPorCategoria().get(cat.getId())));
+    }
+
+    @Test
+    public void testPaginacaoPorCursor() throws Exception {
+        Config.setDataDir(dir);
+        RepositorioSql repo = new RepositorioSql();
+        repo.loadAll();
+        for (int i = 0; i < 1203; i++) {
+            repo.addTransacao(new Despesa(String.format("d%04d", i), LocalDate.of(2024, 1, 1).plusDays(i % 40),
+                    BigDecimal.ONE, Moeda.BRL, null, i % 2 == 0 ? "50% off" : "normal"));
+        }
+        Consulta c = new Consulta().ordem(Consulta.Ordem.MAIS_RECENTES);
+        List<String> esperado = repo.consultar(new Consulta().ordem(Consulta.Ordem.MAIS_RECENTES))
+                .map(Transacao::getId).toList();
+        assertEquals(1203, esperado.size());
+
+        List<String> lidos = new java.util.ArrayList<>();
+        Pagina p;
+        do {
+            p = repo.paginar(c, 100);
+            p.getItens().forEach(t -> lidos.add(t.getId()));
+            c.apos(p.getProximo());
+        } while (p.temMais());
+        assertEquals(esperado, lidos);
+        // % é literal na busca por texto
+        assertEquals(602, repo.consultar(new Consulta().descricaoContem("50%")).count());
+
+        // acesso por posição: o mesmo trecho da ordem completa
+        assertEquals(1203, repo.contar(new Consulta()));
+        assertEquals(602, repo.contar(new Consulta().descricaoContem("50%")));
+        assertEquals(esperado.subList(1150, 1203),
+                repo.consultar(new Consulta().ordem(Consulta.Ordem.MAIS_RECENTES), 1150, 100).stream().map(Transacao::getId).toList());
+
+        // mesma data: desempata pelo id, como no backend em arquivo
+        assertEquals(esperado.subList(0, 50), repo.getUltimas(50).stream().map(Transacao::getId).toList());
+        List<Transacao> achadas = repo.buscarTexto("off", 700);
+        assertEquals(602, achadas.size());
+        assertTrue(achadas.stream().allMatch(t -> t.getDescricao().equals("50% off")));
+    }
+
+    @Test
+    public void testMigraTransacoesJsonLegado() throws Exception {
+        Config.setDataDir(dir);
+        Categoria cat = new Categoria("c1", "Mercado", null);
+        JsonPersistencia json = new JsonPersistencia();
+        json.saveCategorias(List.of(cat));
+        json.saveTransacoes(List.of(new Despesa("legado", LocalDate.of(2019, 6, 1), new BigDecimal("12.50"), Moeda.BRL, cat, "pão")));
+
+        RepositorioSql repo = new RepositorioSql();
+        repo.loadAll();
+        Transacao t = repo.findTransacaoById("legado").orElseThrow();
+        assertEquals("pão", t.getDescricao());
+        assertEquals("Mercado", t.getCategoria().getNome());
+        assertEquals(1, repo.getCategorias().size());
+    }
+}
@@ -0,0 +1,84 @@
+package persistence;
+
+import model.Categoria;
+import model.Despesa;
+import model.Moeda;
+import model.Receita;
+import model.Transacao;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SnapshotBinarioTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        Categoria cat = new Categoria("c1", "Transporte", "#2196F3");
+        Transacao r = new Receita("r1", LocalDate.of(2025, 2, 1), new BigDecimal("1500.00"), Moeda.BRL, cat, "salário");
+        r.setValorBRL(r.getValorOriginal());
+        Transacao d = new Despesa("d1", LocalDate.of(2025, 2, 3), new BigDecimal("12.5"), Moeda.EUR, cat, "ônibus");
+        d.setValorBRL(new BigDecimal("75.0625"));
+        Transacao semCategoria = new Despesa("d2", LocalDate.of(2025, 2, 4), BigDecimal.ONE, Moeda.BRL, null, null);
+
+        Path arquivo = dir.resolve("transacoes.bin");
+        SnapshotBinario.salvar(arquivo, List.of(r, d, semCategoria));
+
+        List<Transacao> lidas = new ArrayList<>();
+        SnapshotBinario.carregar(arquivo, lidas::add);
+
+        assertEquals(3, lidas.size());
+        assertTrue(lidas.get(0) instanceof Receita);
+        assertEquals(new BigDecimal("1500.00"), lidas.get(0).getValorBRL());
+        Transacao d1 = lidas.get(1);
+        assertTrue(d1 instanceof Despesa);
+        assertEquals(Moeda.EUR, d1.getMoeda());
+        assertEquals(new BigDecimal("12.5"), d1.getValorOriginal());
+        assertEquals(new BigDecimal("75.0625"), d1.getValorBRL());
+        assertEquals("ônibus", d1.getDescricao());
+        assertSame(lidas.get(0).getCategoria(), d1.getCategoria());
+        assertNull(lidas.get(2).getCategoria());
+        assertNull(lidas.get(2).getValorBRL());
+        assertNull(lidas.get(2).getDescricao());
+    }
+
+    @Test
+    public void testChecksumInvalido() throws Exception {
+        Path arquivo = dir.resolve("transacoes.bin");
+        SnapshotBinario.salvar(arquivo, List.of(
+                new Despesa("d1", LocalDate.of(2025, 2, 3), BigDecimal.TEN, Moeda.BRL, null, "x")));
+        byte[] bytes = Files.readAllBytes(arquivo);
+        bytes[bytes.length - 1] ^= 0x7F;
+        Files.write(arquivo, bytes);
+
+        assertThrows(IOException.class, () -> SnapshotBinario.carregar(arquivo, t -> {}));
+    }
+
+    @Test
+    public void testCompactadoDetectadoNaLeitura() throws Exception {
+        Path arquivo = dir.resolve("2025-02.bin");
+        List<Transacao> origem = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            origem.add(new Despesa("d" + i, LocalDate.of(2025, 2, 1 + i % 28), new BigDecimal("9.90"), Moeda.BRL, null, "café"));
+        }
+        SnapshotBinario.salvar(arquivo, origem, true);
+        assertTrue(Compressao.isGzip(arquivo));
+
+        List<Transacao> lidas = new ArrayList<>();
+        SnapshotBinario.carregar(arquivo, lidas::add);
+        assertEquals(origem.size(), lidas.size());
+        assertEquals("d999", lidas.get(999).getId());
+        assertFalse(Files.exists(dir.resolve("2025-02.bin.bruto.tmp")));
+    }
+}
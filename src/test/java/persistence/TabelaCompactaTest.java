@@ -0,0 +1,49 @@
+package persistence;
+
+import model.Categoria;
+import model.Despesa;
+import model.Moeda;
+import model.Receita;
+import model.Transacao;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TabelaCompactaTest {
+
+    @Test
+    public void testTransacoesVoltamIdenticas() throws Exception {
+        Categoria cat = new Categoria("c1", "Mercado", null);
+        Transacao uuid = new Despesa(UUID.randomUUID().toString(), LocalDate.of(2025, 3, 1),
+                new BigDecimal("12.50"), Moeda.BRL, cat, "pão");
+        uuid.setValorBRL(new BigDecimal("12.50"));
+        Transacao convertida = new Receita("freela-1", LocalDate.of(1999, 12, 31),
+                new BigDecimal("10.5"), Moeda.USD, null, null);
+        convertida.setValorBRL(new BigDecimal("52.3351"));
+        Transacao inteira = new Despesa("x", LocalDate.of(2025, 3, 2), new BigDecimal("100"), Moeda.EUR, cat, "");
+
+        TabelaCompacta tabela = TabelaCompacta.de(List.of(uuid, convertida, inteira));
+        assertEquals(3, tabela.size());
+        for (int i = 0; i < 3; i++) {
+            Transacao original = List.of(uuid, convertida, inteira).get(i);
+            Transacao lida = tabela.transacao(i);
+            assertEquals(original.getClass(), lida.getClass());
+            assertEquals(original.getId(), lida.getId());
+            assertEquals(original.getData(), lida.getData());
+            assertEquals(original.getValorOriginal(), lida.getValorOriginal());
+            assertEquals(original.getValorBRL(), lida.getValorBRL());
+            assertEquals(original.getMoeda(), lida.getMoeda());
+            assertSame(original.getCategoria(), lida.getCategoria());
+            assertEquals(original.getDescricao(), lida.getDescricao());
+        }
+        assertEquals(1250, tabela.centavosEmBRL(0));
+        assertEquals(5234, tabela.centavosEmBRL(1));
+        assertEquals(10000, tabela.centavosEmBRL(2));
+        assertTrue(tabela.isReceita(1));
+    }
+}
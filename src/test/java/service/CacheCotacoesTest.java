@@ -0,0 +1,86 @@
+package service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CacheCotacoesTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testSobreviveAReabertura() {
+        Path arquivo = dir.resolve("cotacoes.json");
+        Instant quando = Instant.parse("2025-03-10T12:00:00Z");
+        CacheCotacoes cache = new CacheCotacoes(arquivo);
+        cache.putAtual("USD_BRL", new CurrencyService.CacheEntry(new BigDecimal("5.1234"), quando));
+        cache.putDiarias("EUR_BRL", Map.of(LocalDate.of(2025, 3, 8), new BigDecimal("6.01")));
+        cache.flush();
+
+        CacheCotacoes reaberto = new CacheCotacoes(arquivo);
+        assertEquals(new BigDecimal("5.1234"), reaberto.getAtual("USD_BRL").rate);
+        assertEquals(quando, reaberto.getAtual("USD_BRL").timestamp);
+        assertEquals(new BigDecimal("6.01"), reaberto.getDiaria("EUR_BRL", LocalDate.of(2025, 3, 8)));
+        assertNull(reaberto.getDiaria("EUR_BRL", LocalDate.of(2025, 3, 9)));
+    }
+
+    @Test
+    public void testPrazoValeEntreExecucoes() throws Exception {
+        Path arquivo = dir.resolve("cotacoes.json");
+        AtomicInteger requisicoes = new AtomicInteger();
+        class ApiFalsa extends CurrencyService {
+            ApiFalsa(CacheCotacoes cache) {
+                super(cache);
+            }
+
+            @Override
+            protected CompletableFuture<Map<String, BigDecimal>> fetchRatesAsync(List<String> pares) {
+                requisicoes.incrementAndGet();
+                return CompletableFuture.completedFuture(Map.of("USD_BRL", new BigDecimal("5.00"), "EUR_BRL", new BigDecimal("6.00")));
+            }
+        }
+
+        CacheCotacoes cache = new CacheCotacoes(arquivo);
+        assertEquals(new BigDecimal("5.00"), new ApiFalsa(cache).getRate("USD", "BRL"));
+        cache.flush();
+        assertEquals(1, requisicoes.get());
+
+        // nova execução: a cotação gravada ainda está no prazo
+        CacheCotacoes reaberto = new CacheCotacoes(arquivo);
+        assertEquals(new BigDecimal("5.00"), new ApiFalsa(reaberto).getRate("USD", "BRL"));
+        assertEquals(1, requisicoes.get());
+        reaberto.flush();
+
+        // vencida: serve a antiga na hora e consulta de novo
+        CacheCotacoes antigo = new CacheCotacoes(arquivo);
+        antigo.putAtual("USD_BRL", new CurrencyService.CacheEntry(new BigDecimal("4.00"),
+                Instant.now().minus(Duration.ofMinutes(11))));
+        ApiFalsa svc = new ApiFalsa(antigo);
+        assertEquals(new BigDecimal("4.00"), svc.getRate("USD", "BRL"));
+        assertEquals(2, requisicoes.get());
+        assertEquals(new BigDecimal("5.00"), svc.getRate("USD", "BRL"));
+        // gravação em segundo plano termina antes de a pasta temporária ser apagada
+        antigo.flush();
+    }
+
+    @Test
+    public void testArquivoCorrompidoEIgnorado() throws Exception {
+        Path arquivo = dir.resolve("cotacoes.json");
+        Files.writeString(arquivo, "{\"atuais\": [");
+        CacheCotacoes cache = new CacheCotacoes(arquivo);
+        assertNull(cache.getAtual("USD_BRL"));
+    }
+}
@@ -0,0 +1,148 @@
+package service;
+
+import model.Despesa;
+import model.Moeda;
+import model.Receita;
+import model.Transacao;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConversaoEmLoteTest {
+
+    /**
+     * Câmbio sem rede: as cotações "publicadas" ficam num mapa e cada
+     * consulta de período é contada.
+     */
+    private static class CambioFalso extends CurrencyService {
+        final Map<String, BigDecimal> publicadas = new HashMap<>();
+        final Map<String, BigDecimal> cache = new HashMap<>();
+        final List<String> consultas = new ArrayList<>();
+        boolean offline;
+
+        @Override
+        public BigDecimal getRateEmCache(String from, String to, LocalDate data) {
+            return cache.get(from + data);
+        }
+
+        @Override
+        public void carregarHistorico(String from, String to, LocalDate inicio, LocalDate fim) throws IOException {
+            consultas.add(from + " " + inicio + ".." + fim);
+            if (offline) throw new IOException("sem rede");
+            for (LocalDate d = inicio; !d.isAfter(fim); d = d.plusDays(1)) {
+                BigDecimal r = publicadas.get(from + d);
+                if (r != null) cache.put(from + d, r);
+            }
+        }
+    }
+
+    @TempDir
+    Path dir;
+
+    private static final LocalDate D1 = LocalDate.of(2025, 3, 10);
+    private static final LocalDate D2 = LocalDate.of(2025, 3, 12);
+
+    private Transacao despesa(LocalDate data, String valor, Moeda moeda) throws Exception {
+        return new Despesa(UUID.randomUUID().toString(), data, new BigDecimal(valor), moeda, null, "x");
+    }
+
+    @Test
+    public void testUmaConsultaPorMoedaEPares() throws Exception {
+        CambioFalso cambio = new CambioFalso();
+        cambio.publicadas.put("USD" + D1, new BigDecimal("5.0000"));
+        cambio.publicadas.put("USD" + D2, new BigDecimal("5.1000"));
+        cambio.publicadas.put("EUR" + D1, new BigDecimal("6.0000"));
+        ConversaoEmLote conversao = new ConversaoEmLote(cambio);
+
+        List<Transacao> lote = new ArrayList<>();
+        for (int i = 0; i < 100; i++) lote.add(despesa(i % 2 == 0 ? D1 : D2, "10.00", Moeda.USD));
+        lote.add(despesa(D1, "3.333", Moeda.EUR));
+        Transacao brl = new Receita("r", D1, new BigDecimal("7.00"), Moeda.BRL, null, "x");
+        lote.add(brl);
+
+        assertEquals(101, conversao.aplicar(lote));
+        assertEquals(List.of("USD " + D1 + ".." + D2, "EUR " + D1 + ".." + D1), cambio.consultas);
+        assertEquals(new BigDecimal("50.00"), lote.get(0).getValorBRL());
+        assertEquals(new BigDecimal("51.00"), lote.get(1).getValorBRL());
+        assertEquals(new BigDecimal("20.00"), lote.get(100).getValorBRL()); // 19,998 arredondado
+        assertNull(brl.getValorBRL()); // BRL não passa pela conversão
+
+        // segundo lote com os mesmos dias: tudo do cache
+        assertEquals(1, conversao.aplicar(List.of(despesa(D2, "1.00", Moeda.USD))));
+        assertEquals(2, cambio.consultas.size());
+    }
+
+    @Test
+    public void testSemCotacaoVaiParaPendentes() throws Exception {
+        CambioFalso cambio = new CambioFalso();
+        cambio.offline = true;
+        ConversaoEmLote conversao = new ConversaoEmLote(cambio);
+
+        assertEquals(0, conversao.aplicar(List.of(despesa(D1, "10.00", Moeda.USD))));
+        assertEquals(0, conversao.aplicar(List.of(despesa(D2, "10.00", Moeda.USD))));
+        assertEquals(2, conversao.getPendentes());
+        assertEquals(1, cambio.consultas.size()); // moeda marcada como indisponível após a falha
+
+        cambio.offline = false;
+        cambio.publicadas.put("USD" + D1, new BigDecimal("5"));
+        List<Transacao> convertidas = conversao.reprocessar();
+        assertEquals(1, convertidas.size());
+        assertEquals(new BigDecimal("50.00"), convertidas.get(0).getValorBRL());
+        assertEquals(1, conversao.getPendentes()); // D2 continua sem cotação
+    }
+
+    @Test
+    public void testReimportacaoSobrepostaSemCotacaoNaoEnfileiraRepetidas() throws Exception {
+        CambioFalso cambio = new CambioFalso();
+        cambio.offline = true;
+        ConversaoEmLote conversao = new ConversaoEmLote(cambio);
+        // destino em memória: só entram ids novos, como no repositório
+        Map<String, Transacao> gravadas = new LinkedHashMap<>();
+        ImportacaoExtrato.Destino destino = lote -> {
+            List<Transacao> novas = new ArrayList<>();
+            for (Transacao t : lote) if (gravadas.putIfAbsent(t.getId(), t) == null) novas.add(t);
+            return novas;
+        };
+        ImportacaoExtrato importacao = new ImportacaoExtrato(List.of(), conversao);
+
+        Path marco = dir.resolve("marco.csv");
+        Files.writeString(marco, "Data;Histórico;Valor;Moeda\n"
+                + "10/03/2025;Hotel;-100,00;USD\n"
+                + "12/03/2025;Táxi;-20,00;USD\n");
+        ImportacaoExtrato.Resultado r = importacao.importar(marco, destino, (a, b, c, d) -> {});
+        assertEquals(2, r.getSemCotacao());
+        assertEquals(2, conversao.getPendentes());
+
+        // o usuário edita um lançamento ainda sem cotação
+        Transacao hotel = gravadas.values().iterator().next();
+        hotel.setDescricao("Hotel em Lisboa");
+
+        // extrato sobreposto com a API ainda fora: só a linha nova entra na fila
+        Path sobreposto = dir.resolve("sobreposto.csv");
+        Files.writeString(sobreposto, "Data;Histórico;Valor;Moeda\n"
+                + "10/03/2025;Hotel;-100,00;USD\n"
+                + "14/03/2025;Jantar;-30,00;EUR\n");
+        r = importacao.importar(sobreposto, destino, (a, b, c, d) -> {});
+        assertEquals(1, r.getImportadas());
+        assertEquals(1, r.getDuplicadas());
+        assertEquals(1, r.getSemCotacao());
+        assertEquals(3, conversao.getPendentes());
+
+        // de volta: as convertidas são as gravadas, não cópias lidas de novo do extrato
+        cambio.offline = false;
+        cambio.publicadas.put("USD" + D1, new BigDecimal("5"));
+        List<Transacao> convertidas = conversao.reprocessar();
+        assertEquals(1, convertidas.size());
+        assertSame(hotel, convertidas.get(0));
+        assertEquals("Hotel em Lisboa", convertidas.get(0).getDescricao());
+        assertEquals(new BigDecimal("500.00"), hotel.getValorBRL());
+    }
+}
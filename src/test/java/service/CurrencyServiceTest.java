@@ -2,12 +2,40 @@ package service;
 
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 public class CurrencyServiceTest {
 
+    /**
+     * Sem rede: cada requisição vira um future completado pelo teste.
+     */
+    private static class ApiFalsa extends CurrencyService {
+        final List<List<String>> pares = new ArrayList<>();
+        final List<CompletableFuture<Map<String, BigDecimal>>> requisicoes = new ArrayList<>();
+
+        ApiFalsa(CacheCotacoes cache) {
+            super(cache);
+        }
+
+        @Override
+        protected synchronized CompletableFuture<Map<String, BigDecimal>> fetchRatesAsync(List<String> pares) {
+            CompletableFuture<Map<String, BigDecimal>> f = new CompletableFuture<>();
+            this.pares.add(pares);
+            requisicoes.add(f);
+            return f;
+        }
+    }
+
     @Test
     public void testGetRateCache() throws Exception {
         CurrencyService svc = new CurrencyService();
@@ -16,4 +44,143 @@ public class CurrencyServiceTest {
         BigDecimal r2 = svc.getRate("USD", "BRL");
         assertEquals(0, r1.compareTo(r2)); // dentro do cache, deve ser igual
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testChamadasSimultaneasCompartilhamRequisicao() throws Exception {
+        ApiFalsa svc = new ApiFalsa(new CacheCotacoes());
+        List<CompletableFuture<BigDecimal>> pedidos = new ArrayList<>();
+        for (int i = 0; i < 5; i++) pedidos.add(svc.getRateAsync("USD", "BRL"));
+        CompletableFuture<BigDecimal> euro = svc.getRateAsync("EUR", "BRL");
+        // uma requisição só, com todos os pares base
+        assertEquals(List.of(List.of("USD_BRL", "EUR_BRL")), svc.pares);
+
+        pedidos.get(0).cancel(false); // não afeta os demais
+        svc.requisicoes.get(0).complete(Map.of("USD_BRL", new BigDecimal("5.10"), "EUR_BRL", new BigDecimal("6.20")));
+        for (int i = 1; i < 5; i++) assertEquals(new BigDecimal("5.10"), pedidos.get(i).get());
+        assertEquals(new BigDecimal("6.20"), euro.get());
+
+        // agora do cache, sem nova requisição
+        assertEquals(new BigDecimal("5.10"), svc.getRate("USD", "BRL"));
+        assertEquals(1, svc.requisicoes.size());
+    }
+
+    @Test
+    public void testFalhaNaoFicaPresa() throws Exception {
+        ApiFalsa svc = new ApiFalsa(new CacheCotacoes());
+        CompletableFuture<BigDecimal> primeira = svc.getRateAsync("USD", "BRL");
+        // resposta sem o par: falha só dele, e a API continua disponível
+        svc.requisicoes.get(0).complete(Map.of("EUR_BRL", new BigDecimal("6")));
+        ExecutionException ex = assertThrows(ExecutionException.class, primeira::get);
+        assertInstanceOf(IOException.class, ex.getCause());
+        assertTrue(svc.getEstadoApi().isDisponivel());
+
+        // a próxima chamada tenta de novo
+        CompletableFuture<BigDecimal> segunda = svc.convertAsync("USD", "BRL", new BigDecimal("2"));
+        assertEquals(2, svc.requisicoes.size());
+        svc.requisicoes.get(1).complete(Map.of("USD_BRL", new BigDecimal("5")));
+        assertEquals(new BigDecimal("10"), segunda.get());
+    }
+
+    @Test
+    public void testRenovacaoAntecipada() throws Exception {
+        CacheCotacoes cache = new CacheCotacoes();
+        Instant agora = Instant.now();
+        cache.putAtual("USD_BRL", new CurrencyService.CacheEntry(new BigDecimal("5"), agora.minus(Duration.ofSeconds(570))));
+        cache.putAtual("EUR_BRL", new CurrencyService.CacheEntry(new BigDecimal("6"), agora));
+        ApiFalsa svc = new ApiFalsa(cache);
+
+        // ainda válida: a chamada não espera; só a que vence em breve é renovada
+        assertEquals(new BigDecimal("5"), svc.getRate("USD", "BRL"));
+        svc.renovar();
+        assertEquals(List.of(List.of("USD_BRL")), svc.pares);
+        svc.renovar(); // já em andamento: não repete
+        assertEquals(1, svc.requisicoes.size());
+
+        svc.requisicoes.get(0).complete(Map.of("USD_BRL", new BigDecimal("5.5")));
+        assertEquals(new BigDecimal("5.5"), svc.getRate("USD", "BRL"));
+        svc.renovar();
+        assertEquals(1, svc.requisicoes.size());
+    }
+
+    @Test
+    public void testCotacaoMuitoAntigaNaoSaiSemMarcacao() throws Exception {
+        CacheCotacoes cache = new CacheCotacoes();
+        cache.putAtual("USD_BRL", new CurrencyService.CacheEntry(new BigDecimal("4"), Instant.now().minus(Duration.ofDays(20))));
+        ApiFalsa svc = new ApiFalsa(cache);
+
+        // getCotacaoAsync devolve qualquer idade, marcada
+        CurrencyService.Cotacao c = svc.getCotacaoAsync("USD", "BRL").get();
+        assertTrue(c.desatualizada());
+        assertTrue(c.idade().toDays() >= 20);
+
+        // convert não tem como avisar: espera a renovação em vez de usar a de 20 dias
+        CompletableFuture<BigDecimal> convertido = svc.convertAsync("USD", "BRL", new BigDecimal("2"));
+        assertFalse(convertido.isDone());
+        svc.requisicoes.get(0).complete(Map.of("USD_BRL", new BigDecimal("5")));
+        assertEquals(new BigDecimal("10"), convertido.get());
+
+        // com a API fora, falha em vez de usar a antiga
+        cache.putAtual("EUR_BRL", new CurrencyService.CacheEntry(new BigDecimal("6"), Instant.now().minus(Duration.ofDays(20))));
+        CompletableFuture<BigDecimal> euro = svc.getRateAsync("EUR", "BRL");
+        svc.requisicoes.get(1).completeExceptionally(new java.net.ConnectException("sem rota"));
+        assertInstanceOf(IOException.class, assertThrows(ExecutionException.class, euro::get).getCause());
+    }
+
+    @Test
+    public void testCotacaoVencidaVoltaNaHoraEApiForaFalhaRapido() throws Exception {
+        CacheCotacoes cache = new CacheCotacoes();
+        cache.putAtual("USD_BRL", new CurrencyService.CacheEntry(new BigDecimal("5"), Instant.now().minus(Duration.ofMinutes(30))));
+        ApiFalsa svc = new ApiFalsa(cache);
+
+        // vencida: volta na hora, marcada, e a renovação vai para a rede
+        CurrencyService.Cotacao c = svc.getCotacaoAsync("USD", "BRL").get();
+        assertTrue(c.desatualizada());
+        assertEquals(new BigDecimal("5"), c.taxa());
+        assertTrue(c.idade().toMinutes() >= 30);
+        assertEquals(1, svc.requisicoes.size());
+
+        svc.requisicoes.get(0).completeExceptionally(new java.net.ConnectException("sem rota"));
+        assertFalse(svc.getEstadoApi().isDisponivel());
+        assertNotNull(svc.getEstadoApi().ultimoSucesso()); // a da cotação em cache
+
+        // disjuntor aberto: sem nova requisição; com cotação antiga ela continua servindo
+        assertEquals(new BigDecimal("5"), svc.getRate("USD", "BRL"));
+        assertEquals(1, svc.requisicoes.size());
+        // e sem nenhuma cotação a falha é imediata
+        long ini = System.nanoTime();
+        ExecutionException ex = assertThrows(ExecutionException.class, () -> svc.getRateAsync("EUR", "BRL").get());
+        assertTrue(System.nanoTime() - ini < 100_000_000L);
+        assertInstanceOf(IOException.class, ex.getCause());
+        assertEquals(1, svc.requisicoes.size());
+    }
+
+    @Test
+    public void testCruzadasEInversasSaemDosParesBase() throws Exception {
+        ApiFalsa svc = new ApiFalsa(new CacheCotacoes());
+        CompletableFuture<BigDecimal> eurUsd = svc.getRateAsync("EUR", "USD");
+        CompletableFuture<BigDecimal> brlUsd = svc.getRateAsync("BRL", "USD");
+        assertEquals(List.of(List.of("USD_BRL", "EUR_BRL")), svc.pares);
+        svc.requisicoes.get(0).complete(Map.of("USD_BRL", new BigDecimal("5.0000"), "EUR_BRL", new BigDecimal("5.5000")));
+
+        assertEquals(new BigDecimal("1.1"), eurUsd.get().stripTrailingZeros());
+        assertEquals(new BigDecimal("0.2"), brlUsd.get().stripTrailingZeros());
+        assertEquals(new BigDecimal("0.9090909090909091"), svc.getRate("USD", "EUR"));
+        assertEquals(BigDecimal.ONE, svc.getRate("USD", "USD"));
+        assertEquals(1, svc.requisicoes.size()); // nada além da busca dos pares base
+
+        MatrizCambio m = svc.getMatrizEmCache();
+        assertEquals(svc.getRate("USD", "EUR"), m.taxa(model.Moeda.USD, model.Moeda.EUR));
+        assertEquals(new BigDecimal("5.5000"), m.taxa(model.Moeda.EUR, model.Moeda.BRL));
+    }
+
+    @Test
+    public void testCruzadaDesatualizadaSeUmaBaseEstiver() throws Exception {
+        CacheCotacoes cache = new CacheCotacoes();
+        cache.putAtual("USD_BRL", new CurrencyService.CacheEntry(new BigDecimal("5"), Instant.now().minus(Duration.ofMinutes(20))));
+        cache.putAtual("EUR_BRL", new CurrencyService.CacheEntry(new BigDecimal("6"), Instant.now()));
+        CurrencyService.Cotacao c = new ApiFalsa(cache).getCotacaoAsync("EUR", "USD").get();
+        assertTrue(c.desatualizada());
+        assertEquals(new BigDecimal("1.2"), c.taxa());
+        assertTrue(c.idade().toMinutes() >= 20);
+    }
+}
@@ -0,0 +1,47 @@
+package service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DisjuntorTest {
+
+    @Test
+    public void testAbreLiberaUmTesteEFecha() throws Exception {
+        Disjuntor d = new Disjuntor("API", Duration.ofMillis(50), Duration.ofMillis(150));
+        assertTrue(d.permite());
+        d.falha(new IOException("timeout"));
+        assertEquals(Disjuntor.Situacao.ABERTO, d.getEstado().situacao());
+        assertFalse(d.permite());
+        assertTrue(d.erroAberto().getMessage().contains("timeout"));
+
+        Thread.sleep(70);
+        assertTrue(d.permite()); // a chamada de teste
+        assertFalse(d.permite()); // as demais esperam o resultado dela
+        assertEquals(Disjuntor.Situacao.MEIO_ABERTO, d.getEstado().situacao());
+
+        d.sucesso();
+        assertTrue(d.getEstado().isDisponivel());
+        assertNotNull(d.getEstado().ultimoSucesso());
+        assertTrue(d.permite());
+    }
+
+    @Test
+    public void testEsperaDobraAteAMaxima() throws Exception {
+        Disjuntor d = new Disjuntor("API", Duration.ofMillis(40), Duration.ofMillis(100));
+        d.falha(null);
+        Thread.sleep(50);
+        assertTrue(d.permite());
+        d.falha(null); // teste falhou: espera de 80 ms
+        Thread.sleep(50);
+        assertFalse(d.permite());
+        Thread.sleep(40);
+        assertTrue(d.permite());
+        d.falha(null); // 160 ms, limitado a 100
+        Thread.sleep(110);
+        assertTrue(d.permite());
+    }
+}
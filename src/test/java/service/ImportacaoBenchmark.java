@@ -0,0 +1,69 @@
+package service;
+
+import persistence.JsonPersistencia;
+import persistence.ParticoesMensais;
+import util.Config;
+
+import java.io.BufferedWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Medição manual (não roda com os testes): importação de um CSV gerado, só a
+ * leitura e conversão, e com a inserção em partições mensais numa pasta
+ * temporária (sem a gravação final).
+ *
+ * Uso: java -cp target/classes:target/test-classes:&lt;gson.jar&gt; service.ImportacaoBenchmark [linhas]
+ */
+public class ImportacaoBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Path dir = Files.createTempDirectory("importacao");
+        Config.setDataDir(dir);
+        Path csv = dir.resolve("extrato.csv");
+        gerar(csv, n);
+        System.out.printf("%d linhas, %d MB%n", n, Files.size(csv) >> 20);
+
+        ImportacaoExtrato importacao = new ImportacaoExtrato(List.of());
+        // aquecimento
+        importacao.importar(csv, lote -> lote, (a, b, c, d) -> {});
+
+        long t0 = System.nanoTime();
+        ImportacaoExtrato.Resultado r = importacao.importar(csv, lote -> lote, (a, b, c, d) -> {});
+        medir("leitura e conversão", r.getLidas(), t0);
+
+        ParticoesMensais particoes = new ParticoesMensais(dir.resolve("transacoes"), new JsonPersistencia());
+        particoes.abrir();
+        t0 = System.nanoTime();
+        r = importacao.importar(csv, particoes::adicionarNovas, (a, b, c, d) -> {});
+        medir("com inserção nas partições", r.getImportadas(), t0);
+    }
+
+    private static void medir(String nome, int linhas, long t0) {
+        long ms = (System.nanoTime() - t0) / 1_000_000;
+        System.out.printf("%-28s %6d ms  %,d linhas/s%n", nome, ms, linhas * 1000L / Math.max(1, ms));
+    }
+
+    private static void gerar(Path csv, int n) throws Exception {
+        String[] descricoes = {"Supermercado Extra", "Padaria Pão Quente", "Uber *Viagem", "Farmácia São Paulo",
+                "PIX recebido", "Posto Shell", "Restaurante Sabor", "Salário"};
+        Random rnd = new Random(42);
+        DateTimeFormatter df = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+        LocalDate inicio = LocalDate.of(2015, 1, 1);
+        try (BufferedWriter w = Files.newBufferedWriter(csv, StandardCharsets.UTF_8)) {
+            w.write("Data;Descrição;Valor\n");
+            for (int i = 0; i < n; i++) {
+                LocalDate d = inicio.plusDays(i * 3650L / n);
+                long centavos = 100 + rnd.nextInt(500_000);
+                String valor = (rnd.nextInt(5) == 0 ? "" : "-") + centavos / 100 + "," + String.format("%02d", centavos % 100);
+                w.write(df.format(d) + ';' + descricoes[rnd.nextInt(descricoes.length)] + ';' + valor + '\n');
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package service;
+
+import model.Categoria;
+import model.Despesa;
+import model.Moeda;
+import model.Receita;
+import model.Transacao;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImportacaoExtratoTest {
+
+    @TempDir
+    Path dir;
+
+    private final Categoria mercado = new Categoria("c1", "Alimentação", null);
+    // destino em memória: só entram ids novos, como no repositório
+    private final Map<String, Transacao> destino = new LinkedHashMap<>();
+
+    private ImportacaoExtrato.Resultado importar(Path arquivo) throws Exception {
+        return new ImportacaoExtrato(List.of(mercado)).importar(arquivo, lote -> {
+            List<Transacao> novas = new ArrayList<>();
+            for (Transacao t : lote) if (destino.putIfAbsent(t.getId(), t) == null) novas.add(t);
+            return novas;
+        }, (lidos, total, lidas, importadas) -> {});
+    }
+
+    private Path arquivo(String nome, String conteudo, Charset cs) throws Exception {
+        Path p = dir.resolve(nome);
+        Files.write(p, conteudo.getBytes(cs));
+        return p;
+    }
+
+    @Test
+    public void testCsvComCabecalhoEFormatoBrasileiro() throws Exception {
+        Path p = arquivo("extrato.csv",
+                "Data;Histórico;Valor;Categoria\n"
+                        + "05/03/2025;Salário;\"5.000,00\";\n"
+                        + "06/03/2025;\"Mercado; Pão\";-123,45;alimentacao\n"
+                        + "06/03/2025;Mercado; Pão;-123,45;\n",
+                Charset.forName("windows-1252"));
+
+        ImportacaoExtrato.Resultado r = importar(p);
+
+        assertEquals(3, r.getLidas());
+        assertEquals(2, r.getImportadas());
+        assertEquals(1, r.getInvalidas()); // ';' fora de aspas desloca as colunas
+        assertTrue(r.getErros().get(0).startsWith("linha 4:"));
+
+        List<Transacao> lidas = new ArrayList<>(destino.values());
+        Transacao salario = lidas.get(0);
+        assertTrue(salario instanceof Receita);
+        assertEquals(LocalDate.of(2025, 3, 5), salario.getData());
+        assertEquals(new BigDecimal("5000.00"), salario.getValorOriginal());
+        assertEquals(new BigDecimal("5000.00"), salario.getValorBRL());
+        assertEquals("Salário", salario.getDescricao());
+
+        Transacao pao = lidas.get(1);
+        assertTrue(pao instanceof Despesa);
+        assertEquals(new BigDecimal("123.45"), pao.getValorOriginal());
+        assertEquals("Mercado; Pão", pao.getDescricao());
+        assertSame(mercado, pao.getCategoria());
+    }
+
+    @Test
+    public void testCsvSemCabecalhoComTipoEMoeda() throws Exception {
+        Path p = arquivo("extrato.csv",
+                "date,description,amount,type,currency\n"
+                        + "2025-01-02,Hotel,\"1,250.50\",debit,USD\n"
+                        + "2025-01-03,Reembolso,30.00,C,EUR\n"
+                        + "2025-01-04,Sem valor,,D,BRL\n",
+                StandardCharsets.UTF_8);
+
+        ImportacaoExtrato.Resultado r = importar(p);
+
+        assertEquals(2, r.getImportadas());
+        assertEquals(1, r.getInvalidas());
+        List<Transacao> lidas = new ArrayList<>(destino.values());
+        assertTrue(lidas.get(0) instanceof Despesa);
+        assertEquals(new BigDecimal("1250.50"), lidas.get(0).getValorOriginal());
+        assertEquals(Moeda.USD, lidas.get(0).getMoeda());
+        assertNull(lidas.get(0).getValorBRL()); // conversão fica para depois
+        assertTrue(lidas.get(1) instanceof Receita);
+        assertEquals(Moeda.EUR, lidas.get(1).getMoeda());
+    }
+
+    @Test
+    public void testOfxSgml() throws Exception {
+        Path p = arquivo("extrato.ofx",
+                "OFXHEADER:100\nDATA:OFXSGML\nCHARSET:1252\n\n"
+                        + "<OFX><BANKMSGSRSV1><STMTTRNRS><STMTRS><CURDEF>BRL\n"
+                        + "<BANKACCTFROM><ACCTID>1234-5</BANKACCTFROM><BANKTRANLIST>\n"
+                        + "<STMTTRN><TRNTYPE>DEBIT<DTPOSTED>20250310120000[-3:BRT]<TRNAMT>-45.90<FITID>A1<MEMO>Farmácia</STMTTRN>\n"
+                        + "<STMTTRN><TRNTYPE>CREDIT<DTPOSTED>20250311<TRNAMT>100.00<FITID>A2<NAME>PIX recebido</STMTTRN>\n"
+                        + "</BANKTRANLIST></STMTRS></STMTTRNRS></BANKMSGSRSV1></OFX>\n",
+                Charset.forName("windows-1252"));
+
+        ImportacaoExtrato.Resultado r = importar(p);
+
+        assertEquals(2, r.getImportadas());
+        List<Transacao> lidas = new ArrayList<>(destino.values());
+        assertTrue(lidas.get(0) instanceof Despesa);
+        assertEquals(LocalDate.of(2025, 3, 10), lidas.get(0).getData());
+        assertEquals(new BigDecimal("45.90"), lidas.get(0).getValorOriginal());
+        assertEquals("Farmácia", lidas.get(0).getDescricao());
+        assertTrue(lidas.get(1) instanceof Receita);
+        assertEquals("PIX recebido", lidas.get(1).getDescricao());
+    }
+
+    @Test
+    public void testReimportarNaoDuplica() throws Exception {
+        StringBuilder csv = new StringBuilder("data;descricao;valor\n");
+        // mais de um lote, com lançamentos iguais no mesmo dia
+        for (int i = 0; i < ImportacaoExtrato.LOTE + 500; i++) {
+            csv.append(String.format("%02d/01/2025;Café;-5,00%n", 1 + i % 28));
+        }
+        Path p = arquivo("extrato.csv", csv.toString(), StandardCharsets.UTF_8);
+
+        ImportacaoExtrato.Resultado primeira = importar(p);
+        assertEquals(ImportacaoExtrato.LOTE + 500, primeira.getImportadas());
+
+        ImportacaoExtrato.Resultado segunda = importar(p);
+        assertEquals(0, segunda.getImportadas());
+        assertEquals(ImportacaoExtrato.LOTE + 500, segunda.getDuplicadas());
+        assertEquals(ImportacaoExtrato.LOTE + 500, destino.size());
+    }
+
+    @Test
+    public void testValores() {
+        assertEquals(new BigDecimal("1234.56"), ImportacaoExtrato.lerValor("R$ 1.234,56"));
+        assertEquals(new BigDecimal("-1234.56"), ImportacaoExtrato.lerValor("-1,234.56"));
+        assertEquals(new BigDecimal("-10.00"), ImportacaoExtrato.lerValor("(10,00)"));
+        assertEquals(new BigDecimal("-10.00"), ImportacaoExtrato.lerValor("10,00-"));
+        assertEquals(new BigDecimal("1234567"), ImportacaoExtrato.lerValor("1.234.567"));
+        assertThrows(IllegalArgumentException.class, () -> ImportacaoExtrato.lerValor("abc"));
+        assertEquals(LocalDate.of(2024, 2, 29), ImportacaoExtrato.lerData("29/02/24"));
+        assertThrows(IllegalArgumentException.class, () -> ImportacaoExtrato.lerData("31/02/2025"));
+    }
+}